@@ -0,0 +1,236 @@
+package ru.ifmo.ctddev.gmwcs;
+
+import ru.ifmo.ctddev.gmwcs.graph.*;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
+import ru.ifmo.ctddev.gmwcs.solver.Solver;
+import ru.ifmo.ctddev.gmwcs.solver.SolverException;
+import ru.ifmo.ctddev.gmwcs.solver.Utils;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Batch {
+    private SolverFactory factory;
+    private final Map<File, CutPool> cutPools;
+    private int threads;
+    private int jobs;
+    private boolean subnetOnly;
+    private boolean mapped;
+
+    public Batch(SolverFactory factory) {
+        this.factory = factory;
+        cutPools = new ConcurrentHashMap<>();
+        threads = 1;
+    }
+
+    public void setThreadsNum(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    public void setJobs(int jobs) {
+        if (jobs < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.jobs = jobs;
+    }
+
+    public void setSubnetOnly(boolean subnetOnly) {
+        this.subnetOnly = subnetOnly;
+    }
+
+    public void setMappedIO(boolean mapped) {
+        this.mapped = mapped;
+    }
+
+    public static List<Instance> instances(File source) throws IOException, ParseException {
+        return source.isDirectory() ? directory(source) : manifest(source);
+    }
+
+    public static List<Instance> manifest(File manifest) throws IOException, ParseException {
+        List<Instance> instances = new ArrayList<>();
+        File dir = manifest.getAbsoluteFile().getParentFile();
+        try (Scanner lines = new Scanner(new BufferedReader(new FileReader(manifest)))) {
+            int lnum = 0;
+            while (lines.hasNextLine()) {
+                lnum++;
+                String line = lines.nextLine();
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                StringTokenizer tokenizer = new StringTokenizer(line);
+                if (!tokenizer.hasMoreTokens()) {
+                    continue;
+                }
+                String nodes = tokenizer.nextToken();
+                if (!tokenizer.hasMoreTokens()) {
+                    throw new ParseException("Expected edge list file in manifest in line", lnum);
+                }
+                String edges = tokenizer.nextToken();
+                String root = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
+                instances.add(new Instance(resolve(dir, nodes), resolve(dir, edges), root));
+            }
+        }
+        return instances;
+    }
+
+    private static File resolve(File dir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(dir, path);
+    }
+
+    public static List<Instance> directory(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Can't list directory " + dir);
+        }
+        Arrays.sort(files);
+        List<Instance> instances = new ArrayList<>();
+        for (File nodes : files) {
+            String name = nodes.getName();
+            if (!nodes.isFile() || !name.endsWith("nodes")) {
+                continue;
+            }
+            File edges = new File(dir, name.substring(0, name.length() - "nodes".length()) + "edges");
+            if (edges.isFile()) {
+                instances.add(new Instance(nodes, edges, null));
+            }
+        }
+        return instances;
+    }
+
+    public List<Result> solve(List<Instance> instances) throws InterruptedException {
+        int workers = Math.max(1, Math.min(jobs == 0 ? threads : jobs, instances.size()));
+        int solverThreads = Math.max(1, threads / workers);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Instance instance : instances) {
+                futures.add(pool.submit(() -> solve(instance, solverThreads)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Result result = new Result(instances.get(i));
+                    result.error = "Unexpected error: " + e.getCause();
+                    results.add(result);
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result solve(Instance instance, int solverThreads) {
+        Result result = new Result(instance);
+        long time = System.nanoTime();
+        try {
+            File nodeOut = new File(instance.nodes + ".out");
+            File edgeOut = new File(instance.edges + ".out");
+            SimpleIO io;
+            if (mapped) {
+                MappedIO mappedIO = new MappedIO(instance.nodes, nodeOut, instance.edges, edgeOut);
+                mappedIO.setThreadsNum(solverThreads);
+                io = mappedIO;
+            } else {
+                io = new SimpleIO(instance.nodes, nodeOut, instance.edges, edgeOut);
+            }
+            io.setSubnetOnly(subnetOnly);
+            CSRGraph graph = io.readCSR();
+            result.nodes = graph.vertexCount();
+            result.edges = graph.edgeCount();
+            Node root = null;
+            if (instance.root != null) {
+                root = io.nodeByName(instance.root);
+                if (root == null) {
+                    throw new SolverException("Chosen root node is not presented in the graph");
+                }
+            }
+            result.readTime = seconds(time);
+            time = System.nanoTime();
+            Solver solver = factory.create(solverThreads, root,
+                    cutPools.computeIfAbsent(instance.edges.getAbsoluteFile(), f -> new CutPool()));
+            solver.suppressOutput();
+            List<Unit> units = solver.solve(graph);
+            result.solveTime = seconds(time);
+            result.objective = Utils.sum(units);
+            result.gap = solver.getGap();
+            result.optimal = solver.isSolvedToOptimality();
+            time = System.nanoTime();
+            io.write(units);
+            result.writeTime = seconds(time);
+        } catch (ParseException e) {
+            result.error = "Couldn't parse input files: " + e.getMessage() + " " + e.getErrorOffset();
+        } catch (SolverException e) {
+            result.error = "Error occur while solving: " + e.getMessage();
+        } catch (IOException e) {
+            result.error = "Error occurred while reading/writing input/output files";
+        } catch (RuntimeException e) {
+            result.error = "Unexpected error: " + e;
+        }
+        return result;
+    }
+
+    private static double seconds(long since) {
+        return (System.nanoTime() - since) / 1e9;
+    }
+
+    public static void writeSummary(List<Result> results, Writer out) throws IOException {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("#instance\tnodes\tedges\tstatus\tobjective\tgap\tread\tsolve\twrite");
+        for (Result r : results) {
+            writer.print(r.instance.nodes + "\t" + r.nodes + "\t" + r.edges + "\t");
+            if (r.error != null) {
+                writer.println("error\t" + r.error);
+                continue;
+            }
+            writer.println((r.optimal ? "optimal" : "feasible") + "\t" + r.objective + "\t" + r.gap + "\t"
+                    + String.format(Locale.ROOT, "%.3f\t%.3f\t%.3f", r.readTime, r.solveTime, r.writeTime));
+        }
+        writer.flush();
+    }
+
+    public interface SolverFactory {
+        Solver create(int threads, Node root, CutPool cutPool);
+    }
+
+    public static class Instance {
+        public final File nodes;
+        public final File edges;
+        public final String root;
+
+        public Instance(File nodes, File edges, String root) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.root = root;
+        }
+    }
+
+    public static class Result {
+        public final Instance instance;
+        public int nodes;
+        public int edges;
+        public double objective;
+        public double gap;
+        public boolean optimal;
+        public double readTime;
+        public double solveTime;
+        public double writeTime;
+        public String error;
+
+        Result(Instance instance) {
+            this.instance = instance;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package ru.ifmo.ctddev.gmwcs;
+
+import java.text.ParseException;
+import java.util.*;
+
+public class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    public static Object parse(String text) throws ParseException {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpaces();
+        if (json.pos != text.length()) {
+            throw new ParseException("Unexpected character in JSON at position", json.pos);
+        }
+        return value;
+    }
+
+    private Object value() throws ParseException {
+        skipSpaces();
+        if (pos == text.length()) {
+            throw new ParseException("Unexpected end of JSON at position", pos);
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                return number();
+        }
+    }
+
+    private Map<String, Object> object() throws ParseException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        pos++;
+        skipSpaces();
+        if (consume('}')) {
+            return result;
+        }
+        do {
+            skipSpaces();
+            if (pos == text.length() || text.charAt(pos) != '"') {
+                throw new ParseException("Expected name of JSON member at position", pos);
+            }
+            String name = string();
+            skipSpaces();
+            if (!consume(':')) {
+                throw new ParseException("Expected ':' in JSON at position", pos);
+            }
+            result.put(name, value());
+            skipSpaces();
+        } while (consume(','));
+        if (!consume('}')) {
+            throw new ParseException("Expected ',' or '}' in JSON at position", pos);
+        }
+        return result;
+    }
+
+    private List<Object> array() throws ParseException {
+        List<Object> result = new ArrayList<>();
+        pos++;
+        skipSpaces();
+        if (consume(']')) {
+            return result;
+        }
+        do {
+            result.add(value());
+            skipSpaces();
+        } while (consume(','));
+        if (!consume(']')) {
+            throw new ParseException("Expected ',' or ']' in JSON at position", pos);
+        }
+        return result;
+    }
+
+    private String string() throws ParseException {
+        StringBuilder result = new StringBuilder();
+        pos++;
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return result.toString();
+            }
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (pos == text.length()) {
+                break;
+            }
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw new ParseException("Bad unicode escape in JSON at position", pos);
+                    }
+                    try {
+                        result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new ParseException("Bad unicode escape in JSON at position", pos);
+                    }
+                    pos += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    result.append(e);
+                    break;
+                default:
+                    throw new ParseException("Bad escape in JSON at position", pos - 1);
+            }
+        }
+        throw new ParseException("Unterminated string in JSON at position", pos);
+    }
+
+    private Object literal(String word, Object value) throws ParseException {
+        if (!text.startsWith(word, pos)) {
+            throw new ParseException("Unexpected token in JSON at position", pos);
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private Double number() throws ParseException {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (start == pos || text.charAt(start) == '+') {
+            throw new ParseException("Unexpected token in JSON at position", start);
+        }
+        try {
+            return Double.parseDouble(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw new ParseException("Bad number in JSON at position", start);
+        }
+    }
+
+    private boolean consume(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && " \t\r\n".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+    }
+
+    public static String write(Object value) {
+        StringBuilder result = new StringBuilder();
+        write(value, result);
+        return result.toString();
+    }
+
+    public static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString((String) value, out);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            out.append(Double.isNaN(d) || Double.isInfinite(d) ? "null" : Double.toString(d));
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(entry.getKey().toString(), out);
+                out.append(':');
+                write(entry.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(element, out);
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Can't write " + value.getClass() + " as JSON");
+        }
+    }
+
+    private static void writeString(String s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
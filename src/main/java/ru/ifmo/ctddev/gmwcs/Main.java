@@ -2,28 +2,55 @@ package ru.ifmo.ctddev.gmwcs;
 
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
 import ru.ifmo.ctddev.gmwcs.graph.*;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
 import ru.ifmo.ctddev.gmwcs.solver.BicomponentSolver;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
+import ru.ifmo.ctddev.gmwcs.solver.HeuristicSolver;
+import ru.ifmo.ctddev.gmwcs.solver.Preprocessor;
 import ru.ifmo.ctddev.gmwcs.solver.RLTSolver;
+import ru.ifmo.ctddev.gmwcs.solver.RootedSolver;
 import ru.ifmo.ctddev.gmwcs.solver.Solver;
 import ru.ifmo.ctddev.gmwcs.solver.SolverException;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.List;
 
 import static java.util.Arrays.asList;
 
 public class Main {
+    private static OptionSpec<String> flow;
+    private static OptionSpec<Integer> jobs;
+    private static OptionSpec<Integer> pathBudget;
+
     public static OptionSet parseArgs(String args[]) throws IOException {
         OptionParser optionParser = new OptionParser();
         optionParser.allowsUnrecognizedOptions();
         optionParser.acceptsAll(asList("h", "help"), "Print a short help message");
         optionParser.accepts("version");
         OptionSet optionSet = optionParser.parse(args);
-        optionParser.acceptsAll(asList("n", "nodes"), "Node list file").withRequiredArg().required();
-        optionParser.acceptsAll(asList("e", "edges"), "Edge list file").withRequiredArg().required();
+        optionParser.acceptsAll(asList("b", "binary"), "Binary graph file, used instead of node and edge lists")
+                .withRequiredArg();
+        optionParser.acceptsAll(asList("n", "nodes"), "Node list file").withRequiredArg()
+                .requiredUnless("binary", "batch", "server");
+        optionParser.acceptsAll(asList("e", "edges"), "Edge list file").withRequiredArg()
+                .requiredUnless("binary", "batch", "server");
+        optionParser.accepts("batch", "Solve every instance listed in a manifest (nodes edges [root] per line) "
+                + "or found in a directory (*nodes with matching *edges)").withRequiredArg();
+        jobs = optionParser.accepts("jobs", "Number of instances solved concurrently in batch mode (default: threads)")
+                .withRequiredArg().ofType(Integer.class);
+        optionParser.accepts("summary", "Summary file of batch mode (default: stdout)").withRequiredArg();
+        optionParser.accepts("server", "Serve line-delimited JSON solve requests on this local port (0 - any); "
+                + "the input graph, if given, is preloaded as \"default\"").withRequiredArg().ofType(Integer.class);
+        optionParser.accepts("server-shutdown", "Let server clients stop the daemon with the shutdown operation");
+        optionParser.accepts("convert", "Save the input graph to a binary graph file and exit").withRequiredArg();
+        optionParser.acceptsAll(asList("s", "scores"), "Node score files, one job per file, solved on the same topology")
+                .withRequiredArg().withValuesSeparatedBy(',');
+        optionParser.accepts("edge-scores", "Edge score files, paired with node score files")
+                .withRequiredArg().withValuesSeparatedBy(',');
         optionParser.accepts("root", "Root node").withRequiredArg();
         optionParser.acceptsAll(asList("m", "threads"), "Number of threads").withRequiredArg()
                 .ofType(Integer.class).defaultsTo(1);
@@ -33,6 +60,19 @@ public class Main {
                 .withRequiredArg().ofType(Double.class).defaultsTo(0.3);
         optionParser.acceptsAll(asList("r", "rooted"), "Maximum share of time allocated for solving rooted parts")
                 .withRequiredArg().ofType(Double.class).defaultsTo(0.3);
+        optionParser.accepts("solver", "Solver engine: rlt (exact, requires CPLEX) or heuristic (anytime, without CPLEX)")
+                .withRequiredArg().defaultsTo("rlt");
+        optionParser.accepts("connectivity", "Connectivity model: distance (big-M distances) or cut (lazy cut constraints)")
+                .withRequiredArg().defaultsTo("distance");
+        flow = optionParser.acceptsAll(asList("f", "flow"), "Max flow algorithm for cut separation: ek, dinic, pr or inc")
+                .withRequiredArg().defaultsTo("ek");
+        pathBudget = optionParser.accepts("path-budget",
+                "Edge relaxations per node in shortest path elimination (0 - disabled)")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(Preprocessor.DEFAULT_PATH_BUDGET);
+        optionParser.accepts("io", "Input reader: simple or mapped").withRequiredArg().defaultsTo("simple");
+        optionParser.accepts("subnet", "Write only the selected subnetwork to output files");
+        optionParser.accepts("stats", "Write timings and reduction statistics of every stage as JSON to this file")
+                .withRequiredArg();
         if (optionSet.has("h")) {
             optionParser.printHelpOn(System.out);
             return null;
@@ -53,6 +93,35 @@ public class Main {
                 System.err.println("Sum of shares of rooted and unrooted parts must be <= 1.0");
                 return null;
             }
+            FlowAlgorithm.byName(optionSet.valueOf(flow));
+            if (optionSet.has("scores") && optionSet.has("edge-scores")
+                    && optionSet.valuesOf("scores").size() != optionSet.valuesOf("edge-scores").size()) {
+                System.err.println("Numbers of node and edge score files must be equal");
+                return null;
+            }
+            if (optionSet.valueOf(pathBudget) < 0) {
+                System.err.println("Path elimination budget must be non-negative");
+                return null;
+            }
+            if (optionSet.has(jobs) && optionSet.valueOf(jobs) < 1) {
+                System.err.println("Number of concurrent jobs must be positive");
+                return null;
+            }
+            String engine = (String) optionSet.valueOf("solver");
+            if (!engine.equals("rlt") && !engine.equals("heuristic")) {
+                System.err.println("Unknown solver: " + engine);
+                return null;
+            }
+            String connectivity = (String) optionSet.valueOf("connectivity");
+            if (!connectivity.equals("distance") && !connectivity.equals("cut")) {
+                System.err.println("Unknown connectivity model: " + connectivity);
+                return null;
+            }
+            String io = (String) optionSet.valueOf("io");
+            if (!io.equals("simple") && !io.equals("mapped")) {
+                System.err.println("Unknown input reader: " + io);
+                return null;
+            }
         } catch (Exception e) {
             System.err.println(e.getMessage());
             System.err.println();
@@ -73,41 +142,68 @@ public class Main {
             // We can't say anything. Error occurred while printing to stderr.
             return;
         }
-        long timelimit = (Long) optionSet.valueOf("timelimit");
-        TimeLimit tl = new TimeLimit(timelimit <= 0 ? Double.POSITIVE_INFINITY : timelimit);
-        double rsh = (Double) optionSet.valueOf("r");
-        double ush = (Double) optionSet.valueOf("u");
-        TimeLimit biggestTL = tl.subLimit(1.0 - ush);
         int threadsNum = (Integer) optionSet.valueOf("threads");
-        File nodeFile = new File((String) optionSet.valueOf("nodes"));
-        File edgeFile = new File((String) optionSet.valueOf("edges"));
-        RLTSolver rltSolver = new RLTSolver();
-        rltSolver.setThreadsNum(threadsNum);
-        Solver solver = null;
-        if (!optionSet.has("root")) {
-            BicomponentSolver comp_solver = new BicomponentSolver(rltSolver);
-            comp_solver.setUnrootedTL(tl);
-            comp_solver.setRootedTL(biggestTL.subLimit(ush == 1.0 ? 0 : rsh / (1.0 - ush)));
-            comp_solver.setTLForBiggest(biggestTL);
-            solver = comp_solver;
+        if (optionSet.has("batch")) {
+            batch(optionSet, threadsNum);
+            return;
+        }
+        if (optionSet.has("server") && !optionSet.has("binary") && !optionSet.has("nodes")) {
+            try {
+                serve(optionSet, threadsNum, null);
+            } catch (IOException | ParseException e) {
+                System.err.println("Couldn't start server: " + e.getMessage());
+            }
+            return;
+        }
+        SimpleIO graphIO;
+        if (optionSet.has("binary")) {
+            File binaryFile = new File((String) optionSet.valueOf("binary"));
+            graphIO = new BinaryIO(binaryFile, new File(binaryFile.toString() + ".nodes.out"),
+                    new File(binaryFile.toString() + ".edges.out"));
         } else {
-            solver = rltSolver;
-            solver.setTimeLimit(tl);
+            File nodeFile = new File((String) optionSet.valueOf("nodes"));
+            File edgeFile = new File((String) optionSet.valueOf("edges"));
+            File nodeOut = new File(nodeFile.toString() + ".out");
+            File edgeOut = new File(edgeFile.toString() + ".out");
+            if (optionSet.valueOf("io").equals("simple")) {
+                graphIO = new SimpleIO(nodeFile, nodeOut, edgeFile, edgeOut);
+            } else {
+                MappedIO mappedIO = new MappedIO(nodeFile, nodeOut, edgeFile, edgeOut);
+                mappedIO.setThreadsNum(threadsNum);
+                graphIO = mappedIO;
+            }
         }
-        GraphIO graphIO = new SimpleIO(nodeFile, new File(nodeFile.toString() + ".out"),
-                edgeFile, new File(edgeFile.toString() + ".out"));
+        graphIO.setSubnetOnly(optionSet.has("subnet"));
+        Stats stats = new Stats();
         try {
-            Graph graph = graphIO.read();
-            if (optionSet.has("root")) {
-                Node root = graphIO.nodeByName((String) optionSet.valueOf("root"));
-                if (root == null) {
-                    System.err.println("Chosen root node is not presented in the graph");
+            if (optionSet.has("convert")) {
+                BinaryIO.convert(graphIO, new File((String) optionSet.valueOf("convert")));
+                return;
+            }
+            if (optionSet.has("server")) {
+                serve(optionSet, threadsNum, graphIO);
+                return;
+            }
+            if (!optionSet.has("scores") && !optionSet.has("edge-scores")) {
+                solve(optionSet, threadsNum, graphIO, stats, new CutPool());
+                writeStats(optionSet, stats);
+                return;
+            }
+            List<?> nodeScores = optionSet.valuesOf("scores");
+            List<?> edgeScores = optionSet.valuesOf("edge-scores");
+            ScoreIO scoreIO = new ScoreIO(graphIO);
+            CutPool cutPool = new CutPool();
+            for (int i = 0; i < Math.max(nodeScores.size(), edgeScores.size()); i++) {
+                File nodeScore = nodeScores.isEmpty() ? null : new File((String) nodeScores.get(i));
+                File edgeScore = edgeScores.isEmpty() ? null : new File((String) edgeScores.get(i));
+                String base = (nodeScore == null ? edgeScore : nodeScore).toString();
+                scoreIO.setScores(nodeScore, edgeScore);
+                scoreIO.setOutput(new File(base + ".nodes.out"), new File(base + ".edges.out"));
+                if (!solve(optionSet, threadsNum, scoreIO, stats, cutPool)) {
                     return;
                 }
-                rltSolver.setRoot(root);
             }
-            List<Unit> units = solver.solve(graph);
-            graphIO.write(units);
+            writeStats(optionSet, stats);
         } catch (ParseException e) {
             System.err.println("Couldn't parse input files: " + e.getMessage() + " " + e.getErrorOffset());
         } catch (SolverException e) {
@@ -116,4 +212,107 @@ public class Main {
             System.err.println("Error occurred while reading/writing input/output files");
         }
     }
+
+    private static void serve(OptionSet optionSet, int threadsNum, SimpleIO graphIO)
+            throws IOException, ParseException {
+        Server server = new Server((threads, root, timelimit, cutPool) -> createSolver(optionSet, threads, root,
+                timelimit, new Stats(), cutPool));
+        server.setThreadsNum(threadsNum);
+        server.setTimeLimit((Long) optionSet.valueOf("timelimit"));
+        server.setShutdownAllowed(optionSet.has("server-shutdown"));
+        if (graphIO != null) {
+            server.load("default", graphIO);
+        }
+        int port = server.start((Integer) optionSet.valueOf("server"));
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+    }
+
+    private static void batch(OptionSet optionSet, int threadsNum) {
+        Batch batch = new Batch((threads, root, cutPool) -> createSolver(optionSet, threads, root,
+                (Long) optionSet.valueOf("timelimit"), new Stats(), cutPool));
+        batch.setThreadsNum(threadsNum);
+        if (optionSet.has(jobs)) {
+            batch.setJobs(optionSet.valueOf(jobs));
+        }
+        batch.setSubnetOnly(optionSet.has("subnet"));
+        batch.setMappedIO(optionSet.valueOf("io").equals("mapped"));
+        try {
+            List<Batch.Result> results = batch.solve(Batch.instances(new File((String) optionSet.valueOf("batch"))));
+            if (optionSet.has("summary")) {
+                try (Writer writer = new BufferedWriter(new FileWriter((String) optionSet.valueOf("summary")))) {
+                    Batch.writeSummary(results, writer);
+                }
+            } else {
+                Batch.writeSummary(results, new OutputStreamWriter(System.out));
+            }
+        } catch (ParseException e) {
+            System.err.println("Couldn't parse batch manifest: " + e.getMessage() + " " + e.getErrorOffset());
+        } catch (IOException e) {
+            System.err.println("Error occurred while reading batch manifest or writing summary");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeStats(OptionSet optionSet, Stats stats) throws IOException {
+        if (optionSet.has("stats")) {
+            stats.write(new File((String) optionSet.valueOf("stats")));
+        }
+    }
+
+    private static Solver createSolver(OptionSet optionSet, int threadsNum, Node root, double timelimit,
+                                       Stats stats, CutPool cutPool) {
+        TimeLimit tl = new TimeLimit(timelimit <= 0 ? Double.POSITIVE_INFINITY : timelimit);
+        double rsh = (Double) optionSet.valueOf("r");
+        double ush = (Double) optionSet.valueOf("u");
+        TimeLimit biggestTL = tl.subLimit(1.0 - ush);
+        RootedSolver rootedSolver;
+        if (optionSet.valueOf("solver").equals("heuristic")) {
+            rootedSolver = new HeuristicSolver();
+        } else {
+            RLTSolver rltSolver = new RLTSolver();
+            rltSolver.setFlowAlgorithm(FlowAlgorithm.byName(optionSet.valueOf(flow)));
+            rltSolver.setLazyConnectivity(optionSet.valueOf("connectivity").equals("cut"));
+            rootedSolver = rltSolver;
+        }
+        rootedSolver.setThreadsNum(threadsNum);
+        rootedSolver.setStats(stats);
+        if (root == null) {
+            BicomponentSolver comp_solver = new BicomponentSolver(rootedSolver);
+            comp_solver.setCutPool(cutPool);
+            comp_solver.setThreadsNum(threadsNum);
+            comp_solver.setPathBudget(optionSet.valueOf(pathBudget));
+            comp_solver.setUnrootedTL(tl);
+            comp_solver.setRootedTL(biggestTL.subLimit(ush == 1.0 ? 0 : rsh / (1.0 - ush)));
+            comp_solver.setTLForBiggest(biggestTL);
+            return comp_solver;
+        }
+        rootedSolver.setRoot(root);
+        rootedSolver.setCutPool(cutPool);
+        rootedSolver.setTimeLimit(tl);
+        return rootedSolver;
+    }
+
+    private static boolean solve(OptionSet optionSet, int threadsNum, GraphIO graphIO, Stats stats,
+                                 CutPool cutPool) throws IOException, ParseException, SolverException {
+        Stats.Timer timer = stats.start("read");
+        CSRGraph graph = graphIO.readCSR();
+        timer.stop();
+        timer.stage().size(graph.vertexCount(), graph.edgeCount());
+        Node root = null;
+        if (optionSet.has("root")) {
+            root = graphIO.nodeByName((String) optionSet.valueOf("root"));
+            if (root == null) {
+                System.err.println("Chosen root node is not presented in the graph");
+                return false;
+            }
+        }
+        Solver solver = createSolver(optionSet, threadsNum, root, (Long) optionSet.valueOf("timelimit"), stats,
+                cutPool);
+        List<Unit> units = solver.solve(graph);
+        timer = stats.start("write");
+        graphIO.write(units);
+        timer.stop();
+        return true;
+    }
 }
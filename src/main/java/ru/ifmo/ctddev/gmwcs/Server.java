@@ -0,0 +1,437 @@
+package ru.ifmo.ctddev.gmwcs;
+
+import ru.ifmo.ctddev.gmwcs.graph.*;
+import ru.ifmo.ctddev.gmwcs.solver.BicomponentSolver;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
+import ru.ifmo.ctddev.gmwcs.solver.Solver;
+import ru.ifmo.ctddev.gmwcs.solver.SolverException;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Server implements Closeable {
+    private final SolverFactory factory;
+    private final Map<String, Resident> graphs;
+    private final Set<Socket> clients;
+    private final AtomicInteger solving;
+    private Semaphore cores;
+    private int threads;
+    private double timeLimit;
+    private int cacheSize;
+    private volatile boolean shutdownAllowed;
+    private ServerSocket socket;
+    private ExecutorService pool;
+
+    public Server(SolverFactory factory) {
+        this.factory = factory;
+        graphs = new ConcurrentHashMap<>();
+        clients = ConcurrentHashMap.newKeySet();
+        solving = new AtomicInteger();
+        threads = 1;
+        cacheSize = 16;
+    }
+
+    public void setThreadsNum(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    public void setTimeLimit(double timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    public void setShutdownAllowed(boolean shutdownAllowed) {
+        this.shutdownAllowed = shutdownAllowed;
+    }
+
+    public void load(String id, SimpleIO io) throws IOException, ParseException {
+        ScoreIO scoreIO = new ScoreIO(io);
+        scoreIO.readCSR();
+        graphs.put(id, new Resident(scoreIO, cacheSize));
+    }
+
+    public int start(int port) throws IOException {
+        socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        cores = new Semaphore(threads);
+        pool = Executors.newCachedThreadPool();
+        pool.execute(this::accept);
+        return socket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                clients.add(client);
+                pool.execute(() -> serve(client));
+            } catch (IOException e) {
+                // Socket is closed
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                boolean shutdown = handle(line, out);
+                out.flush();
+                if (shutdown) {
+                    close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client has gone
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private boolean handle(String line, Writer out) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        boolean shutdown = false;
+        try {
+            Object parsed = Json.parse(line);
+            if (!(parsed instanceof Map)) {
+                throw new ParseException("Request must be a JSON object at position", 0);
+            }
+            Map<?, ?> request = (Map<?, ?>) parsed;
+            if (request.containsKey("id")) {
+                response.put("id", request.get("id"));
+            }
+            response.put("ok", true);
+            String op = string(request, "op", true);
+            switch (op) {
+                case "load":
+                    load(request, response);
+                    break;
+                case "unload":
+                    if (graphs.remove(string(request, "graph", true)) == null) {
+                        throw new SolverException("Unknown graph");
+                    }
+                    break;
+                case "graphs":
+                    List<Object> list = new ArrayList<>();
+                    for (Map.Entry<String, Resident> entry : graphs.entrySet()) {
+                        Map<String, Object> graph = new LinkedHashMap<>();
+                        graph.put("graph", entry.getKey());
+                        graph.put("nodes", entry.getValue().graph.vertexCount());
+                        graph.put("edges", entry.getValue().graph.edgeCount());
+                        list.add(graph);
+                    }
+                    response.put("graphs", list);
+                    break;
+                case "solve":
+                    solve(request, response);
+                    break;
+                case "shutdown":
+                    if (!shutdownAllowed) {
+                        throw new SolverException("Shutdown is disabled");
+                    }
+                    shutdown = true;
+                    break;
+                default:
+                    throw new SolverException("Unknown operation " + op);
+            }
+        } catch (ParseException e) {
+            error(response, e.getMessage() + " " + e.getErrorOffset());
+        } catch (SolverException e) {
+            error(response, e.getMessage());
+        } catch (IOException e) {
+            error(response, "Error occurred while reading input files: " + e.getMessage());
+        } catch (RuntimeException e) {
+            error(response, "Unexpected error: " + e);
+        }
+        StringBuilder sb = new StringBuilder();
+        Json.write(response, sb);
+        out.write(sb.append('\n').toString());
+        return shutdown;
+    }
+
+    private static void error(Map<String, Object> response, String message) {
+        response.put("ok", false);
+        response.put("error", message);
+    }
+
+    private void load(Map<?, ?> request, Map<String, Object> response)
+            throws IOException, ParseException, SolverException {
+        String id = string(request, "graph", true);
+        String binary = string(request, "binary", false);
+        long time = System.nanoTime();
+        SimpleIO io;
+        if (binary != null) {
+            io = new BinaryIO(new File(binary), null, null);
+        } else {
+            MappedIO mappedIO = new MappedIO(new File(string(request, "nodes", true)), null,
+                    new File(string(request, "edges", true)), null);
+            mappedIO.setThreadsNum(threads);
+            io = mappedIO;
+        }
+        load(id, io);
+        Resident resident = graphs.get(id);
+        response.put("graph", id);
+        response.put("nodes", resident.graph.vertexCount());
+        response.put("edges", resident.graph.edgeCount());
+        response.put("time", (System.nanoTime() - time) / 1e9);
+    }
+
+    private void solve(Map<?, ?> request, Map<String, Object> response)
+            throws IOException, ParseException, SolverException {
+        String id = string(request, "graph", true);
+        Resident resident = graphs.get(id);
+        if (resident == null) {
+            throw new SolverException("Unknown graph " + id);
+        }
+        String rootName = string(request, "root", false);
+        Object limit = request.get("timeLimit");
+        if (limit != null && !(limit instanceof Double)) {
+            throw new SolverException("Time limit must be a number");
+        }
+        String key = Json.write(Arrays.asList(request.get("scores"), request.get("edgeScores"), rootName, limit));
+        synchronized (resident) {
+            Map<String, Object> cached = resident.cache.get(key);
+            if (cached != null) {
+                response.putAll(cached);
+                response.put("cached", true);
+                return;
+            }
+        }
+        long time = System.nanoTime();
+        ScoreIO io = resident.io;
+        double[] nodeScores = scores(request.get("scores"), resident.graph.vertexCount(), io, "node");
+        double[] edgeScores = scores(request.get("edgeScores"), resident.graph.edgeCount(), null, "edge");
+        CSRGraph graph = null;
+        Node root = null;
+        if (rootName != null) {
+            int v = io.indexOf(rootName);
+            if (v == -1) {
+                throw new SolverException("Chosen root node is not presented in the graph");
+            }
+            graph = io.score(nodeScores, edgeScores);
+            root = graph.node(v);
+        }
+        int granted = acquire();
+        Solver solver;
+        List<Unit> units;
+        try {
+            solver = factory.create(granted, root, limit == null ? timeLimit : (Double) limit, resident.cutPool);
+            solver.suppressOutput();
+            if (graph == null && solver instanceof BicomponentSolver) {
+                BicomponentSolver bicomponentSolver = (BicomponentSolver) solver;
+                String scoresKey = Json.write(Arrays.asList(request.get("scores"), request.get("edgeScores")));
+                units = bicomponentSolver.solveReduced(reduced(resident, scoresKey, bicomponentSolver,
+                        nodeScores, edgeScores));
+            } else {
+                units = solver.solve(graph == null ? io.score(nodeScores, edgeScores) : graph);
+            }
+        } finally {
+            release(granted);
+        }
+        if (units == null) {
+            units = Collections.emptyList();
+        }
+        double objective = 0.0;
+        List<Object> nodes = new ArrayList<>();
+        List<Object> edges = new ArrayList<>();
+        for (Unit unit : units) {
+            if (unit instanceof Node) {
+                int v = resident.graph.indexOf((Node) unit);
+                objective += score(nodeScores, v, resident.graph.nodeWeight(v));
+                nodes.add(io.nodeName(v));
+            } else {
+                int e = resident.graph.indexOf((Edge) unit);
+                objective += score(edgeScores, e, resident.graph.edgeWeight(e));
+                edges.add(Arrays.asList(e, io.nodeName(resident.graph.source(e)),
+                        io.nodeName(resident.graph.target(e))));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("graph", id);
+        result.put("objective", objective);
+        result.put("optimal", solver.isSolvedToOptimality());
+        result.put("gap", solver.getGap());
+        result.put("time", (System.nanoTime() - time) / 1e9);
+        result.put("nodes", nodes);
+        result.put("edges", edges);
+        if (solver.isSolvedToOptimality() && resident.cacheSize > 0) {
+            synchronized (resident) {
+                resident.cache.put(key, result);
+            }
+        }
+        response.putAll(result);
+        response.put("cached", false);
+        response.put("threads", granted);
+    }
+
+    private static CSRGraph reduced(Resident resident, String key, BicomponentSolver solver, double[] nodeScores,
+                                    double[] edgeScores) throws ParseException, SolverException {
+        FutureTask<CSRGraph> task;
+        boolean owner = false;
+        synchronized (resident) {
+            task = resident.reduced.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> solver.preprocess(resident.io.score(nodeScores, edgeScores)));
+                resident.reduced.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted");
+        } catch (ExecutionException e) {
+            synchronized (resident) {
+                resident.reduced.remove(key, task);
+            }
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SolverException(e.getCause().getMessage());
+        }
+    }
+
+    private static double score(double[] scores, int i, double base) {
+        return scores == null || Double.isNaN(scores[i]) ? base : scores[i];
+    }
+
+    private int acquire() throws SolverException {
+        int share = Math.max(1, threads / solving.incrementAndGet());
+        try {
+            cores.acquire();
+        } catch (InterruptedException e) {
+            solving.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted");
+        }
+        int granted = 1;
+        while (granted < share && cores.tryAcquire()) {
+            granted++;
+        }
+        return granted;
+    }
+
+    private void release(int granted) {
+        cores.release(granted);
+        solving.decrementAndGet();
+    }
+
+    private static double[] scores(Object value, int size, ScoreIO names, String unit) throws SolverException {
+        if (value == null) {
+            return null;
+        }
+        double[] scores = new double[size];
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            if (list.size() != size) {
+                throw new SolverException("Expected " + size + " " + unit + " scores, found " + list.size());
+            }
+            for (int i = 0; i < size; i++) {
+                scores[i] = number(list.get(i), unit);
+            }
+            return scores;
+        }
+        if (!(value instanceof Map) || names == null) {
+            throw new SolverException("Wrong format of " + unit + " scores");
+        }
+        Arrays.fill(scores, Double.NaN);
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            int v = names.indexOf((String) entry.getKey());
+            if (v == -1) {
+                throw new SolverException("There's no such vertex in score list: " + entry.getKey());
+            }
+            scores[v] = number(entry.getValue(), unit);
+        }
+        return scores;
+    }
+
+    private static double number(Object value, String unit) throws SolverException {
+        if (!(value instanceof Double)) {
+            throw new SolverException("Expected floating point value of " + unit + " score");
+        }
+        return (Double) value;
+    }
+
+    private static String string(Map<?, ?> request, String name, boolean required) throws SolverException {
+        Object value = request.get(name);
+        if (value == null && !required) {
+            return null;
+        }
+        if (!(value instanceof String)) {
+            throw new SolverException("Expected string member " + name);
+        }
+        return (String) value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket == null) {
+            return;
+        }
+        socket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        pool.shutdown();
+    }
+
+    public interface SolverFactory {
+        Solver create(int threads, Node root, double timeLimit, CutPool cutPool);
+    }
+
+    private static class Resident {
+        final ScoreIO io;
+        final CSRGraph graph;
+        final int cacheSize;
+        final Map<String, Map<String, Object>> cache;
+        final Map<String, FutureTask<CSRGraph>> reduced;
+        final CutPool cutPool;
+
+        Resident(ScoreIO io, int cacheSize) throws IOException, ParseException {
+            this.io = io;
+            this.cacheSize = cacheSize;
+            graph = io.readCSR();
+            cutPool = new CutPool();
+            cache = lru();
+            reduced = lru();
+        }
+
+        private <V> Map<String, V> lru() {
+            return new LinkedHashMap<String, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ru.ifmo.ctddev.gmwcs;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Stats {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private final Map<String, Stage> stages;
+
+    public Stats() {
+        stages = new LinkedHashMap<>();
+    }
+
+    public synchronized Stage stage(String name) {
+        return stages.computeIfAbsent(name, Stage::new);
+    }
+
+    public synchronized List<Stage> stages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    public Timer start(String stage) {
+        return new Timer(stage(stage), 0);
+    }
+
+    // For work on threads the JVM can't see, e.g. CPLEX: cpu is reported as wall * threads
+    public Timer startEstimate(String stage, int threads) {
+        return new Timer(stage(stage), threads);
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", Stats.class.getPackage().getImplementationVersion());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (Stage stage : stages()) {
+            stages.put(stage.name, stage.toMap());
+        }
+        result.put("stages", stages);
+        return result;
+    }
+
+    public void write(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(Json.write(toMap()));
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Json.write(toMap());
+    }
+
+    public static class Stage {
+        private final String name;
+        private final Map<String, Long> counters;
+        private int calls;
+        private double wall;
+        private double cpu;
+        private boolean estimated;
+        private int peakNodes;
+        private int peakEdges;
+
+        private Stage(String name) {
+            this.name = name;
+            counters = new LinkedHashMap<>();
+        }
+
+        public synchronized void count(String counter, long value) {
+            counters.merge(counter, value, Long::sum);
+        }
+
+        public synchronized void size(int nodes, int edges) {
+            peakNodes = Math.max(peakNodes, nodes);
+            peakEdges = Math.max(peakEdges, edges);
+        }
+
+        private synchronized void add(double wall, double cpu, boolean estimated) {
+            calls++;
+            this.wall += wall;
+            this.cpu += cpu;
+            this.estimated |= estimated;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized int getCalls() {
+            return calls;
+        }
+
+        public synchronized double getWallTime() {
+            return wall;
+        }
+
+        public synchronized double getCpuTime() {
+            return cpu;
+        }
+
+        public synchronized boolean isCpuEstimated() {
+            return estimated;
+        }
+
+        public synchronized int getPeakNodes() {
+            return peakNodes;
+        }
+
+        public synchronized int getPeakEdges() {
+            return peakEdges;
+        }
+
+        public synchronized long getCounter(String counter) {
+            return counters.getOrDefault(counter, 0L);
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("calls", calls);
+            result.put("wall", wall);
+            result.put("cpu", cpu);
+            if (estimated) {
+                result.put("cpuEstimated", true);
+            }
+            result.put("peakNodes", peakNodes);
+            result.put("peakEdges", peakEdges);
+            result.put("counters", new LinkedHashMap<>(counters));
+            return result;
+        }
+    }
+
+    public static class Timer {
+        private final Stage stage;
+        private final int threads;
+        private final Thread owner;
+        private final AtomicLong workers;
+        private final long wall;
+        private final long cpu;
+
+        private Timer(Stage stage, int threads) {
+            this.stage = stage;
+            this.threads = threads;
+            owner = Thread.currentThread();
+            workers = new AtomicLong();
+            wall = System.nanoTime();
+            cpu = cpuTime();
+        }
+
+        public Stage stage() {
+            return stage;
+        }
+
+        // Runs a task and charges its cpu to this timer when it runs on another thread
+        public void track(Runnable task) {
+            if (Thread.currentThread() == owner) {
+                task.run();
+                return;
+            }
+            long before = cpuTime();
+            try {
+                task.run();
+            } finally {
+                workers.addAndGet(cpuTime() - before);
+            }
+        }
+
+        public void include(Timer other) {
+            workers.addAndGet(other.workers.get());
+        }
+
+        public void stop() {
+            double elapsed = (System.nanoTime() - wall) / 1e9;
+            if (threads > 0) {
+                stage.add(elapsed, elapsed * threads, true);
+            } else {
+                stage.add(elapsed, (cpuTime() - cpu + workers.get()) / 1e9, false);
+            }
+        }
+    }
+}
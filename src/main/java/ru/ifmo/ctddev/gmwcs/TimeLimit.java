@@ -19,7 +19,7 @@ public class TimeLimit {
         tl = parent.getRemainingTime() * fraction;
     }
 
-    public void spend(double time) {
+    public synchronized void spend(double time) {
         tl -= time;
         if (parent != null) {
             parent.spend(time);
@@ -30,7 +30,7 @@ public class TimeLimit {
         return new TimeLimit(this, fraction);
     }
 
-    public double getRemainingTime() {
+    public synchronized double getRemainingTime() {
         return tl;
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+public interface Adjacency {
+    int vertexCount();
+
+    int edgeCount();
+
+    int degreeOf(int v);
+
+    int neighbor(int v, int i);
+
+    int incidentEdge(int v, int i);
+
+    int source(int e);
+
+    int target(int e);
+
+    default int opposite(int v, int e) {
+        int s = source(e);
+        return s == v ? target(e) : s;
+    }
+
+    Node node(int v);
+
+    Edge edge(int e);
+
+    int indexOf(Node v);
+}
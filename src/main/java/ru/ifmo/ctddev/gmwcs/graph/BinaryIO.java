@@ -0,0 +1,300 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryIO extends SimpleIO {
+    public static final long MAGIC = 0x4E494253_43574D47L;
+    public static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private File file;
+    private Map<String, Integer> index;
+
+    public BinaryIO(File file, File nodeOut, File edgeOut) {
+        super(null, nodeOut, null, edgeOut);
+        this.file = file;
+    }
+
+    public static void convert(SimpleIO source, File target) throws IOException, ParseException {
+        save(source.readCSR(), source.nodeList, target);
+    }
+
+    public static void save(CSRGraph graph, List<String> names, File target) throws IOException {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        byte[][] encoded = new byte[n][];
+        long nameBytes = 0;
+        for (int v = 0; v < n; v++) {
+            encoded[v] = names.get(v).getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[v].length;
+        }
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putLong(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(m);
+            out.putInt(graph.offset(n));
+            out.putLong(nameBytes);
+            long offset = 0;
+            for (int v = 0; v < n; v++) {
+                out.putLong(offset);
+                offset += encoded[v].length;
+            }
+            out.putLong(offset);
+            for (int v = 0; v < n; v++) {
+                out.put(encoded[v]);
+            }
+            out.align();
+            for (int v = 0; v <= n; v++) {
+                out.putInt(graph.offset(v));
+            }
+            out.align();
+            for (int i = 0; i < graph.offset(n); i++) {
+                out.putInt(graph.adjVertex(i));
+            }
+            out.align();
+            for (int i = 0; i < graph.offset(n); i++) {
+                out.putInt(graph.adjEdge(i));
+            }
+            out.align();
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.source(e));
+            }
+            out.align();
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.target(e));
+            }
+            out.align();
+            for (int v = 0; v < n; v++) {
+                out.putInt(graph.node(v).getNum());
+            }
+            out.align();
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.edge(e).getNum());
+            }
+            out.align();
+            for (int v = 0; v < n; v++) {
+                out.putDouble(graph.node(v).getWeight());
+            }
+            for (int e = 0; e < m; e++) {
+                out.putDouble(graph.edge(e).getWeight());
+            }
+            out.flush();
+        }
+    }
+
+    @Override
+    public CSRGraph readCSR() throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            ByteBuffer header = in.section(HEADER);
+            if (header.getLong() != MAGIC) {
+                throw new ParseException("Not a binary graph file", 0);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new ParseException("Unsupported binary graph version " + version, 8);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int adjacency = header.getInt();
+            long nameBytes = header.getLong();
+            if (n < 0 || m < 0 || adjacency < 0 || nameBytes < 0 || HEADER + 8L * (n + 1) + nameBytes > channel.size()) {
+                throw new ParseException("Corrupted binary graph header", 0);
+            }
+            long[] nameOffsets = new long[n + 1];
+            in.section(8L * (n + 1)).asLongBuffer().get(nameOffsets);
+            for (int v = 0; v < n; v++) {
+                if (nameOffsets[v] < 0 || nameOffsets[v] > nameOffsets[v + 1]) {
+                    throw new ParseException("Corrupted binary graph name dictionary", HEADER);
+                }
+            }
+            if (nameOffsets[n] != nameBytes) {
+                throw new ParseException("Corrupted binary graph name dictionary", HEADER);
+            }
+            ByteBuffer names = in.section(nameBytes);
+            int[] offsets = in.ints(n + 1);
+            int[] adjVertex = in.ints(adjacency);
+            int[] adjEdge = in.ints(adjacency);
+            int[] sources = in.ints(m);
+            int[] targets = in.ints(m);
+            int[] nodeNums = in.ints(n);
+            int[] edgeNums = in.ints(m);
+            double[] nodeWeights = in.doubles(n);
+            double[] edgeWeights = in.doubles(m);
+            if (!valid(n, m, offsets, adjVertex, adjEdge, sources, targets)) {
+                throw new ParseException("Corrupted binary graph file", 0);
+            }
+            Node[] nodes = new Node[n];
+            for (int v = 0; v < n; v++) {
+                nodes[v] = new Node(nodeNums[v], nodeWeights[v]);
+            }
+            Edge[] edges = new Edge[m];
+            for (int e = 0; e < m; e++) {
+                edges[e] = new Edge(edgeNums[e], edgeWeights[e]);
+            }
+            graph = new CSRGraph(nodes, edges, sources, targets, offsets, adjVertex, adjEdge);
+            nodeList = new Names(names, nameOffsets);
+            index = null;
+            return graph;
+        }
+    }
+
+    private static boolean valid(int n, int m, int[] offsets, int[] adjVertex, int[] adjEdge,
+                                 int[] sources, int[] targets) {
+        if (offsets[0] != 0 || offsets[n] != adjVertex.length) {
+            return false;
+        }
+        for (int v = 0; v < n; v++) {
+            if (offsets[v] > offsets[v + 1]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < adjVertex.length; i++) {
+            if (adjVertex[i] < 0 || adjVertex[i] >= n || adjEdge[i] < 0 || adjEdge[i] >= m) {
+                return false;
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            if (sources[e] < 0 || sources[e] >= n || targets[e] < 0 || targets[e] >= n) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Node nodeByName(String name) {
+        if (index == null) {
+            index = new HashMap<>();
+            for (int v = 0; v < nodeList.size(); v++) {
+                index.put(nodeList.get(v), v);
+            }
+        }
+        Integer v = index.get(name);
+        return v == null ? null : graph.node(v);
+    }
+
+    private static class Names extends AbstractList<String> {
+        private final ByteBuffer bytes;
+        private final long[] offsets;
+
+        Names(ByteBuffer bytes, long[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public String get(int v) {
+            byte[] name = new byte[(int) (offsets[v + 1] - offsets[v])];
+            ByteBuffer slice = bytes.duplicate();
+            slice.position((int) offsets[v]);
+            slice.get(name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int size() {
+            return offsets.length - 1;
+        }
+    }
+
+    private static class Input {
+        private final FileChannel channel;
+        private long position;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer section(long length) throws IOException, ParseException {
+            if (length > Integer.MAX_VALUE || position + length > channel.size()) {
+                throw new ParseException("Truncated binary graph file", (int) Math.min(position, Integer.MAX_VALUE));
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            position += (length + 7) & ~7L;
+            return buffer;
+        }
+
+        int[] ints(int count) throws IOException, ParseException {
+            int[] result = new int[count];
+            section(4L * count).asIntBuffer().get(result);
+            return result;
+        }
+
+        double[] doubles(int count) throws IOException, ParseException {
+            double[] result = new double[count];
+            section(8L * count).asDoubleBuffer().get(result);
+            return result;
+        }
+    }
+
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, length);
+                i += length;
+            }
+        }
+
+        void align() throws IOException {
+            while (((written + buffer.position()) & 7) != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -1,123 +1,212 @@
 package ru.ifmo.ctddev.gmwcs.graph;
 
-import java.util.*;
+import java.util.Arrays;
 
 public class Blocks {
-    private Graph graph;
-    private Map<Node, Integer> enter;
-    private Map<Node, Integer> up;
-    private Stack<Edge> stack;
-    private Set<Set<Node>> components;
-    private Set<Node> cutpoints;
-    private Node root;
-    private Map<Node, List<Set<Node>>> intersection;
-    private Map<Node, Set<Node>> componentOf;
-    private Map<Set<Node>, Set<Node>> cpsOf;
-    private int rootChildren;
+    private Adjacency graph;
+    private int[] enter;
+    private int[] up;
+    private int[] parent;
+    private int[] next;
+    private int[] path;
+    private int[] stack;
+    private int top;
     private int time;
+    private int blocks;
+    private int size;
+    private int[] blockStart;
+    private int[] blockNodes;
+    private int[] blockTop;
+    private int[] parentBlock;
+    private int[] componentOf;
+    private boolean[] cutpoint;
+    private int[] incidentStart;
+    private int[] incident;
+    private int[] cutpointStart;
+    private int[] cutpoints;
 
-    public Blocks(Graph graph) {
-        enter = new LinkedHashMap<>();
-        up = new LinkedHashMap<>();
-        stack = new Stack<>();
-        root = graph.vertexSet().iterator().next();
-        components = new LinkedHashSet<>();
-        cutpoints = new LinkedHashSet<>();
+    public Blocks(Adjacency graph) {
         this.graph = graph;
-        if (graph.vertexSet().size() > 1) {
-            dfs(root, null);
-        } else {
-            Set<Node> component = new LinkedHashSet<>();
-            component.add(root);
-            components.add(component);
+        int n = graph.vertexCount();
+        enter = new int[n];
+        up = new int[n];
+        parent = new int[n];
+        next = new int[n];
+        path = new int[n];
+        stack = new int[n];
+        blockStart = new int[n + 1];
+        blockNodes = new int[2 * n];
+        blockTop = new int[n];
+        parentBlock = new int[n];
+        componentOf = new int[n];
+        Arrays.fill(parentBlock, -1);
+        for (int root = 0; root < n; root++) {
+            if (enter[root] != 0) {
+                continue;
+            }
+            int before = blocks;
+            dfs(root);
+            if (blocks == before) {
+                newBlock(root);
+                closeBlock();
+            }
+        }
+        enter = up = parent = next = path = stack = null;
+        buildTree();
+    }
+
+    private void buildTree() {
+        int n = graph.vertexCount();
+        incidentStart = new int[n + 1];
+        cutpointStart = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            incidentStart[blockTop[b] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            if (parentBlock[v] != -1) {
+                incidentStart[v + 1]++;
+            }
+        }
+        cutpoint = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            cutpoint[v] = incidentStart[v + 1] > 1;
+            if (cutpoint[v]) {
+                if (parentBlock[v] != -1) {
+                    cutpointStart[parentBlock[v] + 1]++;
+                }
+            }
+            incidentStart[v + 1] += incidentStart[v];
+        }
+        for (int b = 0; b < blocks; b++) {
+            if (cutpoint[blockTop[b]]) {
+                cutpointStart[b + 1]++;
+            }
+            cutpointStart[b + 1] += cutpointStart[b];
+        }
+        incident = new int[incidentStart[n]];
+        cutpoints = new int[cutpointStart[blocks]];
+        int[] inc = Arrays.copyOf(incidentStart, n);
+        int[] cps = Arrays.copyOf(cutpointStart, blocks);
+        for (int v = 0; v < n; v++) {
+            if (parentBlock[v] != -1) {
+                incident[inc[v]++] = parentBlock[v];
+                if (cutpoint[v]) {
+                    cutpoints[cps[parentBlock[v]]++] = v;
+                }
+            }
+        }
+        for (int b = 0; b < blocks; b++) {
+            incident[inc[blockTop[b]]++] = b;
+            if (cutpoint[blockTop[b]]) {
+                cutpoints[cps[b]++] = blockTop[b];
+            }
         }
-        postProcessing();
     }
 
-    public Set<Node> componentOf(Node node) {
-        return componentOf.get(node);
+    public int blockCount() {
+        return blocks;
     }
 
-    public Set<Node> cutpointsOf(Set<Node> component) {
-        return cpsOf.containsKey(component) ? cpsOf.get(component) : Collections.emptySet();
+    public int blockSize(int b) {
+        return blockStart[b + 1] - blockStart[b];
     }
 
-    public List<Set<Node>> incidentBlocks(Node cp) {
-        return intersection.get(cp);
+    public int blockNode(int b, int i) {
+        return blockNodes[blockStart[b] + i];
     }
 
-    private void postProcessing() {
-        cpsOf = new HashMap<>();
-        componentOf = new HashMap<>();
-        intersection = new HashMap<>();
-        for (Set<Node> component : components) {
-            for (Node cp : cutpoints) {
-                if (component.contains(cp)) {
-                    if (!intersection.containsKey(cp)) {
-                        intersection.put(cp, new ArrayList<>());
-                    }
-                    intersection.get(cp).add(component);
-                    if (!cpsOf.containsKey(component)) {
-                        cpsOf.put(component, new HashSet<>());
-                    }
-                    cpsOf.get(component).add(cp);
-                }
-            }
-        }
-        for (Set<Node> component : components()) {
-            for (Node node : component) {
-                componentOf.put(node, component);
-            }
-        }
+    public int componentOf(int v) {
+        return componentOf[v];
     }
 
-    public void dfs(Node v, Node parent) {
-        time++;
-        enter.put(v, time);
-        up.put(v, time);
-        for (Node u : graph.neighborListOf(v)) {
-            if (u == parent) {
+    public boolean isCutpoint(int v) {
+        return cutpoint[v];
+    }
+
+    public int parentOf(int b) {
+        int v = blockTop[b];
+        return cutpoint[v] ? v : -1;
+    }
+
+    public int parentBlockOf(int v) {
+        return parentBlock[v];
+    }
+
+    public int cutpointCount(int b) {
+        return cutpointStart[b + 1] - cutpointStart[b];
+    }
+
+    public int cutpoint(int b, int i) {
+        return cutpoints[cutpointStart[b] + i];
+    }
+
+    public int incidentCount(int v) {
+        return incidentStart[v + 1] - incidentStart[v];
+    }
+
+    public int incidentBlock(int v, int i) {
+        return incident[incidentStart[v] + i];
+    }
+
+    private void dfs(int root) {
+        int depth = 0;
+        enter(root, -1);
+        path[depth++] = root;
+        while (depth > 0) {
+            int v = path[depth - 1];
+            if (next[v] < graph.degreeOf(v)) {
+                int u = graph.neighbor(v, next[v]++);
+                if (u == parent[v] || u == v) {
+                    continue;
+                }
+                if (enter[u] == 0) {
+                    stack[top++] = u;
+                    enter(u, v);
+                    path[depth++] = u;
+                } else if (up[v] > enter[u]) {
+                    up[v] = enter[u];
+                }
                 continue;
             }
-            if (!enter.containsKey(u)) {
-                stack.add(graph.getEdge(v, u));
-                if (v == root) {
-                    ++rootChildren;
-                }
-                dfs(u, v);
-                if (up.get(u) >= enter.get(v)) {
-                    Set<Node> component = new LinkedHashSet<>();
-                    Edge expected = graph.getEdge(v, u);
-                    while (true) {
-                        Edge edge = stack.pop();
-                        component.add(graph.getEdgeSource(edge));
-                        component.add(graph.getEdgeTarget(edge));
-                        if (edge == expected) {
-                            break;
-                        }
+            depth--;
+            int p = parent[v];
+            if (p == -1) {
+                continue;
+            }
+            if (up[v] >= enter[p]) {
+                newBlock(p);
+                while (true) {
+                    int w = stack[--top];
+                    blockNodes[size++] = w;
+                    parentBlock[w] = blocks;
+                    componentOf[w] = blocks;
+                    if (w == v) {
+                        break;
                     }
-                    components.add(component);
-                    cutpoints.add(v);
-                }
-                if (up.get(u) < up.get(v)) {
-                    up.put(v, up.get(u));
-                }
-            } else {
-                if (up.get(v) > enter.get(u)) {
-                    up.put(v, enter.get(u));
                 }
+                closeBlock();
+            }
+            if (up[v] < up[p]) {
+                up[p] = up[v];
             }
         }
-        if (rootChildren < 2) {
-            cutpoints.remove(root);
-        }
     }
 
-    public Set<Set<Node>> components() {
-        return components;
+    private void enter(int v, int p) {
+        time++;
+        enter[v] = time;
+        up[v] = time;
+        parent[v] = p;
+        next[v] = 0;
+    }
+
+    private void newBlock(int top) {
+        blockTop[blocks] = top;
+        blockNodes[size++] = top;
+        componentOf[top] = blocks;
     }
 
-    public Set<Node> cutpoints() {
-        return cutpoints;
+    private void closeBlock() {
+        blockStart[++blocks] = size;
     }
 }
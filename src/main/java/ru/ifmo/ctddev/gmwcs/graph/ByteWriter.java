@@ -0,0 +1,114 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+class ByteWriter implements Closeable {
+    private static final int DIGITS = 15;
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] scratch = new byte[DIGITS + 8];
+    private int size;
+
+    ByteWriter(OutputStream out, int capacity) {
+        this.out = out;
+        buffer = new byte[Math.max(capacity, 64)];
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - size < bytes) {
+            flush();
+        }
+    }
+
+    void write(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        if (bytes.length > buffer.length) {
+            out.write(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    void write(char c) throws IOException {
+        ensure(1);
+        buffer[size++] = (byte) c;
+    }
+
+    void write(String ascii) throws IOException {
+        ensure(ascii.length());
+        if (ascii.length() > buffer.length) {
+            flush();
+            for (int i = 0; i < ascii.length(); i++) {
+                out.write(ascii.charAt(i));
+            }
+            return;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[size++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    void write(double x) throws IOException {
+        double a = Math.abs(x);
+        if (a == 0.0) {
+            write(Double.doubleToRawLongBits(x) < 0 ? "-0.0" : "0.0");
+            return;
+        }
+        if (a < 1e-3 || a >= 1e7) {
+            write(Double.toString(x));
+            return;
+        }
+        int scale = DIGITS;
+        for (int i = 0; a >= POWERS[i]; i++) {
+            scale--;
+        }
+        long n = Math.round(a * POWERS[scale]);
+        while (scale > 0 && n % 10 == 0) {
+            n /= 10;
+            scale--;
+        }
+        if (n / POWERS[scale] != a) {
+            write(Double.toString(x));
+            return;
+        }
+        int at = scratch.length;
+        if (scale == 0) {
+            scratch[--at] = '0';
+        }
+        for (int i = 0; i < scale; i++) {
+            scratch[--at] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        scratch[--at] = '.';
+        do {
+            scratch[--at] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        if (x < 0) {
+            scratch[--at] = '-';
+        }
+        ensure(scratch.length);
+        System.arraycopy(scratch, at, buffer, size, scratch.length - at);
+        size += scratch.length - at;
+    }
+
+    void flush() throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CSRGraph implements Adjacency {
+    private final int n;
+    private final int m;
+    private final int[] offsets;
+    private final int[] adjVertex;
+    private final int[] adjEdge;
+    private final int[] sources;
+    private final int[] targets;
+    private final double[] nodeWeights;
+    private final double[] edgeWeights;
+    private final Node[] nodes;
+    private final Edge[] edges;
+    private volatile Map<Node, Integer> index;
+    private volatile Map<Edge, Integer> edgeIndex;
+
+    private CSRGraph(Builder builder) {
+        n = builder.n;
+        m = builder.m;
+        nodes = Arrays.copyOf(builder.nodes, n);
+        edges = Arrays.copyOf(builder.edges, m);
+        sources = Arrays.copyOf(builder.sources, m);
+        targets = Arrays.copyOf(builder.targets, m);
+        nodeWeights = new double[n];
+        edgeWeights = new double[m];
+        for (int v = 0; v < n; v++) {
+            nodeWeights[v] = nodes[v].getWeight();
+        }
+        for (int e = 0; e < m; e++) {
+            edgeWeights[e] = edges[e].getWeight();
+        }
+        offsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            offsets[sources[e] + 1]++;
+            if (sources[e] != targets[e]) {
+                offsets[targets[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        adjVertex = new int[offsets[n]];
+        adjEdge = new int[offsets[n]];
+        int[] pos = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; e++) {
+            int v = sources[e];
+            int u = targets[e];
+            adjVertex[pos[v]] = u;
+            adjEdge[pos[v]++] = e;
+            if (v != u) {
+                adjVertex[pos[u]] = v;
+                adjEdge[pos[u]++] = e;
+            }
+        }
+        index = builder.index;
+    }
+
+    CSRGraph(Node[] nodes, Edge[] edges, int[] sources, int[] targets, int[] offsets, int[] adjVertex, int[] adjEdge) {
+        n = nodes.length;
+        m = edges.length;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.sources = sources;
+        this.targets = targets;
+        this.offsets = offsets;
+        this.adjVertex = adjVertex;
+        this.adjEdge = adjEdge;
+        nodeWeights = new double[n];
+        edgeWeights = new double[m];
+        for (int v = 0; v < n; v++) {
+            nodeWeights[v] = nodes[v].getWeight();
+        }
+        for (int e = 0; e < m; e++) {
+            edgeWeights[e] = edges[e].getWeight();
+        }
+    }
+
+    CSRGraph withUnits(Node[] nodes, Edge[] edges) {
+        CSRGraph graph = new CSRGraph(nodes, edges, sources, targets, offsets, adjVertex, adjEdge);
+        graph.index = index;
+        graph.edgeIndex = edgeIndex;
+        return graph;
+    }
+
+    public static CSRGraph of(Graph graph) {
+        Builder builder = new Builder(graph.vertexSet().size(), graph.edgeSet().size());
+        Map<Node, Integer> index = new HashMap<>();
+        for (Node v : graph.vertexSet()) {
+            index.put(v, builder.addVertex(v));
+        }
+        for (Edge e : graph.edgeSet()) {
+            builder.addEdge(index.get(graph.getEdgeSource(e)), index.get(graph.getEdgeTarget(e)), e);
+        }
+        builder.index = index;
+        return builder.build();
+    }
+
+    public Graph toGraph() {
+        Graph graph = new Graph();
+        for (Node v : nodes) {
+            graph.addVertex(v);
+        }
+        for (int e = 0; e < m; e++) {
+            graph.addEdge(nodes[sources[e]], nodes[targets[e]], edges[e]);
+        }
+        return graph;
+    }
+
+    @Override
+    public int vertexCount() {
+        return n;
+    }
+
+    @Override
+    public int edgeCount() {
+        return m;
+    }
+
+    @Override
+    public int degreeOf(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    @Override
+    public int neighbor(int v, int i) {
+        return adjVertex[offsets[v] + i];
+    }
+
+    @Override
+    public int incidentEdge(int v, int i) {
+        return adjEdge[offsets[v] + i];
+    }
+
+    @Override
+    public int source(int e) {
+        return sources[e];
+    }
+
+    @Override
+    public int target(int e) {
+        return targets[e];
+    }
+
+    @Override
+    public Node node(int v) {
+        return nodes[v];
+    }
+
+    @Override
+    public Edge edge(int e) {
+        return edges[e];
+    }
+
+    int offset(int v) {
+        return offsets[v];
+    }
+
+    int adjVertex(int i) {
+        return adjVertex[i];
+    }
+
+    int adjEdge(int i) {
+        return adjEdge[i];
+    }
+
+    void refreshWeights() {
+        for (int v = 0; v < n; v++) {
+            nodeWeights[v] = nodes[v].getWeight();
+        }
+        for (int e = 0; e < m; e++) {
+            edgeWeights[e] = edges[e].getWeight();
+        }
+    }
+
+    public double nodeWeight(int v) {
+        return nodeWeights[v];
+    }
+
+    public double edgeWeight(int e) {
+        return edgeWeights[e];
+    }
+
+    @Override
+    public int indexOf(Node v) {
+        Map<Node, Integer> index = this.index;
+        if (index == null) {
+            index = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                index.put(nodes[i], i);
+            }
+            this.index = index;
+        }
+        Integer i = index.get(v);
+        return i == null ? -1 : i;
+    }
+
+    public int indexOf(Edge e) {
+        Map<Edge, Integer> index = edgeIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (int i = 0; i < m; i++) {
+                index.put(edges[i], i);
+            }
+            edgeIndex = index;
+        }
+        Integer i = index.get(e);
+        return i == null ? -1 : i;
+    }
+
+    public static class Builder {
+        private int n;
+        private int m;
+        private Node[] nodes;
+        private Edge[] edges;
+        private int[] sources;
+        private int[] targets;
+        private Map<Node, Integer> index;
+
+        public Builder() {
+            this(16, 16);
+        }
+
+        public Builder(int expectedNodes, int expectedEdges) {
+            nodes = new Node[Math.max(expectedNodes, 1)];
+            edges = new Edge[Math.max(expectedEdges, 1)];
+            sources = new int[edges.length];
+            targets = new int[edges.length];
+        }
+
+        public int addVertex(Node v) {
+            if (n == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * n);
+            }
+            nodes[n] = v;
+            return n++;
+        }
+
+        public int addEdge(int v, int u, Edge e) {
+            if (v < 0 || v >= n || u < 0 || u >= n) {
+                throw new IllegalArgumentException();
+            }
+            if (m == edges.length) {
+                edges = Arrays.copyOf(edges, 2 * m);
+                sources = Arrays.copyOf(sources, 2 * m);
+                targets = Arrays.copyOf(targets, 2 * m);
+            }
+            edges[m] = e;
+            sources[m] = v;
+            targets[m] = u;
+            return m++;
+        }
+
+        public int vertexCount() {
+            return n;
+        }
+
+        public int edgeCount() {
+            return m;
+        }
+
+        public CSRGraph build() {
+            return new CSRGraph(this);
+        }
+    }
+}
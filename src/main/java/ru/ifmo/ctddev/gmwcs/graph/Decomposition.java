@@ -8,69 +8,136 @@ public class Decomposition {
     private Set<Node> biggest;
     private List<Set<Node>> unrootedComponents;
     private List<Pair<Set<Node>, Node>> rootedComponents;
-    private Graph graph;
+    private List<int[]> unrootedVertices;
+    private List<int[]> rootedVertices;
+    private int[] biggestVertices;
+    private Adjacency graph;
+    private int[] mark;
+    private int[] local;
+    private int stamp;
 
     public Decomposition(Graph graph) {
+        this(CSRGraph.of(graph));
+    }
+
+    public Decomposition(Adjacency graph) {
         this.graph = graph;
         unrootedComponents = new ArrayList<>();
         rootedComponents = new ArrayList<>();
-        List<Set<Node>> components = graph.connectedSets();
-        Set<Node> bestComponent = null;
-        Blocks partBest = null;
-        int maxSize = 0;
-        for (Set<Node> component : components) {
-            Graph subgraph = graph.subgraph(component);
-            Blocks blocks = new Blocks(subgraph);
-            Set<Set<Node>> bicomponents = blocks.components();
-            for (Set<Node> bicomponent : bicomponents) {
-                if (bicomponent.size() > maxSize) {
-                    maxSize = bicomponent.size();
-                    biggest = bicomponent;
-                    partBest = blocks;
-                    bestComponent = component;
-                }
+        unrootedVertices = new ArrayList<>();
+        rootedVertices = new ArrayList<>();
+        Blocks blocks = new Blocks(graph);
+        int best = 0;
+        for (int b = 1; b < blocks.blockCount(); b++) {
+            if (blocks.blockSize(b) > blocks.blockSize(best)) {
+                best = b;
             }
         }
-        for (Set<Node> component : components) {
-            if (component != bestComponent) {
-                unrootedComponents.add(component);
+        biggest = new LinkedHashSet<>();
+        biggestVertices = new int[blocks.blockSize(best)];
+        for (int i = 0; i < blocks.blockSize(best); i++) {
+            biggestVertices[i] = blocks.blockNode(best, i);
+            biggest.add(graph.node(biggestVertices[i]));
+        }
+        int[] label = new int[graph.vertexCount()];
+        int count = connectedComponents(label);
+        int[] sizes = new int[count];
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            sizes[label[v]]++;
+        }
+        List<Set<Node>> components = new ArrayList<>(count);
+        List<int[]> vertices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            components.add(new LinkedHashSet<>());
+            vertices.add(new int[sizes[i]]);
+            sizes[i] = 0;
+        }
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            components.get(label[v]).add(graph.node(v));
+            vertices.get(label[v])[sizes[label[v]]++] = v;
+        }
+        int bestLabel = label[blocks.blockNode(best, 0)];
+        for (int i = 0; i < count; i++) {
+            if (i != bestLabel) {
+                unrootedComponents.add(components.get(i));
+                unrootedVertices.add(vertices.get(i));
             }
         }
-        processBest(partBest);
+        processBest(blocks, best);
     }
 
-    private void processBest(Blocks partBest) {
-        Set<Node> cutpoints = new LinkedHashSet<>();
-        for (Node cp : partBest.cutpoints()) {
-            if (biggest.contains(cp)) {
-                cutpoints.add(cp);
+    private int connectedComponents(int[] label) {
+        int n = graph.vertexCount();
+        Arrays.fill(label, -1);
+        int[] stack = new int[n];
+        int count = 0;
+        for (int s = 0; s < n; s++) {
+            if (label[s] != -1) {
+                continue;
             }
+            int top = 0;
+            stack[top++] = s;
+            label[s] = count;
+            while (top > 0) {
+                int v = stack[--top];
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    int u = graph.neighbor(v, i);
+                    if (label[u] == -1) {
+                        label[u] = count;
+                        stack[top++] = u;
+                    }
+                }
+            }
+            count++;
         }
-        Node root = biggest.iterator().next();
-        Node cutpoint = cutpoints.contains(root) ? root : null;
-        Map<Node, Boolean> visited = new LinkedHashMap<>();
-        Map<Node, Set<Node>> components = new LinkedHashMap<>();
-        for (Node cp : cutpoints) {
-            components.put(cp, new LinkedHashSet<>());
-            components.get(cp).add(cp);
-        }
-        dfs(root, cutpoint, cutpoints, visited, components);
-        for (Node cp : cutpoints) {
-            rootedComponents.add(new Pair<>(components.get(cp), cp));
-            unrootedComponents.add(components.get(cp));
-        }
+        return count;
     }
 
-    private void dfs(Node v, Node cp, Set<Node> cutpoints, Map<Node, Boolean> visited, Map<Node, Set<Node>> comps) {
-        visited.put(v, true);
-        if (!biggest.contains(v)) {
-            comps.get(cp).add(v);
+    private void processBest(Blocks blocks, int best) {
+        int[] stack = new int[2 * blocks.blockCount()];
+        for (int i = 0; i < blocks.cutpointCount(best); i++) {
+            int cp = blocks.cutpoint(best, i);
+            Set<Node> component = new LinkedHashSet<>();
+            component.add(graph.node(cp));
+            List<Integer> members = new ArrayList<>();
+            members.add(cp);
+            int top = push(blocks, cp, best, stack, 0);
+            while (top > 0) {
+                int b = stack[--top];
+                int from = stack[--top];
+                for (int j = 0; j < blocks.blockSize(b); j++) {
+                    int v = blocks.blockNode(b, j);
+                    if (v == from) {
+                        continue;
+                    }
+                    component.add(graph.node(v));
+                    members.add(v);
+                    if (blocks.isCutpoint(v)) {
+                        top = push(blocks, v, b, stack, top);
+                    }
+                }
+            }
+            Node cutpoint = graph.node(cp);
+            rootedComponents.add(new Pair<>(component, cutpoint));
+            unrootedComponents.add(component);
+            int[] array = new int[members.size()];
+            for (int j = 0; j < array.length; j++) {
+                array[j] = members.get(j);
+            }
+            rootedVertices.add(array);
+            unrootedVertices.add(array);
         }
-        for (Node u : graph.neighborListOf(v)) {
-            if (visited.get(u) == null) {
-                dfs(u, cutpoints.contains(v) ? v : cp, cutpoints, visited, comps);
+    }
+
+    private static int push(Blocks blocks, int cp, int except, int[] stack, int top) {
+        for (int i = 0; i < blocks.incidentCount(cp); i++) {
+            int b = blocks.incidentBlock(cp, i);
+            if (b != except) {
+                stack[top++] = cp;
+                stack[top++] = b;
             }
         }
+        return top;
     }
 
     public Set<Node> getBiggestComponent() {
@@ -84,4 +151,58 @@ public class Decomposition {
     public List<Pair<Set<Node>, Node>> getRootedComponents() {
         return rootedComponents;
     }
+
+    public List<int[]> getRootedVertices() {
+        return rootedVertices;
+    }
+
+    public List<CSRGraph> getUnrootedGraphs() {
+        List<CSRGraph> result = new ArrayList<>(unrootedVertices.size());
+        for (int[] component : unrootedVertices) {
+            result.add(induced(Collections.singletonList(component), Collections.emptyMap(), null));
+        }
+        return result;
+    }
+
+    public CSRGraph getBiggestGraph(Map<Node, Node> proxies) {
+        return induced(Collections.singletonList(biggestVertices), proxies, null);
+    }
+
+    public CSRGraph getRootedTree(Node root) {
+        return induced(rootedVertices, Collections.emptyMap(), root);
+    }
+
+    private synchronized CSRGraph induced(List<int[]> parts, Map<Node, Node> proxies, Node root) {
+        if (mark == null) {
+            mark = new int[graph.vertexCount()];
+            local = new int[graph.vertexCount()];
+        }
+        stamp++;
+        CSRGraph.Builder builder = new CSRGraph.Builder();
+        int rootIndex = root == null ? -1 : builder.addVertex(root);
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length; i++) {
+                int v = part[i];
+                Node node = graph.node(v);
+                mark[v] = stamp;
+                local[v] = root != null && i == 0 ? rootIndex : builder.addVertex(proxies.getOrDefault(node, node));
+            }
+        }
+        for (int[] part : parts) {
+            for (int v : part) {
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    int e = graph.incidentEdge(v, i);
+                    int u = graph.neighbor(v, i);
+                    if (mark[u] != stamp || graph.source(e) != v) {
+                        continue;
+                    }
+                    if (root != null && local[v] == rootIndex && local[u] == rootIndex) {
+                        continue;
+                    }
+                    builder.addEdge(local[v], local[u], graph.edge(e));
+                }
+            }
+        }
+        return builder.build();
+    }
 }
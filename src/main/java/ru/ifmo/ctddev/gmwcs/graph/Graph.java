@@ -175,12 +175,24 @@ public class Graph {
         return res;
     }
 
-    private void dfs(Node v, Set<Node> vis) {
-        vis.add(v);
-        for (Link l : adj.get(v)) {
-            Node u = getOppositeVertex(v, l);
+    private void dfs(Node s, Set<Node> vis) {
+        Deque<Node> path = new ArrayDeque<>();
+        Deque<Iterator<Link>> next = new ArrayDeque<>();
+        vis.add(s);
+        path.push(s);
+        next.push(adj.get(s).iterator());
+        while (!path.isEmpty()) {
+            Iterator<Link> it = next.peek();
+            if (!it.hasNext()) {
+                path.pop();
+                next.pop();
+                continue;
+            }
+            Node u = getOppositeVertex(path.peek(), it.next());
             if (!vis.contains(u)) {
-                dfs(u, vis);
+                vis.add(u);
+                path.push(u);
+                next.push(adj.get(u).iterator());
             }
         }
     }
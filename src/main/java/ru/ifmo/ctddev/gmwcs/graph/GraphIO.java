@@ -5,7 +5,12 @@ import java.text.ParseException;
 import java.util.List;
 
 public interface GraphIO {
-    Graph read() throws IOException, ParseException;
+    CSRGraph readCSR() throws IOException, ParseException;
+
+    default Graph read() throws IOException, ParseException {
+        return readCSR().toGraph();
+    }
+
     void write(List<Unit> units) throws IOException;
 
     Node nodeByName(String name);
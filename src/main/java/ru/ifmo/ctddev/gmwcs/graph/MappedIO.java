@@ -0,0 +1,610 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class MappedIO extends SimpleIO {
+    private static final int WINDOW = 1 << 30;
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean ascii;
+    private final boolean latin1;
+    private NameTable names;
+    private int threads;
+    private long chunkSize;
+
+    public MappedIO(File nodeIn, File nodeOut, File edgeIn, File edgeOut) {
+        super(nodeIn, nodeOut, edgeIn, edgeOut);
+        charset = Charset.defaultCharset();
+        utf8 = charset.equals(StandardCharsets.UTF_8);
+        ascii = charset.equals(StandardCharsets.US_ASCII);
+        latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        threads = 1;
+        chunkSize = 1 << 24;
+    }
+
+    public void setThreadsNum(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    public void setChunkSize(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException();
+        }
+        chunkSize = bytes;
+    }
+
+    @Override
+    public CSRGraph readCSR() throws IOException, ParseException {
+        names = new NameTable(ascii);
+        nodeList = new ArrayList<>();
+        CSRGraph.Builder builder = new CSRGraph.Builder();
+        try (FileChannel nodes = FileChannel.open(nodeIn.toPath(), StandardOpenOption.READ)) {
+            parseNodes(new Lines(nodes, 0, nodes.size()), builder);
+        }
+        try (FileChannel edges = FileChannel.open(edgeIn.toPath(), StandardOpenOption.READ)) {
+            parseEdges(edges, builder);
+        }
+        graph = builder.build();
+        return graph;
+    }
+
+    private void parseNodes(Lines lines, CSRGraph.Builder graph) throws IOException, ParseException {
+        while (lines.next()) {
+            if (lines.isComment() || !lines.token()) {
+                continue;
+            }
+            int nameFrom = lines.from;
+            int nameTo = lines.to;
+            nodeList.add(lines.string(nameFrom, nameTo));
+            if (!lines.token()) {
+                throw new ParseException("Expected weight of node in line", lines.lnum);
+            }
+            try {
+                double weight = lines.number();
+                names.put(lines.buf, nameFrom, nameTo, graph.addVertex(new Node(lines.lnum, weight)));
+            } catch (NumberFormatException e) {
+                throw new ParseException("Expected floating point value of node weight in line", lines.lnum);
+            }
+        }
+    }
+
+    private void parseEdges(FileChannel channel, CSRGraph.Builder graph) throws IOException, ParseException {
+        List<Chunk> chunks = split(channel);
+        ForkJoinPool pool = chunks.size() > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            if (pool != null) {
+                for (Chunk chunk : chunks) {
+                    pool.execute(chunk);
+                }
+            }
+            int offset = 0;
+            for (Chunk chunk : chunks) {
+                if (pool != null) {
+                    chunk.join();
+                } else {
+                    chunk.invoke();
+                }
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                }
+                for (int i = 0; i < chunk.count; i++) {
+                    graph.addEdge(chunk.sources[i], chunk.targets[i],
+                            new Edge(offset + chunk.lines[i], chunk.weights[i]));
+                }
+                if (chunk.error != null) {
+                    throw new ParseException(chunk.error, offset + chunk.errorLine);
+                }
+                offset += chunk.lineCount;
+                chunk.release();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private List<Chunk> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parts = (int) Math.min(4L * threads, Math.max(1, size / chunkSize));
+        List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        for (int i = 1; i < parts; i++) {
+            long boundary = nextLine(channel, Math.max(start, size / parts * i));
+            if (boundary > start && boundary < size) {
+                chunks.add(new Chunk(channel, start, boundary));
+                start = boundary;
+            }
+        }
+        chunks.add(new Chunk(channel, start, size));
+        return chunks;
+    }
+
+    private static long nextLine(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long pos = from;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+    }
+
+    void readScores(File file, boolean edges, ScoreSink sink) throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Lines lines = new Lines(channel, 0, channel.size());
+            while (lines.next()) {
+                if (lines.isComment() || !lines.token()) {
+                    continue;
+                }
+                int firstFrom = lines.from;
+                int firstTo = lines.to;
+                int v = -1;
+                int u = -1;
+                if (lines.token()) {
+                    v = names.get(lines.buf, firstFrom, firstTo);
+                    if (edges) {
+                        u = names.get(lines.buf, lines.from, lines.to);
+                        if (!lines.token()) {
+                            throw new ParseException("Expected weight of edge in line", lines.lnum);
+                        }
+                    }
+                    if (v == -1 || edges && u == -1) {
+                        throw new ParseException("There's no such vertex in score list in line", lines.lnum);
+                    }
+                }
+                double weight;
+                try {
+                    weight = lines.number();
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Expected floating point value of " + (edges ? "edge" : "node")
+                            + " score in line", lines.lnum);
+                }
+                sink.score(lines.lnum, v, u, weight);
+            }
+        }
+    }
+
+    void index(List<String> nodeList) {
+        names = new NameTable(ascii);
+        for (int v = 0; v < nodeList.size(); v++) {
+            byte[] bytes = encode(nodeList.get(v));
+            if (bytes != null) {
+                names.put(ByteBuffer.wrap(bytes), 0, bytes.length, v);
+            }
+        }
+    }
+
+    int indexOf(String name) {
+        byte[] bytes = encode(name);
+        return bytes == null ? -1 : names.get(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Override
+    public Node nodeByName(String name) {
+        int v = indexOf(name);
+        return v == -1 ? null : graph.node(v);
+    }
+
+    private byte[] encode(String name) {
+        return ascii ? asciiBytes(name) : charset.newEncoder().canEncode(name) ? name.getBytes(charset) : null;
+    }
+
+    private static byte[] asciiBytes(String name) {
+        byte[] bytes = new byte[name.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            char c = name.charAt(i);
+            if (c == '\uFFFD') {
+                bytes[i] = (byte) 0x80;
+            } else if (c < 0x80) {
+                bytes[i] = (byte) c;
+            } else {
+                return null;
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isDelimiter(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private static double parseNumber(ByteBuffer buf, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i++) == '-';
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean any = false;
+        for (; i < to && buf.get(i) >= '0' && buf.get(i) <= '9'; i++, any = true) {
+            if (mantissa != 0 || buf.get(i) != '0') {
+                mantissa = 10 * mantissa + (buf.get(i) - '0');
+                digits++;
+            }
+        }
+        if (i < to && buf.get(i) == '.') {
+            for (i++; i < to && buf.get(i) >= '0' && buf.get(i) <= '9'; i++, any = true) {
+                if (mantissa != 0 || buf.get(i) != '0') {
+                    mantissa = 10 * mantissa + (buf.get(i) - '0');
+                    digits++;
+                }
+                scale--;
+            }
+        }
+        if (any && i < to && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                negativeExp = buf.get(i++) == '-';
+            }
+            int exp = 0;
+            int expDigits = 0;
+            for (; i < to && buf.get(i) >= '0' && buf.get(i) <= '9' && expDigits < 9; i++, expDigits++) {
+                exp = 10 * exp + (buf.get(i) - '0');
+            }
+            if (expDigits == 0) {
+                any = false;
+            }
+            scale += negativeExp ? -exp : exp;
+        }
+        if (!any || i != to || digits > 15 || scale < -22 || scale > 22) {
+            byte[] token = new byte[to - from];
+            for (int k = 0; k < token.length; k++) {
+                token[k] = buf.get(from + k);
+            }
+            return Double.parseDouble(new String(token, StandardCharsets.ISO_8859_1));
+        }
+        double value = scale < 0 ? mantissa / POWERS[-scale] : mantissa * POWERS[scale];
+        return negative ? -value : value;
+    }
+
+    private class Lines {
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private ByteBuffer buf;
+        private int limit;
+        private int pos;
+        private int end;
+        private int from;
+        private int to;
+        private int lineStart;
+        private int lnum;
+
+        Lines(FileChannel channel, long start, long end) throws IOException {
+            this.channel = channel;
+            size = end;
+            map(start);
+        }
+
+        private void map(long offset) throws IOException {
+            base = offset;
+            limit = (int) Math.min(size - offset, WINDOW);
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, limit);
+            pos = 0;
+        }
+
+        boolean next() throws IOException {
+            while (true) {
+                if (pos >= limit && base + limit >= size) {
+                    return false;
+                }
+                int i = pos;
+                int terminator = -1;
+                for (; i < limit; i++) {
+                    int b = buf.get(i) & 0xff;
+                    if (b == '\n' || b == '\r') {
+                        terminator = b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n' ? 2 : 1;
+                        if (b == '\r' && i + 1 == limit && base + limit < size) {
+                            terminator = -1;
+                        }
+                        break;
+                    }
+                    if (latin1 && b == 0x85) {
+                        terminator = 1;
+                        break;
+                    }
+                    if (utf8 && (b == 0xC2 || b == 0xE2)) {
+                        int length = separator(i);
+                        if (length > 0) {
+                            terminator = length;
+                            break;
+                        }
+                    }
+                }
+                if (terminator == -1 && base + limit < size) {
+                    if (pos == 0) {
+                        throw new IOException("Line " + (lnum + 1) + " is too long");
+                    }
+                    map(base + pos);
+                    continue;
+                }
+                lnum++;
+                lineStart = pos;
+                end = i;
+                from = to = pos;
+                pos = terminator == -1 ? limit : i + terminator;
+                return true;
+            }
+        }
+
+        private int separator(int i) {
+            if (buf.get(i) == (byte) 0xC2) {
+                return i + 1 < limit && buf.get(i + 1) == (byte) 0x85 ? 2 : 0;
+            }
+            if (i + 2 < limit && buf.get(i + 1) == (byte) 0x80
+                    && (buf.get(i + 2) == (byte) 0xA8 || buf.get(i + 2) == (byte) 0xA9)) {
+                return 3;
+            }
+            return 0;
+        }
+
+        boolean isComment() {
+            return end > lineStart && buf.get(lineStart) == '#';
+        }
+
+        boolean token() {
+            int i = to;
+            while (i < end && isDelimiter(buf.get(i))) {
+                i++;
+            }
+            if (i == end) {
+                return false;
+            }
+            from = i;
+            while (i < end && !isDelimiter(buf.get(i))) {
+                i++;
+            }
+            to = i;
+            return true;
+        }
+
+        double number() {
+            return parseNumber(buf, from, to);
+        }
+
+        String string(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buf.get(from + i);
+            }
+            return new String(bytes, charset);
+        }
+
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private int count;
+        private int[] sources;
+        private int[] targets;
+        private int[] lines;
+        private double[] weights;
+        private int lineCount;
+        private String error;
+        private int errorLine;
+        private IOException failure;
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            int capacity = (int) Math.min(Math.max((end - start) / 64, 16), Integer.MAX_VALUE - 8);
+            sources = new int[capacity];
+            targets = new int[capacity];
+            lines = new int[capacity];
+            weights = new double[capacity];
+            try {
+                Lines lines = new Lines(channel, start, end);
+                parse(lines);
+                lineCount = lines.lnum;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void parse(Lines lines) throws IOException {
+            while (lines.next()) {
+                if (lines.isComment() || !lines.token()) {
+                    continue;
+                }
+                int firstFrom = lines.from;
+                int firstTo = lines.to;
+                if (!lines.token()) {
+                    fail("Expected name of second node in edge list in line", lines.lnum);
+                    return;
+                }
+                int secondFrom = lines.from;
+                int secondTo = lines.to;
+                if (!lines.token()) {
+                    fail("Expected weight of edge in line", lines.lnum);
+                    return;
+                }
+                double weight;
+                try {
+                    weight = lines.number();
+                } catch (NumberFormatException e) {
+                    fail("Expected floating point value of edge in line", lines.lnum);
+                    return;
+                }
+                int v = names.get(lines.buf, firstFrom, firstTo);
+                int u = names.get(lines.buf, secondFrom, secondTo);
+                if (v == -1 || u == -1) {
+                    fail("There's no such vertex in edge list in line", lines.lnum);
+                    return;
+                }
+                add(v, u, lines.lnum, weight);
+            }
+        }
+
+        private void add(int v, int u, int line, double weight) {
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * count);
+                targets = Arrays.copyOf(targets, 2 * count);
+                lines = Arrays.copyOf(lines, 2 * count);
+                weights = Arrays.copyOf(weights, 2 * count);
+            }
+            sources[count] = v;
+            targets[count] = u;
+            lines[count] = line;
+            weights[count++] = weight;
+        }
+
+        private void fail(String message, int line) {
+            error = message;
+            errorLine = line;
+        }
+
+        private void release() {
+            sources = targets = lines = null;
+            weights = null;
+        }
+    }
+
+    private static class NameTable {
+        private byte[] bytes = new byte[1 << 12];
+        private int used;
+        private int[] start = new int[1 << 8];
+        private int[] length = new int[1 << 8];
+        private int[] hashes = new int[1 << 8];
+        private int[] ids = new int[1 << 8];
+        private int count;
+        private int[] slots = new int[1 << 9];
+        private final boolean fold;
+
+        NameTable(boolean fold) {
+            this.fold = fold;
+            Arrays.fill(slots, -1);
+        }
+
+        private byte at(ByteBuffer buf, int i) {
+            byte b = buf.get(i);
+            return fold && b < 0 ? (byte) 0x80 : b;
+        }
+
+        void put(ByteBuffer buf, int from, int to, int id) {
+            int hash = hash(buf, from, to);
+            int p = find(buf, from, to, hash);
+            if (slots[p] != -1) {
+                ids[slots[p]] = id;
+                return;
+            }
+            if (count == start.length) {
+                start = Arrays.copyOf(start, 2 * count);
+                length = Arrays.copyOf(length, 2 * count);
+                hashes = Arrays.copyOf(hashes, 2 * count);
+                ids = Arrays.copyOf(ids, 2 * count);
+            }
+            int len = to - from;
+            if (used + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, used + len));
+            }
+            for (int i = 0; i < len; i++) {
+                bytes[used + i] = at(buf, from + i);
+            }
+            start[count] = used;
+            length[count] = len;
+            hashes[count] = hash;
+            ids[count] = id;
+            used += len;
+            slots[p] = count++;
+            if (2 * count > slots.length) {
+                rehash();
+            }
+        }
+
+        int get(ByteBuffer buf, int from, int to) {
+            int p = find(buf, from, to, hash(buf, from, to));
+            return slots[p] == -1 ? -1 : ids[slots[p]];
+        }
+
+        private int find(ByteBuffer buf, int from, int to, int hash) {
+            int mask = slots.length - 1;
+            int p = hash & mask;
+            while (slots[p] != -1) {
+                int k = slots[p];
+                if (hashes[k] == hash && equal(k, buf, from, to)) {
+                    return p;
+                }
+                p = (p + 1) & mask;
+            }
+            return p;
+        }
+
+        private boolean equal(int k, ByteBuffer buf, int from, int to) {
+            if (length[k] != to - from) {
+                return false;
+            }
+            int s = start[k];
+            for (int i = from; i < to; i++) {
+                if (bytes[s++] != at(buf, i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            slots = new int[2 * slots.length];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int k = 0; k < count; k++) {
+                int p = hashes[k] & mask;
+                while (slots[p] != -1) {
+                    p = (p + 1) & mask;
+                }
+                slots[p] = k;
+            }
+        }
+
+        private int hash(ByteBuffer buf, int from, int to) {
+            int h = 0x811C9DC5;
+            for (int i = from; i < to; i++) {
+                h = (h ^ at(buf, i)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    interface ScoreSink {
+        void score(int line, int v, int u, double weight) throws ParseException;
+    }
+}
@@ -0,0 +1,218 @@
+package ru.ifmo.ctddev.gmwcs.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+public class ScoreIO implements GraphIO {
+    private SimpleIO topology;
+    private CSRGraph graph;
+    private Graph view;
+    private MappedIO reader;
+    private double[] nodeBase;
+    private double[] edgeBase;
+    private int[] assigned;
+    private int epoch;
+    private int next;
+    private File nodeScores;
+    private File edgeScores;
+    private double[] nodeValues;
+    private double[] edgeValues;
+    private boolean loaded;
+
+    public ScoreIO(SimpleIO topology) {
+        this.topology = topology;
+    }
+
+    public void setScores(File nodeScores, File edgeScores) {
+        this.nodeScores = nodeScores;
+        this.edgeScores = edgeScores;
+        nodeValues = null;
+        edgeValues = null;
+        loaded = false;
+    }
+
+    public void setScores(double[] nodeValues, double[] edgeValues) {
+        this.nodeValues = nodeValues;
+        this.edgeValues = edgeValues;
+        nodeScores = null;
+        edgeScores = null;
+        loaded = false;
+    }
+
+    public void setOutput(File nodeOut, File edgeOut) {
+        topology.setOutput(nodeOut, edgeOut);
+    }
+
+    private void loadTopology() throws IOException, ParseException {
+        graph = topology.readCSR();
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        if (topology instanceof MappedIO) {
+            reader = (MappedIO) topology;
+        } else {
+            reader = new MappedIO(null, null, null, null);
+            reader.index(topology.nodeList);
+        }
+        nodeBase = new double[n];
+        edgeBase = new double[m];
+        for (int v = 0; v < n; v++) {
+            nodeBase[v] = graph.nodeWeight(v);
+        }
+        for (int e = 0; e < m; e++) {
+            edgeBase[e] = graph.edgeWeight(e);
+        }
+        assigned = new int[m];
+    }
+
+    @Override
+    public CSRGraph readCSR() throws IOException, ParseException {
+        if (graph == null) {
+            loadTopology();
+            loaded = nodeScores == null && edgeScores == null && nodeValues == null && edgeValues == null;
+        }
+        if (!loaded) {
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                graph.node(v).clear();
+                graph.node(v).setWeight(nodeBase[v]);
+            }
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                graph.edge(e).clear();
+                graph.edge(e).setWeight(edgeBase[e]);
+            }
+            if (nodeScores != null) {
+                next = 0;
+                reader.readScores(nodeScores, false, this::nodeScore);
+            }
+            if (edgeScores != null) {
+                next = 0;
+                epoch++;
+                reader.readScores(edgeScores, true, this::edgeScore);
+            }
+            if (nodeValues != null) {
+                checkLength(nodeValues, graph.vertexCount(), "node");
+                for (int v = 0; v < nodeValues.length; v++) {
+                    if (!Double.isNaN(nodeValues[v])) {
+                        graph.node(v).setWeight(nodeValues[v]);
+                    }
+                }
+            }
+            if (edgeValues != null) {
+                checkLength(edgeValues, graph.edgeCount(), "edge");
+                for (int e = 0; e < edgeValues.length; e++) {
+                    if (!Double.isNaN(edgeValues[e])) {
+                        graph.edge(e).setWeight(edgeValues[e]);
+                    }
+                }
+            }
+            graph.refreshWeights();
+            loaded = true;
+        }
+        return graph;
+    }
+
+    public CSRGraph score(double[] nodeValues, double[] edgeValues) throws ParseException {
+        Node[] nodes = new Node[graph.vertexCount()];
+        Edge[] edges = new Edge[graph.edgeCount()];
+        if (nodeValues != null) {
+            checkLength(nodeValues, nodes.length, "node");
+        }
+        if (edgeValues != null) {
+            checkLength(edgeValues, edges.length, "edge");
+        }
+        for (int v = 0; v < nodes.length; v++) {
+            boolean scored = nodeValues != null && !Double.isNaN(nodeValues[v]);
+            nodes[v] = new Node(graph.node(v).getNum(), scored ? nodeValues[v] : nodeBase[v]);
+        }
+        for (int e = 0; e < edges.length; e++) {
+            boolean scored = edgeValues != null && !Double.isNaN(edgeValues[e]);
+            edges[e] = new Edge(graph.edge(e).getNum(), scored ? edgeValues[e] : edgeBase[e]);
+        }
+        return graph.withUnits(nodes, edges);
+    }
+
+    @Override
+    public Graph read() throws IOException, ParseException {
+        CSRGraph graph = readCSR();
+        if (view == null) {
+            view = graph.toGraph();
+        }
+        return view;
+    }
+
+    private static void checkLength(double[] values, int expected, String unit) throws ParseException {
+        if (values.length != expected) {
+            throw new ParseException("Wrong number of " + unit + " scores: expected " + expected + ", found",
+                    values.length);
+        }
+    }
+
+    private void nodeScore(int line, int v, int u, double weight) throws ParseException {
+        if (v == -1) {
+            if (next == graph.vertexCount()) {
+                throw new ParseException("More node scores than nodes in line", line);
+            }
+            v = next++;
+        }
+        graph.node(v).setWeight(weight);
+    }
+
+    private void edgeScore(int line, int v, int u, double weight) throws ParseException {
+        int e;
+        if (v == -1) {
+            if (next == graph.edgeCount()) {
+                throw new ParseException("More edge scores than edges in line", line);
+            }
+            e = next++;
+        } else {
+            e = findEdge(v, u);
+            if (e == -1) {
+                throw new ParseException("There's no such edge in score list in line", line);
+            }
+        }
+        graph.edge(e).setWeight(weight);
+        assigned[e] = epoch;
+    }
+
+    private int findEdge(int v, int u) {
+        if (graph.degreeOf(u) < graph.degreeOf(v)) {
+            int t = v;
+            v = u;
+            u = t;
+        }
+        int found = -1;
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            if (graph.neighbor(v, i) != u) {
+                continue;
+            }
+            int e = graph.incidentEdge(v, i);
+            if (assigned[e] != epoch) {
+                return e;
+            }
+            if (found == -1) {
+                found = e;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void write(List<Unit> units) throws IOException {
+        topology.write(units);
+    }
+
+    @Override
+    public Node nodeByName(String name) {
+        int v = indexOf(name);
+        return v == -1 ? null : graph.node(v);
+    }
+
+    public int indexOf(String name) {
+        return reader == null ? -1 : reader.indexOf(name);
+    }
+
+    public String nodeName(int v) {
+        return topology.nodeList.get(v);
+    }
+}
@@ -1,20 +1,22 @@
 package ru.ifmo.ctddev.gmwcs.graph;
 
-import ru.ifmo.ctddev.gmwcs.Pair;
-
 import java.io.*;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.*;
 
 public class SimpleIO implements GraphIO {
-    private File nodeIn;
+    private static final int BUFFER = 1 << 16;
+    protected File nodeIn;
     private File nodeOut;
-    private File edgeIn;
+    protected File edgeIn;
     private File edgeOut;
-    private List<String> nodeList;
-    private List<Pair<String, String>> edgeList;
-    private Map<String, Node> nodeMap;
-    private Map<String, Map<String, Edge>> edgeMap;
+    protected List<String> nodeList;
+    private Map<String, Integer> nodeMap;
+    protected CSRGraph graph;
+    private byte[][] names;
+    private CSRGraph namedGraph;
+    private boolean subnetOnly;
 
     public SimpleIO(File nodeIn, File nodeOut, File edgeIn, File edgeOut) {
         this.nodeIn = nodeIn;
@@ -23,22 +25,26 @@ public class SimpleIO implements GraphIO {
         this.nodeOut = nodeOut;
         nodeMap = new LinkedHashMap<>();
         nodeList = new ArrayList<>();
-        edgeList = new ArrayList<>();
-        edgeMap = new LinkedHashMap<>();
+    }
+
+    public void setOutput(File nodeOut, File edgeOut) {
+        this.nodeOut = nodeOut;
+        this.edgeOut = edgeOut;
     }
 
     @Override
-    public Graph read() throws FileNotFoundException, ParseException {
+    public CSRGraph readCSR() throws IOException, ParseException {
         try (Scanner nodes = new Scanner(new BufferedReader(new FileReader(nodeIn)));
              Scanner edges = new Scanner(new BufferedReader(new FileReader(edgeIn)))) {
-            Graph graph = new Graph();
-            parseNodes(nodes, graph);
-            parseEdges(edges, graph);
+            CSRGraph.Builder builder = new CSRGraph.Builder();
+            parseNodes(nodes, builder);
+            parseEdges(edges, builder);
+            graph = builder.build();
             return graph;
         }
     }
 
-    private void parseNodes(Scanner nodes, Graph graph) throws ParseException {
+    private void parseNodes(Scanner nodes, CSRGraph.Builder graph) throws ParseException {
         int lnum = 0;
         while (nodes.hasNextLine()) {
             lnum++;
@@ -58,9 +64,7 @@ public class SimpleIO implements GraphIO {
             String weightStr = tokenizer.nextToken();
             try {
                 double weight = Double.parseDouble(weightStr);
-                Node vertex = new Node(lnum, weight);
-                nodeMap.put(node, vertex);
-                graph.addVertex(vertex);
+                nodeMap.put(node, graph.addVertex(new Node(lnum, weight)));
 
             } catch (NumberFormatException e) {
                 throw new ParseException("Expected floating point value of node weight in line", lnum);
@@ -68,7 +72,7 @@ public class SimpleIO implements GraphIO {
         }
     }
 
-    private void parseEdges(Scanner edges, Graph graph) throws ParseException {
+    private void parseEdges(Scanner edges, CSRGraph.Builder graph) throws ParseException {
         int lnum = 0;
         while (edges.hasNextLine()) {
             lnum++;
@@ -93,15 +97,7 @@ public class SimpleIO implements GraphIO {
                 if (!nodeMap.containsKey(first) || !nodeMap.containsKey(second)) {
                     throw new ParseException("There's no such vertex in edge list in line", lnum);
                 }
-                Edge edge = new Edge(lnum, weight);
-                Node from = nodeMap.get(first);
-                Node to = nodeMap.get(second);
-                graph.addEdge(from, to, edge);
-                edgeList.add(new Pair<>(first, second));
-                if (!edgeMap.containsKey(first)) {
-                    edgeMap.put(first, new LinkedHashMap<String, Edge>());
-                }
-                edgeMap.get(first).put(second, edge);
+                graph.addEdge(nodeMap.get(first), nodeMap.get(second), new Edge(lnum, weight));
             } catch (NumberFormatException e) {
                 throw new ParseException("Expected floating point value of edge in line", lnum);
             }
@@ -110,47 +106,90 @@ public class SimpleIO implements GraphIO {
 
     @Override
     public void write(List<Unit> units) throws IOException {
-        Set<Unit> unitSet = new LinkedHashSet<>();
-        if (units == null) {
-            units = new ArrayList<>();
+        BitSet nodes = new BitSet();
+        BitSet edges = new BitSet();
+        if (units != null) {
+            for (Unit unit : units) {
+                if (unit.getNum() < 0) {
+                    continue;
+                }
+                if (unit instanceof Node) {
+                    nodes.set(unit.getNum());
+                } else if (unit instanceof Edge) {
+                    edges.set(unit.getNum());
+                }
+            }
+        }
+        if (namedGraph != graph) {
+            Charset charset = Charset.defaultCharset();
+            names = new byte[graph.vertexCount()][];
+            for (int v = 0; v < names.length; v++) {
+                names[v] = nodeList.get(v).getBytes(charset);
+            }
+            namedGraph = graph;
         }
-        unitSet.addAll(units);
-        writeNodes(unitSet);
-        writeEdges(unitSet);
+        writeNodes(nodes);
+        writeEdges(edges);
+    }
+
+    public void setSubnetOnly(boolean subnetOnly) {
+        this.subnetOnly = subnetOnly;
     }
 
-    private void writeEdges(Set<Unit> units) throws IOException {
+    private void writeEdges(BitSet units) throws IOException {
         double sum = 0.0;
-        try (Writer writer = new BufferedWriter(new FileWriter(edgeOut))) {
-            for (Pair<String, String> p : edgeList) {
-                Edge edge = edgeMap.get(p.first).get(p.second);
-                if (units.contains(edge)) {
+        try (ByteWriter writer = new ByteWriter(new FileOutputStream(edgeOut), BUFFER)) {
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                Edge edge = graph.edge(e);
+                boolean selected = units.get(edge.getNum());
+                if (selected) {
                     sum += edge.getWeight();
+                } else if (subnetOnly) {
+                    continue;
                 }
-                writer.write(p.first + "\t" + p.second + "\t" + (units.contains(edge) ? edge.getWeight() : "n/a"));
-                writer.write("\n");
+                writer.write(names[graph.source(e)]);
+                writer.write('\t');
+                writer.write(names[graph.target(e)]);
+                writer.write('\t');
+                writeWeight(writer, edge, selected);
             }
-            writer.write("#subnet edge score\t" + sum);
+            writer.write("#subnet edge score\t");
+            writer.write(sum);
         }
     }
 
-    private void writeNodes(Set<Unit> units) throws IOException {
+    private void writeNodes(BitSet units) throws IOException {
         double sum = 0.0;
-        try (Writer writer = new BufferedWriter(new FileWriter(nodeOut))) {
-            for (String name : nodeList) {
-                Node node = nodeMap.get(name);
-                if (units.contains(node)) {
+        try (ByteWriter writer = new ByteWriter(new FileOutputStream(nodeOut), BUFFER)) {
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                Node node = graph.node(v);
+                boolean selected = units.get(node.getNum());
+                if (selected) {
                     sum += node.getWeight();
+                } else if (subnetOnly) {
+                    continue;
                 }
-                writer.write(name + "\t" + (units.contains(node) ? node.getWeight() : "n/a"));
-                writer.write("\n");
+                writer.write(names[v]);
+                writer.write('\t');
+                writeWeight(writer, node, selected);
             }
-            writer.write("#subnet node score\t" + sum);
+            writer.write("#subnet node score\t");
+            writer.write(sum);
+        }
+    }
+
+    private static void writeWeight(ByteWriter writer, Unit unit, boolean selected) throws IOException {
+        if (selected) {
+            writer.write(unit.getWeight());
+        } else {
+            writer.write("n/a");
         }
+        writer.write('\n');
     }
 
     @Override
     public Node nodeByName(String name) {
-        return nodeMap.get(name);
+        Integer v = nodeMap.get(name);
+        return v == null ? null : graph.node(v);
     }
 }
@@ -11,10 +11,12 @@ public abstract class Unit implements Comparable<Unit> {
     public Unit(int num, double weight) {
         this.num = num;
         this.weight = weight;
-        absorbed = new ArrayList<>();
     }
 
     public void absorb(Unit unit) {
+        if (absorbed == null) {
+            absorbed = new ArrayList<>();
+        }
         for (Unit u : unit.getAbsorbed()) {
             absorbed.add(u);
             weight += u.weight;
@@ -25,6 +27,9 @@ public abstract class Unit implements Comparable<Unit> {
     }
 
     public void clear() {
+        if (absorbed == null) {
+            return;
+        }
         for (Unit unit : absorbed) {
             weight -= unit.getWeight();
         }
@@ -32,6 +37,9 @@ public abstract class Unit implements Comparable<Unit> {
     }
 
     public List<Unit> getAbsorbed() {
+        if (absorbed == null) {
+            return new ArrayList<>();
+        }
         return new ArrayList<>(absorbed);
     }
 
@@ -0,0 +1,308 @@
+package ru.ifmo.ctddev.gmwcs.graph.flow;
+
+import ru.ifmo.ctddev.gmwcs.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public abstract class AbstractMaxFlow implements MaxFlow {
+    protected final int n;
+    protected int arcs;
+    protected int[] head;
+    protected double[] capacity;
+    protected double[] flow;
+    protected int[] arcStart;
+    protected int[] arcList;
+    protected int[] queue;
+    protected int[] seen;
+    protected int epoch;
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private boolean compiled;
+    private boolean shared;
+
+    protected AbstractMaxFlow(int n) {
+        this.n = n;
+        head = new int[8];
+        capacity = new double[8];
+        queue = new int[n];
+        seen = new int[n];
+        keys = new long[16];
+        values = new int[16];
+        Arrays.fill(keys, -1);
+    }
+
+    protected AbstractMaxFlow(AbstractMaxFlow other) {
+        synchronized (other) {
+            if (!other.compiled) {
+                other.compile();
+            }
+            other.shared = true;
+        }
+        n = other.n;
+        arcs = other.arcs;
+        head = other.head;
+        arcStart = other.arcStart;
+        arcList = other.arcList;
+        keys = other.keys;
+        values = other.values;
+        size = other.size;
+        capacity = other.capacity.clone();
+        queue = new int[n];
+        seen = new int[n];
+        compiled = true;
+        shared = true;
+    }
+
+    @Override
+    public int addEdge(int i, int j) {
+        int arc = find(i, j);
+        if (arc != -1) {
+            return arc;
+        }
+        if (shared) {
+            head = head.clone();
+            keys = keys.clone();
+            values = values.clone();
+            shared = false;
+        }
+        if (arcs + 2 > head.length) {
+            head = Arrays.copyOf(head, 2 * head.length);
+            capacity = Arrays.copyOf(capacity, 2 * capacity.length);
+        }
+        arc = arcs;
+        head[arcs] = j;
+        capacity[arcs++] = 0.0;
+        head[arcs] = i;
+        capacity[arcs++] = 0.0;
+        put(key(i, j), arc);
+        put(key(j, i), arc ^ 1);
+        compiled = false;
+        return arc;
+    }
+
+    @Override
+    public void setCapacity(int i, int j, double c) {
+        setCapacity(find(i, j), c);
+    }
+
+    @Override
+    public void setCapacity(int arc, double c) {
+        capacity[arc] = c;
+    }
+
+    @Override
+    public List<List<Pair<Integer, Integer>>> computeMinCuts(int s, int t, double threshold, int nested) {
+        List<List<Pair<Integer, Integer>>> result = new ArrayList<>();
+        List<Pair<Integer, Integer>> cut = computeMinCut(s, t, threshold);
+        if (cut == null) {
+            return result;
+        }
+        result.add(cut);
+        Set<Set<Pair<Integer, Integer>>> found = new HashSet<>();
+        found.add(new HashSet<>(cut));
+        List<Pair<Integer, Integer>> back = sinkSideCut(t);
+        if (found.add(new HashSet<>(back))) {
+            result.add(back);
+        }
+        int[] saturated = new int[8];
+        double[] saved = new double[8];
+        int count = 0;
+        for (int k = 0; k < nested; k++) {
+            int before = count;
+            for (List<Pair<Integer, Integer>> last : result.subList(k == 0 ? 0 : result.size() - 1, result.size())) {
+                for (Pair<Integer, Integer> p : last) {
+                    int arc = find(p.first, p.second);
+                    if (capacity[arc] >= threshold) {
+                        continue;
+                    }
+                    if (count == saturated.length) {
+                        saturated = Arrays.copyOf(saturated, 2 * count);
+                        saved = Arrays.copyOf(saved, 2 * count);
+                    }
+                    saturated[count] = arc;
+                    saved[count++] = capacity[arc];
+                    setCapacity(arc, threshold);
+                }
+            }
+            if (count == before) {
+                break;
+            }
+            cut = computeMinCut(s, t, threshold);
+            if (cut == null || !found.add(new HashSet<>(cut))) {
+                break;
+            }
+            result.add(cut);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            setCapacity(saturated[i], saved[i]);
+        }
+        return result;
+    }
+
+    protected int tail(int arc) {
+        return head[arc ^ 1];
+    }
+
+    protected double residual(int arc) {
+        return capacity[arc] - flow[arc];
+    }
+
+    protected void push(int arc, double f) {
+        flow[arc] = f >= residual(arc) ? capacity[arc] : flow[arc] + f;
+        flow[arc ^ 1] = -flow[arc];
+    }
+
+    protected void prepare() {
+        if (!compiled) {
+            compile();
+        }
+        if (flow == null || flow.length != arcs) {
+            flow = new double[arcs];
+        } else {
+            Arrays.fill(flow, 0.0);
+        }
+    }
+
+    private void compile() {
+        arcStart = new int[n + 1];
+        arcList = new int[arcs];
+        for (int a = 0; a < arcs; a++) {
+            arcStart[tail(a) + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            arcStart[v + 1] += arcStart[v];
+        }
+        int[] pos = Arrays.copyOf(arcStart, n);
+        for (int a = 0; a < arcs; a++) {
+            arcList[pos[tail(a)]++] = a;
+        }
+        compiled = true;
+    }
+
+    protected int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    protected void markReachable(int s) {
+        int mark = nextEpoch();
+        int qh = 0;
+        int qt = 0;
+        queue[qt++] = s;
+        seen[s] = mark;
+        while (qh < qt) {
+            int v = queue[qh++];
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int a = arcList[k];
+                int u = head[a];
+                if (seen[u] != mark && residual(a) > 0) {
+                    seen[u] = mark;
+                    queue[qt++] = u;
+                }
+            }
+        }
+    }
+
+    protected List<Pair<Integer, Integer>> sourceSideCut(int s) {
+        markReachable(s);
+        return collectCut();
+    }
+
+    protected List<Pair<Integer, Integer>> sinkSideCut(int t) {
+        int mark = nextEpoch();
+        int qh = 0;
+        int qt = 0;
+        queue[qt++] = t;
+        seen[t] = mark;
+        while (qh < qt) {
+            int v = queue[qh++];
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int a = arcList[k];
+                int u = head[a];
+                if (seen[u] != mark && residual(a ^ 1) > 0) {
+                    seen[u] = mark;
+                    queue[qt++] = u;
+                }
+            }
+        }
+        List<Pair<Integer, Integer>> res = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            if (seen[v] == mark) {
+                continue;
+            }
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int u = head[arcList[k]];
+                if (seen[u] == mark) {
+                    res.add(new Pair<>(v, u));
+                }
+            }
+        }
+        return res;
+    }
+
+    protected List<Pair<Integer, Integer>> collectCut() {
+        List<Pair<Integer, Integer>> res = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            if (seen[v] != epoch) {
+                continue;
+            }
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int u = head[arcList[k]];
+                if (seen[u] != epoch) {
+                    res.add(new Pair<>(v, u));
+                }
+            }
+        }
+        return res;
+    }
+
+    private static long key(int i, int j) {
+        return ((long) i << 32) | (j & 0xffffffffL);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    private int find(int i, int j) {
+        long key = key(i, j);
+        for (int p = slot(key); keys[p] != -1; p = (p + 1) & (keys.length - 1)) {
+            if (keys[p] == key) {
+                return values[p];
+            }
+        }
+        return -1;
+    }
+
+    private void put(long key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[2 * oldKeys.length];
+            values = new int[2 * oldKeys.length];
+            Arrays.fill(keys, -1);
+            size = 0;
+            for (int p = 0; p < oldKeys.length; p++) {
+                if (oldKeys[p] != -1) {
+                    put(oldKeys[p], oldValues[p]);
+                }
+            }
+        }
+        int p = slot(key);
+        while (keys[p] != -1) {
+            p = (p + 1) & (keys.length - 1);
+        }
+        keys[p] = key;
+        values[p] = value;
+        size++;
+    }
+}
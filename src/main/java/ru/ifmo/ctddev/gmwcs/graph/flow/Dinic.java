@@ -0,0 +1,110 @@
+package ru.ifmo.ctddev.gmwcs.graph.flow;
+
+import ru.ifmo.ctddev.gmwcs.Pair;
+
+import java.util.List;
+
+public class Dinic extends AbstractMaxFlow {
+    private int[] level;
+    private int[] current;
+    private int[] path;
+
+    public Dinic(int n) {
+        super(n);
+        level = new int[n];
+        current = new int[n];
+        path = new int[n];
+    }
+
+    public Dinic(Dinic other) {
+        super(other);
+        level = new int[n];
+        current = new int[n];
+        path = new int[n];
+    }
+
+    @Override
+    public Dinic copy() {
+        return new Dinic(this);
+    }
+
+    @Override
+    public List<Pair<Integer, Integer>> computeMinCut(int s, int t, double threshold) {
+        prepare();
+        double maxFlow = 0.0;
+        while (maxFlow < threshold) {
+            if (!buildLevels(s, t)) {
+                return collectCut();
+            }
+            System.arraycopy(arcStart, 0, current, 0, n);
+            double f;
+            while (maxFlow < threshold && (f = augment(s, t)) > 0.0) {
+                maxFlow += f;
+            }
+        }
+        return null;
+    }
+
+    private boolean buildLevels(int s, int t) {
+        int mark = nextEpoch();
+        int qh = 0;
+        int qt = 0;
+        queue[qt++] = s;
+        seen[s] = mark;
+        level[s] = 0;
+        while (qh < qt) {
+            int v = queue[qh++];
+            if (seen[t] == mark && level[v] >= level[t]) {
+                return true;
+            }
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int a = arcList[k];
+                int u = head[a];
+                if (seen[u] != mark && residual(a) > 0.0) {
+                    seen[u] = mark;
+                    level[u] = level[v] + 1;
+                    queue[qt++] = u;
+                }
+            }
+        }
+        return seen[t] == mark;
+    }
+
+    private double augment(int s, int t) {
+        int mark = epoch;
+        int depth = 0;
+        int v = s;
+        while (true) {
+            if (v == t) {
+                double f = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < depth; i++) {
+                    f = Math.min(f, residual(path[i]));
+                }
+                for (int i = 0; i < depth; i++) {
+                    push(path[i], f);
+                }
+                return f;
+            }
+            boolean advanced = false;
+            for (; current[v] < arcStart[v + 1]; current[v]++) {
+                int a = arcList[current[v]];
+                int u = head[a];
+                if (seen[u] == mark && level[u] == level[v] + 1 && residual(a) > 0.0) {
+                    path[depth++] = a;
+                    v = u;
+                    advanced = true;
+                    break;
+                }
+            }
+            if (advanced) {
+                continue;
+            }
+            if (depth == 0) {
+                return 0.0;
+            }
+            level[v] = -1;
+            v = tail(path[--depth]);
+            current[v]++;
+        }
+    }
+}
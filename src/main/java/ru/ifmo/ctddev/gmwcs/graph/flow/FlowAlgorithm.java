@@ -0,0 +1,36 @@
+package ru.ifmo.ctddev.gmwcs.graph.flow;
+
+import java.util.function.IntFunction;
+
+public enum FlowAlgorithm {
+    EDMONDS_KARP("ek", EdmondsKarp::new),
+    DINIC("dinic", Dinic::new),
+    PUSH_RELABEL("pr", PushRelabel::new),
+    INCREMENTAL("inc", IncrementalFlow::new);
+
+    private final String name;
+    private final IntFunction<MaxFlow> factory;
+
+    FlowAlgorithm(String name, IntFunction<MaxFlow> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    public MaxFlow create(int n) {
+        return factory.apply(n);
+    }
+
+    public static FlowAlgorithm byName(String name) {
+        for (FlowAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown max flow algorithm: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,172 @@
+package ru.ifmo.ctddev.gmwcs.graph.flow;
+
+import ru.ifmo.ctddev.gmwcs.Pair;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class IncrementalFlow extends AbstractMaxFlow {
+    private double[] excess;
+    private int[] level;
+    private int[] current;
+    private int[] path;
+    private int[] holders;
+    private boolean[] held;
+    private int holderCount;
+    private int source;
+    private boolean stale;
+
+    public IncrementalFlow(int n) {
+        super(n);
+        excess = new double[n];
+        level = new int[n];
+        current = new int[n];
+        path = new int[n];
+        holders = new int[n];
+        held = new boolean[n];
+        source = -1;
+        stale = true;
+    }
+
+    public IncrementalFlow(IncrementalFlow other) {
+        super(other);
+        excess = new double[n];
+        level = new int[n];
+        current = new int[n];
+        path = new int[n];
+        holders = new int[n];
+        held = new boolean[n];
+        source = -1;
+        stale = true;
+    }
+
+    @Override
+    public IncrementalFlow copy() {
+        return new IncrementalFlow(this);
+    }
+
+    @Override
+    public int addEdge(int i, int j) {
+        stale = true;
+        return super.addEdge(i, j);
+    }
+
+    @Override
+    public void setCapacity(int arc, double c) {
+        if (flow == null || arc >= flow.length || c < flow[arc]) {
+            stale = true;
+        }
+        super.setCapacity(arc, c);
+    }
+
+    @Override
+    public List<Pair<Integer, Integer>> computeMinCut(int s, int t, double threshold) {
+        if (stale || s != source) {
+            reset(s);
+        }
+        if (!held[t]) {
+            held[t] = true;
+            holders[holderCount++] = t;
+        }
+        while (excess[t] < threshold) {
+            if (!buildLevels(s, t)) {
+                return collectCut();
+            }
+            System.arraycopy(arcStart, 0, current, 0, n);
+            for (int i = holderCount - 1; i >= -1 && excess[t] < threshold; i--) {
+                int o = i == -1 ? s : holders[i];
+                if (o == t || level[o] != 0) {
+                    continue;
+                }
+                double f;
+                while (excess[t] < threshold && (o == s || excess[o] > 0.0) && (f = augment(o, s, t)) > 0.0) {
+                    excess[t] += f;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void reset(int s) {
+        prepare();
+        Arrays.fill(excess, 0.0);
+        Arrays.fill(held, false);
+        holderCount = 0;
+        source = s;
+        stale = false;
+    }
+
+    private boolean buildLevels(int s, int t) {
+        int mark = nextEpoch();
+        int qh = 0;
+        int qt = 0;
+        queue[qt++] = s;
+        seen[s] = mark;
+        level[s] = 0;
+        for (int i = 0; i < holderCount; i++) {
+            int v = holders[i];
+            if (v != t && excess[v] > 0.0) {
+                seen[v] = mark;
+                level[v] = 0;
+                queue[qt++] = v;
+            }
+        }
+        while (qh < qt) {
+            int v = queue[qh++];
+            if (seen[t] == mark && level[v] >= level[t]) {
+                return true;
+            }
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int a = arcList[k];
+                int u = head[a];
+                if (seen[u] != mark && residual(a) > 0.0) {
+                    seen[u] = mark;
+                    level[u] = level[v] + 1;
+                    queue[qt++] = u;
+                }
+            }
+        }
+        return seen[t] == mark;
+    }
+
+    private double augment(int o, int s, int t) {
+        int mark = epoch;
+        int depth = 0;
+        int v = o;
+        while (true) {
+            if (v == t) {
+                double f = o == s ? Double.POSITIVE_INFINITY : excess[o];
+                for (int i = 0; i < depth; i++) {
+                    f = Math.min(f, residual(path[i]));
+                }
+                for (int i = 0; i < depth; i++) {
+                    push(path[i], f);
+                }
+                if (o != s) {
+                    excess[o] -= f;
+                }
+                return f;
+            }
+            boolean advanced = false;
+            for (; current[v] < arcStart[v + 1]; current[v]++) {
+                int a = arcList[current[v]];
+                int u = head[a];
+                if (seen[u] == mark && level[u] == level[v] + 1 && residual(a) > 0.0) {
+                    path[depth++] = a;
+                    v = u;
+                    advanced = true;
+                    break;
+                }
+            }
+            if (advanced) {
+                continue;
+            }
+            if (depth == 0) {
+                return 0.0;
+            }
+            level[v] = -1;
+            v = tail(path[--depth]);
+            current[v]++;
+        }
+    }
+}
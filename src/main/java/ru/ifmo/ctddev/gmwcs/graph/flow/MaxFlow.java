@@ -5,9 +5,15 @@ import ru.ifmo.ctddev.gmwcs.Pair;
 import java.util.List;
 
 public interface MaxFlow {
-    void addEdge(int i, int j);
+    int addEdge(int i, int j);
 
     void setCapacity(int i, int j, double c);
 
+    void setCapacity(int arc, double c);
+
     List<Pair<Integer, Integer>> computeMinCut(int s, int t, double threshold);
+
+    List<List<Pair<Integer, Integer>>> computeMinCuts(int s, int t, double threshold, int nested);
+
+    MaxFlow copy();
 }
@@ -0,0 +1,167 @@
+package ru.ifmo.ctddev.gmwcs.graph.flow;
+
+import ru.ifmo.ctddev.gmwcs.Pair;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PushRelabel extends AbstractMaxFlow {
+    private double[] excess;
+    private int[] label;
+    private int[] current;
+    private int[] bucket;
+    private int[] nextInBucket;
+    private boolean[] active;
+    private int highest;
+    private int relabels;
+
+    public PushRelabel(int n) {
+        super(n);
+        excess = new double[n];
+        label = new int[n];
+        current = new int[n];
+        bucket = new int[2 * n + 1];
+        nextInBucket = new int[n];
+        active = new boolean[n];
+    }
+
+    public PushRelabel(PushRelabel other) {
+        super(other);
+        excess = new double[n];
+        label = new int[n];
+        current = new int[n];
+        bucket = new int[2 * n + 1];
+        nextInBucket = new int[n];
+        active = new boolean[n];
+    }
+
+    @Override
+    public PushRelabel copy() {
+        return new PushRelabel(this);
+    }
+
+    @Override
+    public List<Pair<Integer, Integer>> computeMinCut(int s, int t, double threshold) {
+        prepare();
+        Arrays.fill(excess, 0.0);
+        Arrays.fill(active, false);
+        for (int k = arcStart[s]; k < arcStart[s + 1]; k++) {
+            int a = arcList[k];
+            double f = residual(a);
+            if (f > 0.0) {
+                push(a, f);
+                excess[head[a]] += f;
+                excess[s] -= f;
+            }
+        }
+        globalRelabel(s, t);
+        while (excess[t] < threshold) {
+            int v = pop();
+            if (v == -1) {
+                return sourceSideCut(s);
+            }
+            discharge(v, s, t);
+            if (relabels > n) {
+                globalRelabel(s, t);
+            }
+        }
+        return null;
+    }
+
+    private void discharge(int v, int s, int t) {
+        while (excess[v] > 0.0) {
+            if (current[v] == arcStart[v + 1]) {
+                relabel(v);
+                continue;
+            }
+            int a = arcList[current[v]];
+            int u = head[a];
+            double r = residual(a);
+            if (r > 0.0 && label[v] == label[u] + 1) {
+                double f = Math.min(excess[v], r);
+                push(a, f);
+                excess[v] -= f;
+                excess[u] += f;
+                if (u != s && u != t) {
+                    activate(u);
+                }
+            } else {
+                current[v]++;
+            }
+        }
+    }
+
+    private void relabel(int v) {
+        int min = 2 * n;
+        for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+            int a = arcList[k];
+            if (residual(a) > 0.0) {
+                min = Math.min(min, label[head[a]]);
+            }
+        }
+        label[v] = Math.min(min + 1, 2 * n);
+        current[v] = arcStart[v];
+        relabels++;
+    }
+
+    private void globalRelabel(int s, int t) {
+        relabels = 0;
+        Arrays.fill(label, 2 * n);
+        int mark = nextEpoch();
+        label[t] = 0;
+        reverseBfs(t, mark);
+        label[s] = n;
+        reverseBfs(s, mark);
+        Arrays.fill(bucket, -1);
+        highest = -1;
+        for (int v = 0; v < n; v++) {
+            current[v] = arcStart[v];
+            active[v] = false;
+            if (v != s && v != t && excess[v] > 0.0) {
+                activate(v);
+            }
+        }
+    }
+
+    private void reverseBfs(int root, int mark) {
+        int qh = 0;
+        int qt = 0;
+        queue[qt++] = root;
+        seen[root] = mark;
+        while (qh < qt) {
+            int v = queue[qh++];
+            for (int k = arcStart[v]; k < arcStart[v + 1]; k++) {
+                int a = arcList[k];
+                int u = head[a];
+                if (seen[u] != mark && residual(a ^ 1) > 0.0) {
+                    seen[u] = mark;
+                    label[u] = label[v] + 1;
+                    queue[qt++] = u;
+                }
+            }
+        }
+    }
+
+    private void activate(int v) {
+        if (active[v] || label[v] >= 2 * n) {
+            return;
+        }
+        active[v] = true;
+        nextInBucket[v] = bucket[label[v]];
+        bucket[label[v]] = v;
+        highest = Math.max(highest, label[v]);
+    }
+
+    private int pop() {
+        while (highest >= 0 && bucket[highest] == -1) {
+            highest--;
+        }
+        if (highest < 0) {
+            return -1;
+        }
+        int v = bucket[highest];
+        bucket[highest] = nextInBucket[v];
+        active[v] = false;
+        return v;
+    }
+}
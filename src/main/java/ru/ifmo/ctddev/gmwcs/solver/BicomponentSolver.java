@@ -1,25 +1,70 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
-import ru.ifmo.ctddev.gmwcs.Pair;
+import ru.ifmo.ctddev.gmwcs.Stats;
 import ru.ifmo.ctddev.gmwcs.TimeLimit;
 import ru.ifmo.ctddev.gmwcs.graph.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BicomponentSolver implements Solver {
     private TimeLimit rooted;
     private TimeLimit biggest;
     private TimeLimit unrooted;
-    private RLTSolver solver;
+    private RootedSolver solver;
     private boolean isSolvedToOptimality;
+    private double gap;
     private double lb;
+    private Incumbent incumbent;
+    private CutPool cutPool;
     private boolean silence;
+    private Stats stats;
+    private int threads;
+    private int pathBudget;
 
-    public BicomponentSolver(RLTSolver solver) {
+    public BicomponentSolver(RootedSolver solver) {
         rooted = new TimeLimit(Double.POSITIVE_INFINITY);
         unrooted = biggest = rooted;
         this.solver = solver;
         lb = 0;
+        stats = solver.getStats();
+        threads = 1;
+        pathBudget = Preprocessor.DEFAULT_PATH_BUDGET;
+        cutPool = new CutPool();
+    }
+
+    public void setCutPool(CutPool cutPool) {
+        this.cutPool = cutPool;
+    }
+
+    public CutPool getCutPool() {
+        return cutPool;
+    }
+
+    public void setThreadsNum(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    public void setPathBudget(int pathBudget) {
+        if (pathBudget < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.pathBudget = pathBudget;
+    }
+
+    public void setStats(Stats stats) {
+        this.stats = stats;
+        solver.setStats(stats);
+    }
+
+    public Stats getStats() {
+        return stats;
     }
 
     public void setRootedTL(TimeLimit tl) {
@@ -35,36 +80,116 @@ public class BicomponentSolver implements Solver {
     }
 
     public List<Unit> solve(Graph graph) throws SolverException {
-        Graph g = graph;
-        graph = graph.subgraph(graph.vertexSet());
-        Preprocessor.preprocess(graph);
+        return solve(CSRGraph.of(graph));
+    }
+
+    @Override
+    public List<Unit> solve(CSRGraph input) throws SolverException {
+        CSRGraph graph = preprocess(input);
         if (!silence) {
-            System.out.print("Preprocessing deleted " + (g.vertexSet().size() - graph.vertexSet().size()) + " nodes ");
-            System.out.println("and " + (g.edgeSet().size() - graph.edgeSet().size()) + " edges.");
+            System.out.print("Preprocessing deleted " + (input.vertexCount() - graph.vertexCount()) + " nodes ");
+            System.out.println("and " + (input.edgeCount() - graph.edgeCount()) + " edges.");
+        }
+        try {
+            return solveReduced(graph);
+        } finally {
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                graph.node(v).clear();
+            }
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                graph.edge(e).clear();
+            }
         }
+    }
+
+    public CSRGraph preprocess(CSRGraph graph) {
+        return Preprocessor.preprocess(graph, stats, threads, pathBudget);
+    }
+
+    public List<Unit> solveReduced(CSRGraph graph) throws SolverException {
         isSolvedToOptimality = true;
-        solver.setLB(-Double.MAX_VALUE);
-        if (graph.vertexSet().size() == 0) {
+        gap = 0.0;
+        if (graph.vertexCount() == 0) {
             return null;
         }
         long timeBefore = System.currentTimeMillis();
+        Stats.Timer timer = stats.start("decomposition");
         Decomposition decomposition = new Decomposition(graph);
+        timer.stop();
+        timer.stage().size(graph.vertexCount(), graph.edgeCount());
+        timer.stage().count("unrootedComponents", decomposition.getUnrootedComponents().size());
+        timer.stage().count("rootedComponents", decomposition.getRootedComponents().size());
+        timer.stage().count("biggestBlock", decomposition.getBiggestComponent().size());
         double duration = (System.currentTimeMillis() - timeBefore) / 1000.0;
         if (!silence) {
             System.out.println("Graph decomposing takes " + duration + " seconds.");
         }
-        List<Unit> bestBiggest = solveBiggest(graph, decomposition);
-        List<Unit> bestUnrooted = extract(solveUnrooted(graph, decomposition));
-        graph.vertexSet().forEach(Node::clear);
-        graph.edgeSet().forEach(Edge::clear);
-        List<Unit> best = Utils.sum(bestBiggest) > Utils.sum(bestUnrooted) ? bestBiggest : bestUnrooted;
-        solver.setLB(-Double.MAX_VALUE);
-        if (Utils.sum(best) < 0) {
+        List<CSRGraph> components = decomposition.getUnrootedGraphs();
+        components.sort((a, b) -> Integer.compare(b.vertexCount(), a.vertexCount()));
+        incumbent = new Incumbent(lb);
+        int workers = Math.min(threads, components.size() + 1);
+        int share = threads / workers;
+        double total = unrooted.getRemainingTime();
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<List<Unit>> solutions = new ArrayList<>();
+        try {
+            Future<List<Unit>> biggestTask = pool.submit(() ->
+                    solveBiggest(graph, decomposition, share + threads % workers));
+            List<Future<List<Unit>>> tasks = new ArrayList<>();
+            for (CSRGraph component : components) {
+                tasks.add(pool.submit(() -> solveUnrooted(component, share, total, start)));
+            }
+            solutions.add(get(biggestTask));
+            for (Future<List<Unit>> task : tasks) {
+                solutions.add(get(task));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double wall = (System.currentTimeMillis() - start) / 1000.0;
+        double spent = total - unrooted.getRemainingTime();
+        unrooted.spend(Math.max(0, Math.min(unrooted.getRemainingTime(), wall - spent)));
+        List<Unit> best = solutions.get(0);
+        for (List<Unit> solution : solutions) {
+            if (value(graph, solution) > value(graph, best)) {
+                best = solution;
+            }
+        }
+        if (value(graph, best) < 0) {
             return null;
         }
         return best;
     }
 
+    private static double value(CSRGraph graph, List<Unit> units) {
+        double value = 0;
+        for (Unit unit : units) {
+            int index = unit instanceof Node ? graph.indexOf((Node) unit) : graph.indexOf((Edge) unit);
+            if (index != -1) {
+                value += unit.getWeight();
+            }
+        }
+        return value;
+    }
+
+    private static List<Unit> get(Future<List<Unit>> task) throws SolverException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverException) {
+                throw (SolverException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SolverException(e.getCause().getMessage());
+        }
+    }
+
     private List<Unit> extract(List<Unit> sol) {
         List<Unit> res = new ArrayList<>();
         for (Unit u : sol) {
@@ -86,6 +211,11 @@ public class BicomponentSolver implements Solver {
         return isSolvedToOptimality;
     }
 
+    @Override
+    public double getGap() {
+        return gap;
+    }
+
     @Override
     public void suppressOutput() {
         solver.suppressOutput();
@@ -97,86 +227,94 @@ public class BicomponentSolver implements Solver {
         this.lb = lb;
     }
 
-    private Node getRoot(Graph graph) {
+    private Node getRoot(CSRGraph graph) {
         Set<Node> rootCandidates = new LinkedHashSet<>();
-        for (int i = -1; i < graph.vertexSet().size(); i++) {
+        for (int i = -1; i < graph.vertexCount(); i++) {
             rootCandidates.add(new Node(i, 0.0));
         }
-        graph.vertexSet().stream().forEach(v -> rootCandidates.removeAll(v.getAbsorbed()));
-        rootCandidates.removeAll(graph.vertexSet());
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            rootCandidates.removeAll(graph.node(v).getAbsorbed());
+            rootCandidates.remove(graph.node(v));
+        }
         return rootCandidates.iterator().next();
     }
 
-    private List<Unit> solveBiggest(Graph graph, Decomposition decomposition) throws SolverException {
-        Graph tree = new Graph();
-        Map<Unit, List<Unit>> history = new HashMap<>();
-        graph.vertexSet().forEach(v -> history.put(v, v.getAbsorbed()));
-        graph.edgeSet().forEach(e -> history.put(e, e.getAbsorbed()));
+    private List<Unit> solveBiggest(CSRGraph graph, Decomposition decomposition, int threads) throws SolverException {
+        RootedSolver solver = this.solver.copy();
+        solver.setThreadsNum(threads);
+        solver.setCutPool(cutPool);
         Node root = getRoot(graph);
-        tree.addVertex(root);
+        CSRGraph tree = decomposition.getRootedTree(root);
         Map<Unit, Node> itsCutpoints = new LinkedHashMap<>();
-        for (Pair<Set<Node>, Node> p : decomposition.getRootedComponents()) {
-            for (Node node : p.first) {
-                for (Edge edge : graph.edgesOf(node)) {
-                    itsCutpoints.put(edge, p.second);
+        for (int[] component : decomposition.getRootedVertices()) {
+            Node cutpoint = graph.node(component[0]);
+            for (int v : component) {
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    itsCutpoints.put(graph.edge(graph.incidentEdge(v, i)), cutpoint);
                 }
-                itsCutpoints.put(node, p.second);
+                itsCutpoints.put(graph.node(v), cutpoint);
             }
-            tree.addGraph(graph.subgraph(p.first));
-            addAsChild(tree, p.first, p.second, root);
         }
         solver.setRoot(root);
-        List<Unit> rootedRes = solve(tree, rooted);
+        List<Unit> rootedRes = solve(solver, tree, rooted);
         solver.setRoot(null);
-        Graph main = graph.subgraph(decomposition.getBiggestComponent());
+        Map<Node, List<Unit>> attached = new HashMap<>();
         if (rootedRes != null) {
-            rootedRes.stream().filter(unit -> unit != root).forEach(unit -> {
-                Node cutpoint = itsCutpoints.get(unit);
-                cutpoint.absorb(unit);
-            });
+            rootedRes.stream().filter(unit -> unit != root).forEach(unit ->
+                    attached.computeIfAbsent(itsCutpoints.get(unit), cp -> new ArrayList<>()).add(unit));
         }
-        solver.setLB(lb);
-        List<Unit> solution = solve(main, biggest);
+        Map<Node, Node> proxies = new HashMap<>();
+        for (Map.Entry<Node, List<Unit>> entry : attached.entrySet()) {
+            Node cutpoint = entry.getKey();
+            proxies.put(cutpoint, new Node(cutpoint.getNum(), cutpoint.getWeight() + Utils.sum(entry.getValue())));
+        }
+        CSRGraph main = decomposition.getBiggestGraph(proxies);
+        solver.setIncumbent(incumbent);
+        List<Unit> solution = solve(solver, main, biggest);
+        incumbent.update(Utils.sum(solution));
         List<Unit> result = new ArrayList<>();
-        result.addAll(solution);
-        solver.setLB(Utils.sum(result));
-        solution.stream().forEach(u -> result.addAll(u.getAbsorbed()));
-        repairCutpoints(history);
-        return result;
-    }
-
-    private void repairCutpoints(Map<Unit, List<Unit>> history) {
-        history.keySet().forEach(Unit::clear);
-        for (Unit u : history.keySet()) {
-            for (Unit a : history.get(u)) {
-                u.absorb(a);
+        for (Unit unit : solution) {
+            List<Unit> units = attached.getOrDefault(unit, Collections.emptyList());
+            if (!units.isEmpty()) {
+                unit = itsCutpoints.get(unit);
+            }
+            result.add(unit);
+            result.addAll(unit.getAbsorbed());
+            for (Unit u : units) {
+                result.add(u);
+                result.addAll(u.getAbsorbed());
             }
         }
+        return result;
     }
 
-    private void addAsChild(Graph tree, Set<Node> component, Node cp, Node root) {
-        for (Node neighbour : tree.neighborListOf(cp)) {
-            if (!component.contains(neighbour)) {
-                continue;
+    private List<Unit> solveUnrooted(CSRGraph component, int threads, double total, long start)
+            throws SolverException {
+        if (component.vertexCount() == 1) {
+            Node node = component.node(0);
+            if (!incumbent.update(node.getWeight())) {
+                return Collections.emptyList();
             }
-            Edge edge = tree.getEdge(cp, neighbour);
-            tree.removeEdge(edge);
-            tree.addEdge(root, neighbour, edge);
+            return extract(Collections.singletonList(node));
         }
-        tree.removeVertex(cp);
+        RootedSolver solver = this.solver.copy();
+        solver.setThreadsNum(threads);
+        solver.setIncumbent(incumbent);
+        solver.setCutPool(cutPool);
+        double elapsed = (System.currentTimeMillis() - start) / 1000.0;
+        List<Unit> solution = solve(solver, component, new TimeLimit(Math.max(0, total - elapsed)));
+        incumbent.update(Utils.sum(solution));
+        return extract(solution);
     }
 
-    private List<Unit> solveUnrooted(Graph graph, Decomposition decomposition) throws SolverException {
-        Set<Node> union = new LinkedHashSet<>();
-        decomposition.getUnrootedComponents().forEach(union::addAll);
-        return solve(graph.subgraph(union), unrooted);
-    }
-
-    private List<Unit> solve(Graph graph, TimeLimit tl) throws SolverException {
+    private List<Unit> solve(RootedSolver solver, CSRGraph graph, TimeLimit tl) throws SolverException {
         solver.setTimeLimit(tl);
         List<Unit> result = solver.solve(graph);
-        if (!solver.isSolvedToOptimality()) {
-            isSolvedToOptimality = false;
+        synchronized (this) {
+            if (!solver.isSolvedToOptimality()) {
+                isSolvedToOptimality = false;
+            }
+            gap = Math.max(gap, solver.getGap());
         }
         return result;
     }
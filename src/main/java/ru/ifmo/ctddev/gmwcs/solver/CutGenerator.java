@@ -1,75 +1,168 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
 import ru.ifmo.ctddev.gmwcs.Pair;
-import ru.ifmo.ctddev.gmwcs.graph.Edge;
-import ru.ifmo.ctddev.gmwcs.graph.Graph;
-import ru.ifmo.ctddev.gmwcs.graph.Node;
-import ru.ifmo.ctddev.gmwcs.graph.flow.EdmondsKarp;
+import ru.ifmo.ctddev.gmwcs.graph.Adjacency;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
 import ru.ifmo.ctddev.gmwcs.graph.flow.MaxFlow;
 
 import java.util.*;
 
 public class CutGenerator {
     private MaxFlow maxFlow;
-    private Map<Node, Integer> nodes;
-    private Node root;
-    private Map<Edge, Pair<Integer, Integer>> edges;
-    private List<Node> backLink;
-    private Map<Node, Double> weights;
-    private Graph graph;
-
-    public CutGenerator(Graph graph, Node root) {
-        int i = 0;
-        weights = new HashMap<>();
-        backLink = new ArrayList<>();
-        nodes = new HashMap<>();
-        edges = new HashMap<>();
-        for (Node node : graph.vertexSet()) {
-            nodes.put(node, i++);
-            backLink.add(node);
+    private int[] nodes;
+    private int root;
+    private int source;
+    private int[] rootArcs;
+    private int[] edges;
+    private int[] pairOf;
+    private int[] pairArc;
+    private double[] capacity;
+    private double[] weights;
+    private Adjacency graph;
+
+    public CutGenerator(Adjacency graph, int[] nodes, int root, FlowAlgorithm algorithm) {
+        this.graph = graph;
+        this.root = root;
+        this.nodes = nodes.clone();
+        Arrays.sort(this.nodes);
+        weights = new double[nodes.length];
+        int count = 0;
+        for (int v : this.nodes) {
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int e = graph.incidentEdge(v, i);
+                if (isInner(v, e)) {
+                    count++;
+                }
+            }
         }
-        maxFlow = new EdmondsKarp(graph.vertexSet().size());
-        for (Edge e : graph.edgeSet()) {
-            Node v = graph.getEdgeSource(e);
-            Node u = graph.getEdgeTarget(e);
-            maxFlow.addEdge(nodes.get(v), nodes.get(u));
-            edges.put(e, new Pair<>(nodes.get(v), nodes.get(u)));
+        edges = new int[count];
+        pairOf = new int[count];
+        Map<Integer, Integer> pairs = new HashMap<>();
+        List<Integer> arcs = new ArrayList<>();
+        source = root == -1 ? nodes.length : localIndex(root);
+        maxFlow = algorithm.create(root == -1 ? nodes.length + 1 : nodes.length);
+        count = 0;
+        for (int v : this.nodes) {
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int e = graph.incidentEdge(v, i);
+                if (!isInner(v, e)) {
+                    continue;
+                }
+                int from = localIndex(v);
+                int to = localIndex(graph.target(e));
+                int arc = maxFlow.addEdge(from, to) & ~1;
+                if (!pairs.containsKey(arc)) {
+                    pairs.put(arc, arcs.size());
+                    arcs.add(arc);
+                }
+                edges[count] = e;
+                pairOf[count++] = pairs.get(arc);
+            }
+        }
+        pairArc = arcs.stream().mapToInt(Integer::intValue).toArray();
+        capacity = new double[pairArc.length];
+        if (root == -1) {
+            rootArcs = new int[nodes.length];
+            for (int i = 0; i < rootArcs.length; i++) {
+                rootArcs[i] = maxFlow.addEdge(source, i);
+            }
         }
-        this.root = root;
-        this.graph = graph;
     }
 
-    public void setCapacity(Edge e, double capacity) {
-        Pair<Integer, Integer> edge = edges.get(e);
-        maxFlow.setCapacity(edge.first, edge.second, capacity);
-        maxFlow.setCapacity(edge.second, edge.first, capacity);
+    public CutGenerator(CutGenerator other) {
+        graph = other.graph;
+        root = other.root;
+        source = other.source;
+        rootArcs = other.rootArcs;
+        nodes = other.nodes;
+        edges = other.edges;
+        pairOf = other.pairOf;
+        pairArc = other.pairArc;
+        weights = new double[nodes.length];
+        capacity = new double[pairArc.length];
+        maxFlow = other.maxFlow.copy();
     }
 
-    public void setVertexCapacity(Node v, double capacity) {
-        weights.put(v, capacity);
+    private boolean isInner(int v, int e) {
+        int u = graph.target(e);
+        return graph.source(e) == v && u != v && localIndex(u) >= 0;
+    }
+
+    private int localIndex(int v) {
+        int i = Arrays.binarySearch(nodes, v);
+        return i < 0 ? -1 : i;
+    }
+
+    public void setCapacities(double[] edgeValues, double addition) {
+        Arrays.fill(capacity, addition);
+        for (int i = 0; i < edges.length; i++) {
+            capacity[pairOf[i]] += edgeValues[edges[i]];
+        }
+        for (int p = 0; p < capacity.length; p++) {
+            maxFlow.setCapacity(pairArc[p], capacity[p]);
+            maxFlow.setCapacity(pairArc[p] ^ 1, capacity[p]);
+        }
     }
 
-    public List<Edge> findCut(Node v) {
-        List<Pair<Integer, Integer>> cut = maxFlow.computeMinCut(nodes.get(root), nodes.get(v), weights.get(v));
-        if (cut == null) {
+    public void setVertexCapacity(int v, double capacity) {
+        weights[localIndex(v)] = capacity;
+    }
+
+    public void setRootCapacity(int v, double capacity) {
+        int arc = rootArcs[localIndex(v)];
+        maxFlow.setCapacity(arc, capacity);
+        maxFlow.setCapacity(arc ^ 1, capacity);
+    }
+
+    public List<Integer> findCut(int v) {
+        int t = localIndex(v);
+        if (weights[t] <= 0.0) {
             return null;
         }
-        List<Edge> result = new ArrayList<>();
+        List<Pair<Integer, Integer>> cut = maxFlow.computeMinCut(source, t, weights[t]);
+        return cut == null ? null : edges(cut);
+    }
+
+    public List<List<Integer>> findCuts(int v, int nested) {
+        int t = localIndex(v);
+        List<List<Integer>> result = new ArrayList<>();
+        if (weights[t] <= 0.0) {
+            return result;
+        }
+        for (List<Pair<Integer, Integer>> cut : maxFlow.computeMinCuts(source, t, weights[t], nested)) {
+            result.add(edges(cut));
+        }
+        return result;
+    }
+
+    private List<Integer> edges(List<Pair<Integer, Integer>> cut) {
+        List<Integer> result = new ArrayList<>();
         for (Pair<Integer, Integer> p : cut) {
-            result.addAll(graph.getAllEdges(backLink.get(p.first), backLink.get(p.second)));
+            if (p.first == source && root == -1) {
+                // an arc from the virtual root stands for x0 of its head
+                result.add(graph.edgeCount() + nodes[p.second]);
+                continue;
+            }
+            int from = nodes[p.first];
+            int to = nodes[p.second];
+            for (int i = 0; i < graph.degreeOf(from); i++) {
+                if (graph.neighbor(from, i) == to) {
+                    result.add(graph.incidentEdge(from, i));
+                }
+            }
         }
         return result;
     }
 
-    public Set<Node> getNodes() {
-        return nodes.keySet();
+    public int[] getNodes() {
+        return nodes;
     }
 
-    public Set<Edge> getEdges() {
-        return edges.keySet();
+    public int[] getEdges() {
+        return edges;
     }
 
-    public Node getRoot() {
+    public int getRoot() {
         return root;
     }
 }
@@ -0,0 +1,149 @@
+package ru.ifmo.ctddev.gmwcs.solver;
+
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CutPool {
+    private final ConcurrentHashMap<Cut, Cut> cuts;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public CutPool() {
+        cuts = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    public boolean offer(Cut cut) {
+        Cut existing = cuts.putIfAbsent(cut, cut);
+        if (existing == null) {
+            misses.incrementAndGet();
+            return true;
+        }
+        existing.hits.incrementAndGet();
+        hits.incrementAndGet();
+        return false;
+    }
+
+    public void put(Cut cut) {
+        Cut copy = new Cut(cut.node, cut.edges, cut.roots);
+        cuts.putIfAbsent(copy, copy);
+    }
+
+    public void merge(CutPool other) {
+        for (Cut cut : other.cuts.values()) {
+            Cut existing = cuts.putIfAbsent(cut, cut);
+            if (existing != null && existing != cut) {
+                existing.hits.addAndGet(cut.hits.get());
+            }
+        }
+    }
+
+    public List<Cut> strongest(int limit) {
+        List<Cut> all = new ArrayList<>(cuts.values());
+        int[] hits = new int[all.size()];
+        Integer[] order = new Integer[all.size()];
+        for (int i = 0; i < order.length; i++) {
+            hits[i] = all.get(i).hits.get();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(hits[b], hits[a]));
+        List<Cut> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, order.length); i++) {
+            result.add(all.get(order[i]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return cuts.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public static class Cut {
+        private final Node node;
+        private final Edge[] edges;
+        private final Node[] roots;
+        private final int hash;
+        private final AtomicInteger hits;
+
+        public Cut(Node node, Edge[] edges) {
+            this(node, edges, new Node[0]);
+        }
+
+        public Cut(Node node, Edge[] edges, Node[] roots) {
+            this.node = node;
+            this.edges = edges.clone();
+            this.roots = roots.clone();
+            Arrays.sort(this.edges, (a, b) -> Integer.compare(a.getNum(), b.getNum()));
+            Arrays.sort(this.roots, (a, b) -> Integer.compare(a.getNum(), b.getNum()));
+            int h = node.getNum();
+            for (Edge e : this.edges) {
+                h = 31 * h + e.getNum();
+            }
+            for (Node v : this.roots) {
+                h = 31 * h - v.getNum();
+            }
+            hash = h;
+            hits = new AtomicInteger(1);
+        }
+
+        public Node node() {
+            return node;
+        }
+
+        public Edge[] edges() {
+            return edges;
+        }
+
+        public Node[] roots() {
+            return roots;
+        }
+
+        public int hits() {
+            return hits.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Cut)) {
+                return false;
+            }
+            Cut other = (Cut) o;
+            if (hash != other.hash || node.getNum() != other.node.getNum() || edges.length != other.edges.length
+                    || roots.length != other.roots.length) {
+                return false;
+            }
+            for (int i = 0; i < edges.length; i++) {
+                if (edges[i].getNum() != other.edges[i].getNum()) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < roots.length; i++) {
+                if (roots[i].getNum() != other.roots[i].getNum()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
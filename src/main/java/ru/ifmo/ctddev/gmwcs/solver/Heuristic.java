@@ -0,0 +1,694 @@
+package ru.ifmo.ctddev.gmwcs.solver;
+
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class Heuristic {
+    private static final int MAX_SEEDS = 64;
+    private static final int PATH_DEPTH = 4;
+    private static final double SKIP = 0.3;
+    private static final int WORK_PER_SEED = 8;
+    private static final int WORK = 64;
+    private final CSRGraph graph;
+    private final int root;
+    private final boolean[] inS;
+    private final boolean[] inE;
+    private final int[] eDeg;
+    private final int[] members;
+    private int size;
+    private double value;
+    private boolean[] bestNodes;
+    private boolean[] bestEdges;
+    private double best;
+    private final double[] profit;
+    private final int[] parent;
+    private final int[] parentEdge;
+    private final int[] seen;
+    private final int[] visited;
+    private final int[] level;
+    private final int[] leveled;
+    private final int[] chain;
+    private final int[] sorted;
+    private final int[] levelStart;
+    private final int[] dirty;
+    private final int[] dirtyMark;
+    private int dirtyCount;
+    private int dirtyStamp;
+    private final double[] subtree;
+    private final int[] component;
+    private int stamp;
+    private final int[] banned;
+    private int bans;
+    private Random random;
+    private double[] keys;
+    private int[] values;
+    private int heap;
+    private long deadline;
+    private int seeds;
+    private int moves;
+    private long work;
+
+    public Heuristic(CSRGraph graph, int root) {
+        this.graph = graph;
+        this.root = root;
+        int n = graph.vertexCount();
+        inS = new boolean[n];
+        inE = new boolean[graph.edgeCount()];
+        eDeg = new int[n];
+        members = new int[n];
+        profit = new double[n];
+        banned = new int[n];
+        parent = new int[n];
+        parentEdge = new int[n];
+        seen = new int[n];
+        visited = new int[n];
+        level = new int[n];
+        leveled = new int[n];
+        chain = new int[n];
+        sorted = new int[n];
+        levelStart = new int[n + 1];
+        dirty = new int[n];
+        dirtyMark = new int[n];
+        subtree = new double[n];
+        component = new int[n];
+        keys = new double[16];
+        values = new int[16];
+        best = root == -1 ? 0 : Double.NEGATIVE_INFINITY;
+    }
+
+    void setRandom(Random random) {
+        this.random = random;
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public boolean run(long deadline) {
+        this.deadline = deadline;
+        if (root != -1) {
+            improve(root);
+            return bestNodes != null;
+        }
+        Integer[] order = new Integer[graph.vertexCount()];
+        for (int v = 0; v < order.length; v++) {
+            order[v] = v;
+        }
+        Arrays.sort(order, (v, u) -> Double.compare(graph.nodeWeight(u), graph.nodeWeight(v)));
+        boolean[] covered = new boolean[order.length];
+        long limit = WORK * ((long) graph.vertexCount() + graph.edgeCount());
+        for (int v : order) {
+            if (graph.nodeWeight(v) <= 0 || seeds == MAX_SEEDS || work >= limit
+                    || System.currentTimeMillis() > deadline) {
+                break;
+            }
+            if (covered[v]) {
+                continue;
+            }
+            improve(v);
+            for (int i = 0; i < size; i++) {
+                covered[members[i]] = true;
+            }
+        }
+        return bestNodes != null;
+    }
+
+    public double value() {
+        return best;
+    }
+
+    public boolean[] nodes() {
+        return bestNodes;
+    }
+
+    public boolean[] edges() {
+        return bestEdges;
+    }
+
+    public double[] start() {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        int first = root;
+        for (int v = 0; v < n && root == -1; v++) {
+            if (bestNodes[v] && (first == -1 || graph.node(v).compareTo(graph.node(first)) < 0)) {
+                first = v;
+            }
+        }
+        double[] values = new double[3 * n + 3 * m];
+        int[] queue = new int[n];
+        boolean[] reached = new boolean[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = first;
+        reached[first] = true;
+        values[n + m + first] = 1;
+        while (head < tail) {
+            int v = queue[head++];
+            values[v] = 1;
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int e = graph.incidentEdge(v, i);
+                int u = graph.neighbor(v, i);
+                if (!bestEdges[e]) {
+                    continue;
+                }
+                values[n + e] = 1;
+                if (!reached[u]) {
+                    reached[u] = true;
+                    queue[tail++] = u;
+                    values[2 * n + 3 * m + u] = values[2 * n + 3 * m + v] + 1;
+                    values[2 * n + m + (graph.source(e) == u ? e : m + e)] = 1;
+                }
+            }
+        }
+        return values;
+    }
+
+    int seeds() {
+        return seeds;
+    }
+
+    int moves() {
+        return moves;
+    }
+
+    long work() {
+        return work;
+    }
+
+    void improve(int seed) {
+        seeds++;
+        bans++;
+        reset();
+        addNode(seed, -1);
+        search();
+    }
+
+    void improveEdge(int e) {
+        seeds++;
+        bans++;
+        reset();
+        addNode(graph.source(e), -1);
+        addNode(graph.target(e), e);
+        search();
+    }
+
+    void perturb(boolean[] nodes, boolean[] edges, int kicks) {
+        bans++;
+        reset();
+        for (int v = 0; v < nodes.length; v++) {
+            if (nodes[v]) {
+                inS[v] = true;
+                members[size++] = v;
+                value += graph.nodeWeight(v);
+                markDirty(v);
+            }
+        }
+        for (int e = 0; e < edges.length; e++) {
+            if (edges[e]) {
+                addEdge(e);
+            }
+        }
+        int[] leaves = new int[size];
+        for (int k = 0; k < kicks; k++) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (members[i] != root && eDeg[members[i]] == 1) {
+                    leaves[count++] = members[i];
+                }
+            }
+            if (count == 0) {
+                break;
+            }
+            int v = leaves[random.nextInt(count)];
+            removeNode(v);
+            banned[v] = bans;
+            compact();
+        }
+        search();
+    }
+
+    private void search() {
+        long limit = work + WORK_PER_SEED * ((long) graph.vertexCount() + graph.edgeCount());
+        grow();
+        while (work < limit && System.currentTimeMillis() <= deadline && (prune() | extend())) {
+            moves++;
+        }
+        close();
+        span();
+        if (value > best) {
+            best = value;
+            bestNodes = inS.clone();
+            bestEdges = inE.clone();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < size; i++) {
+            int v = members[i];
+            for (int j = 0; j < graph.degreeOf(v); j++) {
+                inE[graph.incidentEdge(v, j)] = false;
+            }
+            inS[v] = false;
+            eDeg[v] = 0;
+        }
+        size = 0;
+        value = 0;
+        clearDirty();
+    }
+
+    private void markDirty(int v) {
+        if (dirtyMark[v] != dirtyStamp) {
+            dirtyMark[v] = dirtyStamp;
+            dirty[dirtyCount++] = v;
+        }
+    }
+
+    private void clearDirty() {
+        dirtyStamp++;
+        dirtyCount = 0;
+    }
+
+    private void addNode(int v, int e) {
+        inS[v] = true;
+        members[size++] = v;
+        value += graph.nodeWeight(v);
+        markDirty(v);
+        work += graph.degreeOf(v);
+        if (e != -1) {
+            addEdge(e);
+        }
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            int f = graph.incidentEdge(v, i);
+            int u = graph.neighbor(v, i);
+            if (u != v && inS[u] && !inE[f] && graph.edgeWeight(f) >= 0) {
+                addEdge(f);
+            }
+        }
+    }
+
+    private void addEdge(int e) {
+        inE[e] = true;
+        eDeg[graph.source(e)]++;
+        eDeg[graph.target(e)]++;
+        value += graph.edgeWeight(e);
+    }
+
+    private void removeNode(int v) {
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            int e = graph.incidentEdge(v, i);
+            if (inE[e]) {
+                inE[e] = false;
+                eDeg[graph.source(e)]--;
+                eDeg[graph.target(e)]--;
+                value -= graph.edgeWeight(e);
+            }
+        }
+        inS[v] = false;
+        value -= graph.nodeWeight(v);
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            if (inS[graph.neighbor(v, i)]) {
+                markDirty(graph.neighbor(v, i));
+            }
+        }
+    }
+
+    private void compact() {
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            if (inS[members[i]]) {
+                members[k++] = members[i];
+            }
+        }
+        size = k;
+    }
+
+    private int connection(int u) {
+        int result = -1;
+        for (int i = 0; i < graph.degreeOf(u); i++) {
+            int e = graph.incidentEdge(u, i);
+            if (inS[graph.neighbor(u, i)] && (result == -1 || graph.edgeWeight(e) > graph.edgeWeight(result))) {
+                result = e;
+            }
+        }
+        return result;
+    }
+
+    private double gain(int u) {
+        int connection = connection(u);
+        if (connection == -1) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double result = graph.nodeWeight(u) + Math.min(graph.edgeWeight(connection), 0);
+        double lookahead = 0;
+        for (int i = 0; i < graph.degreeOf(u); i++) {
+            int e = graph.incidentEdge(u, i);
+            int x = graph.neighbor(u, i);
+            if (inS[x]) {
+                result += Math.max(graph.edgeWeight(e), 0);
+            } else if (x != u) {
+                lookahead = Math.max(lookahead, graph.nodeWeight(x) + graph.edgeWeight(e));
+            }
+        }
+        return result + lookahead;
+    }
+
+    private void grow() {
+        heap = 0;
+        for (int i = 0; i < size; i++) {
+            pushNeighbors(members[i]);
+        }
+        for (int u = next(); u != -1; u = next()) {
+            if (random != null && random.nextDouble() < SKIP) {
+                int v = next();
+                if (v != -1) {
+                    push(gain(u), u);
+                    u = v;
+                }
+            }
+            addNode(u, connection(u));
+            pushNeighbors(u);
+        }
+    }
+
+    private int next() {
+        while (heap > 0) {
+            double key = keys[0];
+            int u = pop();
+            if (inS[u]) {
+                continue;
+            }
+            double actual = gain(u);
+            if (actual < key) {
+                if (actual > 0) {
+                    push(actual, u);
+                }
+                continue;
+            }
+            return u;
+        }
+        return -1;
+    }
+
+    private void pushNeighbors(int v) {
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            int u = graph.neighbor(v, i);
+            if (!inS[u] && banned[u] != bans) {
+                double g = gain(u);
+                if (g > 0) {
+                    push(g, u);
+                }
+            }
+        }
+    }
+
+    private boolean prune() {
+        boolean changed = false;
+        work += size;
+        for (int i = 0; i < size; i++) {
+            int v = members[i];
+            if (!inS[v] || v == root || eDeg[v] != 1) {
+                continue;
+            }
+            double sum = 0;
+            double min = 0;
+            int cut = -1;
+            int prev = -1;
+            int cur = v;
+            int steps = 0;
+            while (true) {
+                int next = -1;
+                int edge = -1;
+                for (int j = 0; j < graph.degreeOf(cur); j++) {
+                    int e = graph.incidentEdge(cur, j);
+                    if (inE[e] && graph.neighbor(cur, j) != prev) {
+                        next = graph.neighbor(cur, j);
+                        edge = e;
+                        break;
+                    }
+                }
+                if (next == -1) {
+                    break;
+                }
+                sum += graph.nodeWeight(cur) + graph.edgeWeight(edge);
+                steps++;
+                if (sum < min) {
+                    min = sum;
+                    cut = steps;
+                }
+                if (next == root || eDeg[next] != 2) {
+                    break;
+                }
+                prev = cur;
+                cur = next;
+            }
+            if (cut == -1) {
+                continue;
+            }
+            prev = -1;
+            cur = v;
+            for (int k = 0; k < cut; k++) {
+                int next = -1;
+                for (int j = 0; j < graph.degreeOf(cur); j++) {
+                    if (inE[graph.incidentEdge(cur, j)] && graph.neighbor(cur, j) != prev) {
+                        next = graph.neighbor(cur, j);
+                        break;
+                    }
+                }
+                removeNode(cur);
+                prev = cur;
+                cur = next;
+            }
+            changed = true;
+        }
+        if (changed) {
+            compact();
+        }
+        return changed;
+    }
+
+    private boolean extend() {
+        stamp++;
+        int found = 0;
+        int from = 0;
+        int count = dirtyCount;
+        for (int depth = 0; depth < PATH_DEPTH && count > 0; depth++) {
+            int to = found;
+            for (int k = 0; k < count; k++) {
+                int f = depth == 0 ? dirty[k] : visited[from + k];
+                if (depth == 0 && !inS[f]) {
+                    continue;
+                }
+                work += graph.degreeOf(f);
+                double base = inS[f] ? 0 : profit[f];
+                for (int i = 0; i < graph.degreeOf(f); i++) {
+                    int x = graph.neighbor(f, i);
+                    int e = graph.incidentEdge(f, i);
+                    if (inS[x] || x == f || banned[x] == bans) {
+                        continue;
+                    }
+                    double cand = base + graph.nodeWeight(x) + graph.edgeWeight(e);
+                    if (seen[x] != stamp) {
+                        seen[x] = stamp;
+                        visited[found++] = x;
+                    } else if (cand <= profit[x] || isAncestor(x, f)) {
+                        continue;
+                    }
+                    profit[x] = cand;
+                    parent[x] = f;
+                    parentEdge[x] = e;
+                }
+            }
+            from = to;
+            count = found - to;
+        }
+        clearDirty();
+        if (found == 0) {
+            return false;
+        }
+        int levels = 0;
+        for (int k = 0; k < found; k++) {
+            int x = visited[k];
+            int length = 0;
+            int top = x;
+            for (; !inS[top] && leveled[top] != stamp; top = parent[top]) {
+                chain[length++] = top;
+            }
+            int l = inS[top] ? -1 : level[top];
+            while (length > 0) {
+                int v = chain[--length];
+                level[v] = ++l;
+                leveled[v] = stamp;
+            }
+            levels = Math.max(levels, level[x] + 1);
+            subtree[x] = graph.nodeWeight(x) + graph.edgeWeight(parentEdge[x]);
+            for (int i = 0; i < graph.degreeOf(x); i++) {
+                int e = graph.incidentEdge(x, i);
+                int u = graph.neighbor(x, i);
+                if (e != parentEdge[x] && u != x && (inS[u] || u == parent[x]) && graph.edgeWeight(e) >= 0) {
+                    subtree[x] += graph.edgeWeight(e);
+                }
+            }
+        }
+        Arrays.fill(levelStart, 0, levels + 1, 0);
+        for (int k = 0; k < found; k++) {
+            levelStart[level[visited[k]] + 1]++;
+        }
+        for (int l = 0; l < levels; l++) {
+            levelStart[l + 1] += levelStart[l];
+        }
+        for (int k = 0; k < found; k++) {
+            sorted[levelStart[level[visited[k]]]++] = visited[k];
+        }
+        boolean extended = false;
+        for (int k = found - 1; k >= 0; k--) {
+            int x = sorted[k];
+            if (subtree[x] <= 0) {
+                continue;
+            }
+            if (!inS[parent[x]]) {
+                subtree[parent[x]] += subtree[x];
+            } else {
+                extended = true;
+            }
+        }
+        if (!extended) {
+            return false;
+        }
+        for (int k = 0; k < found; k++) {
+            int x = sorted[k];
+            if (subtree[x] > 0 && inS[parent[x]]) {
+                addNode(x, parentEdge[x]);
+            }
+        }
+        return true;
+    }
+
+    private boolean isAncestor(int x, int v) {
+        for (; !inS[v]; v = parent[v]) {
+            if (v == x) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void close() {
+        for (int k = 0; k < size; k++) {
+            int v = members[k];
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int u = graph.neighbor(v, i);
+                int e = graph.incidentEdge(v, i);
+                if (u == v || inE[e] || graph.edgeWeight(e) < 0) {
+                    continue;
+                }
+                if (inS[u]) {
+                    addEdge(e);
+                } else if (graph.nodeWeight(u) >= 0) {
+                    addNode(u, e);
+                }
+            }
+        }
+    }
+
+    private void span() {
+        int count = 0;
+        for (int k = 0; k < size; k++) {
+            int v = members[k];
+            component[v] = v;
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int e = graph.incidentEdge(v, i);
+                if (graph.source(e) == v && inS[graph.target(e)] && graph.edgeWeight(e) < 0) {
+                    count++;
+                }
+            }
+        }
+        Integer[] negative = new Integer[count];
+        count = 0;
+        for (int k = 0; k < size; k++) {
+            int v = members[k];
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int e = graph.incidentEdge(v, i);
+                if (graph.source(e) != v || !inS[graph.target(e)]) {
+                    continue;
+                }
+                if (graph.edgeWeight(e) < 0) {
+                    negative[count++] = e;
+                    if (inE[e]) {
+                        inE[e] = false;
+                        eDeg[graph.source(e)]--;
+                        eDeg[graph.target(e)]--;
+                        value -= graph.edgeWeight(e);
+                    }
+                } else if (graph.target(e) != v) {
+                    if (!inE[e]) {
+                        addEdge(e);
+                    }
+                    union(graph.source(e), graph.target(e));
+                }
+            }
+        }
+        Arrays.sort(negative, (e, f) -> Double.compare(graph.edgeWeight(f), graph.edgeWeight(e)));
+        for (int e : negative) {
+            if (union(graph.source(e), graph.target(e))) {
+                addEdge(e);
+            }
+        }
+    }
+
+    private int find(int v) {
+        while (component[v] != v) {
+            component[v] = component[component[v]];
+            v = component[v];
+        }
+        return v;
+    }
+
+    private boolean union(int v, int u) {
+        v = find(v);
+        u = find(u);
+        if (v == u) {
+            return false;
+        }
+        component[v] = u;
+        return true;
+    }
+
+    private void push(double key, int value) {
+        if (heap == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * heap);
+            values = Arrays.copyOf(values, 2 * heap);
+        }
+        int i = heap++;
+        while (i > 0 && keys[(i - 1) / 2] < key) {
+            keys[i] = keys[(i - 1) / 2];
+            values[i] = values[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private int pop() {
+        int result = values[0];
+        double key = keys[--heap];
+        int value = values[heap];
+        int i = 0;
+        while (2 * i + 1 < heap) {
+            int c = 2 * i + 1;
+            if (c + 1 < heap && keys[c + 1] > keys[c]) {
+                c++;
+            }
+            if (keys[c] <= key) {
+                break;
+            }
+            keys[i] = keys[c];
+            values[i] = values[c];
+            i = c;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+package ru.ifmo.ctddev.gmwcs.solver;
+
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.TimeLimit;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class HeuristicSolver implements RootedSolver {
+    public static final int MIN_STAGNATION = 1000;
+    public static final double PERTURBATION = 0.5;
+    public static final int MAX_KICKS = 8;
+    private TimeLimit tl;
+    private int threads;
+    private Node root;
+    private double minimum;
+    private Incumbent incumbent;
+    private Stats stats;
+    private long seed;
+    private boolean isSolvedToOptimality;
+    private CSRGraph graph;
+    private int rootIndex;
+    private int[] seeds;
+    private long deadline;
+    private int patience;
+    private double best;
+    private boolean[] bestNodes;
+    private boolean[] bestEdges;
+    private long iterations;
+    private long improvements;
+    private int stagnation;
+    private volatile int restarts;
+    private Stats.Timer timer;
+
+    public HeuristicSolver() {
+        tl = new TimeLimit(Double.POSITIVE_INFINITY);
+        threads = 1;
+        minimum = -Double.MAX_VALUE;
+        stats = new Stats();
+    }
+
+    public HeuristicSolver(HeuristicSolver other) {
+        this();
+        threads = other.threads;
+        stats = other.stats;
+        seed = other.seed;
+    }
+
+    @Override
+    public HeuristicSolver copy() {
+        return new HeuristicSolver(this);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void setRoot(Node root) {
+        this.root = root;
+    }
+
+    @Override
+    public void setThreadsNum(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    @Override
+    public void setIncumbent(Incumbent incumbent) {
+        this.incumbent = incumbent;
+    }
+
+    @Override
+    public void setCutPool(CutPool cutPool) {
+    }
+
+    @Override
+    public void setStats(Stats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Stats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void setTimeLimit(TimeLimit tl) {
+        this.tl = tl;
+    }
+
+    @Override
+    public boolean isSolvedToOptimality() {
+        return isSolvedToOptimality;
+    }
+
+    @Override
+    public double getGap() {
+        return isSolvedToOptimality ? 0.0 : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public void suppressOutput() {
+    }
+
+    @Override
+    public void setLB(double lb) {
+        minimum = lb;
+    }
+
+    @Override
+    public List<Unit> solve(Graph graph) {
+        return solve(CSRGraph.of(graph));
+    }
+
+    @Override
+    public List<Unit> solve(CSRGraph graph) {
+        timer = stats.start("metaheuristic");
+        long timeBefore = System.currentTimeMillis();
+        this.graph = graph;
+        rootIndex = root == null ? -1 : this.graph.indexOf(root);
+        seeds = rootIndex == -1 ? positiveSeeds() : new int[]{rootIndex};
+        best = Double.NEGATIVE_INFINITY;
+        bestNodes = bestEdges = null;
+        iterations = improvements = stagnation = restarts = 0;
+        isSolvedToOptimality = rootIndex == -1 && !hasPositiveUnit();
+        if (seeds.length > 0) {
+            double remaining = tl.getRemainingTime();
+            deadline = remaining == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : timeBefore + (long) (remaining * 1000);
+            patience = Math.max(MIN_STAGNATION, this.graph.vertexCount());
+            run();
+        }
+        tl.spend(Math.min(tl.getRemainingTime(), (System.currentTimeMillis() - timeBefore) / 1000.0));
+        timer.stop();
+        timer.stage().size(this.graph.vertexCount(), this.graph.edgeCount());
+        timer.stage().count("iterations", iterations);
+        timer.stage().count("improvements", improvements);
+        timer.stage().count("restarts", restarts);
+        if (bestNodes == null || best < minimum) {
+            return Collections.emptyList();
+        }
+        List<Unit> result = new ArrayList<>();
+        for (int v = 0; v < bestNodes.length; v++) {
+            if (bestNodes[v]) {
+                result.add(this.graph.node(v));
+            }
+        }
+        for (int e = 0; e < bestEdges.length; e++) {
+            if (bestEdges[e]) {
+                result.add(this.graph.edge(e));
+            }
+        }
+        return result;
+    }
+
+    private int[] positiveSeeds() {
+        int n = graph.vertexCount();
+        int count = 0;
+        for (int u = 0; u < n + graph.edgeCount(); u++) {
+            if (isSeed(u)) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int u = 0; u < n + graph.edgeCount(); u++) {
+            if (isSeed(u)) {
+                result[count++] = u;
+            }
+        }
+        return result;
+    }
+
+    private boolean isSeed(int unit) {
+        int n = graph.vertexCount();
+        if (unit < n) {
+            return graph.nodeWeight(unit) > 0;
+        }
+        int e = unit - n;
+        return graph.edgeWeight(e) > 0 && graph.nodeWeight(graph.source(e)) <= 0
+                && graph.nodeWeight(graph.target(e)) <= 0;
+    }
+
+    private boolean hasPositiveUnit() {
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            if (graph.nodeWeight(v) > 0) {
+                return true;
+            }
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (graph.edgeWeight(e) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(new Random(seed + i)));
+        }
+        ForkJoinPool pool = workers.size() > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            if (pool != null) {
+                for (Worker worker : workers) {
+                    pool.execute(worker);
+                }
+            }
+            for (Worker worker : workers) {
+                if (pool != null) {
+                    worker.join();
+                } else {
+                    worker.invoke();
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private synchronized boolean publish(Heuristic heuristic) {
+        iterations++;
+        if (heuristic.nodes() != null && heuristic.value() > best) {
+            best = heuristic.value();
+            bestNodes = heuristic.nodes();
+            bestEdges = heuristic.edges();
+            improvements++;
+            stagnation = 0;
+            if (incumbent != null) {
+                incumbent.update(best);
+            }
+        } else {
+            stagnation++;
+        }
+        if (stagnation >= patience) {
+            if (deadline == Long.MAX_VALUE) {
+                return false;
+            }
+            stagnation = 0;
+            restarts++;
+        }
+        return System.currentTimeMillis() < deadline;
+    }
+
+    private synchronized boolean[][] elite() {
+        return bestNodes == null ? null : new boolean[][]{bestNodes, bestEdges};
+    }
+
+    private class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Random random;
+
+        Worker(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            timer.track(this::search);
+        }
+
+        private void search() {
+            Heuristic heuristic = new Heuristic(graph, rootIndex);
+            heuristic.setRandom(random);
+            heuristic.setDeadline(deadline);
+            boolean running = true;
+            while (running) {
+                boolean[][] elite = random.nextDouble() < PERTURBATION ? elite() : null;
+                if (elite == null) {
+                    int seed = seeds[random.nextInt(seeds.length)];
+                    if (seed < graph.vertexCount()) {
+                        heuristic.improve(seed);
+                    } else {
+                        heuristic.improveEdge(seed - graph.vertexCount());
+                    }
+                } else {
+                    int kicks = (int) Math.min(graph.vertexCount(), (long) MAX_KICKS << Math.min(restarts, 20));
+                    heuristic.perturb(elite[0], elite[1], 1 + random.nextInt(kicks));
+                }
+                running = publish(heuristic);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.ifmo.ctddev.gmwcs.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Incumbent {
+    private final AtomicLong value;
+
+    public Incumbent() {
+        this(-Double.MAX_VALUE);
+    }
+
+    public Incumbent(double value) {
+        this.value = new AtomicLong(Double.doubleToLongBits(value));
+    }
+
+    public double get() {
+        return Double.longBitsToDouble(value.get());
+    }
+
+    public boolean update(double candidate) {
+        long current = value.get();
+        while (Double.longBitsToDouble(current) < candidate) {
+            if (value.compareAndSet(current, Double.doubleToLongBits(candidate))) {
+                return true;
+            }
+            current = value.get();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,296 @@
+package ru.ifmo.ctddev.gmwcs.solver;
+
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class PathElimination {
+    private static final int MIN_CHUNK = 1024;
+    private static final int NODE_DEGREE = 4;
+    private final CSRGraph graph;
+    private final double[] nodeCost;
+    private final double[] edgeCost;
+    private final boolean[] removableNodes;
+    private final boolean[] removableEdges;
+    private final int budget;
+
+    PathElimination(CSRGraph graph, int budget) {
+        this.graph = graph;
+        this.budget = budget;
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        nodeCost = new double[n];
+        edgeCost = new double[m];
+        for (int v = 0; v < n; v++) {
+            nodeCost[v] = Math.max(-graph.nodeWeight(v), 0);
+        }
+        for (int e = 0; e < m; e++) {
+            edgeCost[e] = Math.max(-graph.edgeWeight(e), 0);
+        }
+        removableNodes = new boolean[n];
+        removableEdges = new boolean[m];
+    }
+
+    void run(int threads, Stats.Timer timer) {
+        int n = graph.vertexCount();
+        int parts = (int) Math.min(4L * threads, Math.max(1, n / MIN_CHUNK));
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            chunks.add(new Chunk(timer, (int) ((long) n * i / parts), (int) ((long) n * (i + 1) / parts)));
+        }
+        ForkJoinPool pool = chunks.size() > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            if (pool != null) {
+                for (Chunk chunk : chunks) {
+                    pool.execute(chunk);
+                }
+            }
+            for (Chunk chunk : chunks) {
+                if (pool != null) {
+                    chunk.join();
+                } else {
+                    chunk.invoke();
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    int[] nodes() {
+        return indices(removableNodes);
+    }
+
+    int[] edges() {
+        return indices(removableEdges);
+    }
+
+    private static int[] indices(boolean[] removable) {
+        int size = 0;
+        int[] result = new int[removable.length];
+        for (int i = 0; i < removable.length; i++) {
+            if (removable[i]) {
+                result[size++] = i;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean owns(int v, int e) {
+        int u = graph.opposite(v, e);
+        int dv = graph.degreeOf(v);
+        int du = graph.degreeOf(u);
+        return dv < du || dv == du && v < u;
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Stats.Timer timer;
+        private final int from;
+        private final int to;
+        private double[] dist;
+        private int[] seen;
+        private int stamp;
+        private double[] keys;
+        private int[] values;
+        private int size;
+
+        Chunk(Stats.Timer timer, int from, int to) {
+            this.timer = timer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            timer.track(() -> {
+                dist = new double[graph.vertexCount()];
+                seen = new int[graph.vertexCount()];
+                keys = new double[16];
+                values = new int[16];
+                for (int v = from; v < to; v++) {
+                    search(v);
+                    test(v);
+                }
+            });
+        }
+
+        private void search(int s) {
+            double bound = 0;
+            for (int i = 0; i < graph.degreeOf(s); i++) {
+                int e = graph.incidentEdge(s, i);
+                if (owns(s, e)) {
+                    bound = Math.max(bound, edgeCost[e]);
+                }
+            }
+            if (bound == 0) {
+                return;
+            }
+            dijkstra(s, bound, -1);
+            for (int i = 0; i < graph.degreeOf(s); i++) {
+                int e = graph.incidentEdge(s, i);
+                int u = graph.neighbor(s, i);
+                if (edgeCost[e] > 0 && owns(s, e) && seen[u] == stamp && dist[u] < edgeCost[e]) {
+                    removableEdges[e] = true;
+                }
+            }
+        }
+
+        private void test(int v) {
+            int k = graph.degreeOf(v);
+            if (k < 2 || k > NODE_DEGREE || graph.nodeWeight(v) > 0) {
+                return;
+            }
+            int[] ends = new int[k];
+            double[] spokes = new double[k];
+            for (int i = 0; i < k; i++) {
+                int e = graph.incidentEdge(v, i);
+                ends[i] = graph.neighbor(v, i);
+                spokes[i] = edgeCost[e];
+                if (graph.edgeWeight(e) > 0 || ends[i] == v) {
+                    return;
+                }
+                for (int j = 0; j < i; j++) {
+                    if (ends[j] == ends[i]) {
+                        return;
+                    }
+                }
+            }
+            double[][] paths = new double[k][k];
+            for (int i = 0; i < k; i++) {
+                double bound = 0;
+                for (int j = 0; j < k; j++) {
+                    if (j != i) {
+                        bound = Math.max(bound, spokes[i] + nodeCost[v] + spokes[j]);
+                    }
+                }
+                dijkstra(ends[i], bound, v);
+                for (int j = 0; j < k; j++) {
+                    paths[i][j] = seen[ends[j]] == stamp ? dist[ends[j]] : Double.POSITIVE_INFINITY;
+                }
+            }
+            for (int mask = 3; mask < 1 << k; mask++) {
+                if (Integer.bitCount(mask) < 2) {
+                    continue;
+                }
+                double star = nodeCost[v];
+                for (int i = 0; i < k; i++) {
+                    if ((mask >> i & 1) != 0) {
+                        star += spokes[i];
+                    }
+                }
+                if (tree(paths, mask) >= star) {
+                    return;
+                }
+            }
+            removableNodes[v] = true;
+        }
+
+        private double tree(double[][] paths, int mask) {
+            int done = Integer.lowestOneBit(mask);
+            double total = 0;
+            while (done != mask) {
+                double best = Double.POSITIVE_INFINITY;
+                int next = -1;
+                for (int i = 0; i < paths.length; i++) {
+                    if ((done >> i & 1) == 0) {
+                        continue;
+                    }
+                    for (int j = 0; j < paths.length; j++) {
+                        if (((mask & ~done) >> j & 1) != 0 && Math.min(paths[i][j], paths[j][i]) < best) {
+                            best = Math.min(paths[i][j], paths[j][i]);
+                            next = j;
+                        }
+                    }
+                }
+                if (next == -1) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                total += best;
+                done |= 1 << next;
+            }
+            return total;
+        }
+
+        private void dijkstra(int s, double bound, int banned) {
+            stamp++;
+            size = 0;
+            dist[s] = 0;
+            seen[s] = stamp;
+            push(0, s);
+            int work = 0;
+            search:
+            while (size > 0) {
+                double d = keys[0];
+                int v = pop();
+                if (d >= bound) {
+                    break;
+                }
+                double through = v == s ? d : d + nodeCost[v];
+                if (d > dist[v] || through >= bound) {
+                    continue;
+                }
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    if (++work > budget) {
+                        break search;
+                    }
+                    int u = graph.neighbor(v, i);
+                    if (u == banned) {
+                        continue;
+                    }
+                    double nd = through + edgeCost[graph.incidentEdge(v, i)];
+                    if (nd < bound && (seen[u] != stamp || nd < dist[u])) {
+                        seen[u] = stamp;
+                        dist[u] = nd;
+                        push(nd, u);
+                    }
+                }
+            }
+        }
+
+        private void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            int i = size++;
+            while (i > 0 && keys[(i - 1) / 2] > key) {
+                keys[i] = keys[(i - 1) / 2];
+                values[i] = values[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private int pop() {
+            int result = values[0];
+            double key = keys[--size];
+            int value = values[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int c = 2 * i + 1;
+                if (c + 1 < size && keys[c + 1] < keys[c]) {
+                    c++;
+                }
+                if (keys[c] >= key) {
+                    break;
+                }
+                keys[i] = keys[c];
+                values[i] = values[c];
+                i = c;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return result;
+        }
+    }
+}
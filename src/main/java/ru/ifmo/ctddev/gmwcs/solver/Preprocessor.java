@@ -1,97 +1,511 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
 import ru.ifmo.ctddev.gmwcs.graph.Edge;
 import ru.ifmo.ctddev.gmwcs.graph.Graph;
 import ru.ifmo.ctddev.gmwcs.graph.Node;
-import ru.ifmo.ctddev.gmwcs.graph.Unit;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 public class Preprocessor {
+    public static final int DEFAULT_PATH_BUDGET = 1000;
+    private static final int PATH_ROUNDS = 4;
+    private static final int DOMINATION_DEGREE = 16;
+    private static final int DOMINATION_CANDIDATES = 256;
+    private final Node[] nodes;
+    private final Edge[] edges;
+    private final int[] sources;
+    private final int[] targets;
+    private final boolean[] removedNodes;
+    private final boolean[] removedEdges;
+    private final int[][] adjacency;
+    private final int[] sizes;
+    private final int[] degrees;
+    private final int[] queue;
+    private final boolean[] queued;
+    private final int[] marks;
+    private final int[] links;
+    private final double[] costs;
+    private int head;
+    private int count;
+    private int stamp;
+    private long visits;
+    private long selfLoops;
+    private long parallelEdges;
+    private long isolatedNodes;
+    private long negativeLeaves;
+    private long positiveEdges;
+    private long negativePaths;
+    private long dominatedNodes;
+    private long pathNodes;
+    private long pathEdges;
+
+    private Preprocessor(CSRGraph graph) {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        nodes = new Node[n];
+        edges = new Edge[m];
+        sources = new int[m];
+        targets = new int[m];
+        removedNodes = new boolean[n];
+        removedEdges = new boolean[m];
+        adjacency = new int[n][];
+        sizes = new int[n];
+        degrees = new int[n];
+        queue = new int[n];
+        queued = new boolean[n];
+        marks = new int[n];
+        links = new int[n];
+        costs = new double[n];
+        for (int e = 0; e < m; e++) {
+            edges[e] = graph.edge(e);
+            sources[e] = graph.source(e);
+            targets[e] = graph.target(e);
+        }
+        for (int v = 0; v < n; v++) {
+            nodes[v] = graph.node(v);
+            sizes[v] = degrees[v] = graph.degreeOf(v);
+            adjacency[v] = new int[Math.max(sizes[v], 1)];
+            for (int i = 0; i < sizes[v]; i++) {
+                adjacency[v][i] = graph.incidentEdge(v, i);
+            }
+            enqueue(v);
+        }
+    }
+
     public static void preprocess(Graph graph) {
-        for (Edge edge : new ArrayList<>(graph.edgeSet())) {
-            if (!graph.containsEdge(edge)) {
-                continue;
+        preprocess(graph, new Stats());
+    }
+
+    public static void preprocess(Graph graph, Stats stats) {
+        preprocess(graph, stats, 1, DEFAULT_PATH_BUDGET);
+    }
+
+    public static void preprocess(Graph graph, Stats stats, int threads, int pathBudget) {
+        CSRGraph reduced = preprocess(CSRGraph.of(graph), stats, threads, pathBudget);
+        for (Edge e : new ArrayList<>(graph.edgeSet())) {
+            graph.removeEdge(e);
+        }
+        for (Node v : new ArrayList<>(graph.vertexSet())) {
+            if (reduced.indexOf(v) == -1) {
+                graph.removeVertex(v);
             }
-            Node from = graph.getEdgeSource(edge);
-            Node to = graph.getEdgeTarget(edge);
-            double ew = edge.getWeight();
-            if (ew >= 0 && ew + from.getWeight() >= 0 && ew + to.getWeight() >= 0) {
-                merge(graph, edge, from, to);
+        }
+        for (int e = 0; e < reduced.edgeCount(); e++) {
+            graph.addEdge(reduced.node(reduced.source(e)), reduced.node(reduced.target(e)), reduced.edge(e));
+        }
+    }
+
+    public static CSRGraph preprocess(CSRGraph graph, Stats stats, int threads, int pathBudget) {
+        Stats.Timer timer = stats.start("preprocess");
+        Stats.Stage stage = timer.stage();
+        stage.size(graph.vertexCount(), graph.edgeCount());
+        Preprocessor preprocessor = new Preprocessor(graph);
+        preprocessor.run();
+        int[] nodeIds = new int[graph.vertexCount()];
+        int[] edgeIds = new int[graph.edgeCount()];
+        for (int round = 0; round < PATH_ROUNDS && pathBudget > 0; round++) {
+            Stats.Timer paths = stats.start("pathElimination");
+            PathElimination elimination = new PathElimination(preprocessor.build(nodeIds, edgeIds), pathBudget);
+            elimination.run(threads, paths);
+            paths.stop();
+            timer.include(paths);
+            int[] nodes = elimination.nodes();
+            int[] edges = elimination.edges();
+            paths.stage().count("nodes", nodes.length);
+            paths.stage().count("edges", edges.length);
+            if (nodes.length == 0 && edges.length == 0) {
+                break;
             }
+            preprocessor.removePaths(nodes, nodeIds, edges, edgeIds);
+            preprocessor.run();
         }
-        for (Node v : new ArrayList<>(graph.vertexSet())) {
-            if (v.getWeight() <= 0 && graph.degreeOf(v) == 2) {
-                Edge[] edges = graph.edgesOf(v).stream().toArray(Edge[]::new);
-                if (edges[1].getWeight() > 0 || edges[0].getWeight() > 0) {
-                    continue;
+        CSRGraph result = preprocessor.build(null, null);
+        timer.stop();
+        stage.count("visits", preprocessor.visits);
+        stage.count("selfLoops", preprocessor.selfLoops);
+        stage.count("parallelEdges", preprocessor.parallelEdges);
+        stage.count("isolatedNodes", preprocessor.isolatedNodes);
+        stage.count("negativeLeaves", preprocessor.negativeLeaves);
+        stage.count("positiveEdges", preprocessor.positiveEdges);
+        stage.count("negativePaths", preprocessor.negativePaths);
+        stage.count("dominatedNodes", preprocessor.dominatedNodes);
+        stage.count("pathNodes", preprocessor.pathNodes);
+        stage.count("pathEdges", preprocessor.pathEdges);
+        stage.count("nodesLeft", result.vertexCount());
+        stage.count("edgesLeft", result.edgeCount());
+        return result;
+    }
+
+    private CSRGraph build(int[] nodeIds, int[] edgeIds) {
+        int[] index = new int[nodes.length];
+        CSRGraph.Builder builder = new CSRGraph.Builder(nodes.length, edges.length);
+        for (int v = 0; v < nodes.length; v++) {
+            if (!removedNodes[v]) {
+                index[v] = builder.addVertex(nodes[v]);
+                if (nodeIds != null) {
+                    nodeIds[index[v]] = v;
                 }
-                Node left = graph.getOppositeVertex(v, edges[0]);
-                Node right = graph.getOppositeVertex(v, edges[1]);
-                if (left == right) {
-                    graph.removeVertex(v);
+            }
+        }
+        for (int e = 0; e < edges.length; e++) {
+            if (!removedEdges[e]) {
+                int local = builder.addEdge(index[sources[e]], index[targets[e]], edges[e]);
+                if (edgeIds != null) {
+                    edgeIds[local] = e;
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void run() {
+        while (count > 0) {
+            int v = queue[head];
+            head = (head + 1) % queue.length;
+            count--;
+            queued[v] = false;
+            if (!removedNodes[v]) {
+                visits++;
+                reduce(v);
+            }
+        }
+    }
+
+    private void removePaths(int[] removableNodes, int[] nodeIds, int[] removableEdges, int[] edgeIds) {
+        for (int local : removableEdges) {
+            int e = edgeIds[local];
+            enqueue(sources[e]);
+            enqueue(targets[e]);
+            removeEdge(e);
+            pathEdges++;
+        }
+        for (int local : removableNodes) {
+            int v = nodeIds[local];
+            enqueueNeighbors(v);
+            removeNode(v);
+            pathNodes++;
+        }
+    }
+
+    private void enqueue(int v) {
+        if (!queued[v]) {
+            queued[v] = true;
+            queue[(head + count++) % queue.length] = v;
+        }
+    }
+
+    private void enqueueNeighbors(int v) {
+        compact(v);
+        for (int i = 0; i < sizes[v]; i++) {
+            enqueue(opposite(v, adjacency[v][i]));
+        }
+    }
+
+    private void reduce(int v) {
+        mergeParallel(v);
+        if (degrees[v] == 0) {
+            if (nodes[v].getWeight() <= 0) {
+                isolatedNodes++;
+                removeNode(v);
+            }
+            return;
+        }
+        if (removeLeaf(v) || mergePositive(v) || contractPath(v)) {
+            return;
+        }
+        removeDominated(v);
+    }
+
+    private void mergeParallel(int v) {
+        compact(v);
+        int[] incident = Arrays.copyOf(adjacency[v], sizes[v]);
+        stamp++;
+        for (int e : incident) {
+            int u = opposite(v, e);
+            if (u == v) {
+                selfLoops++;
+                if (edges[e].getWeight() >= 0) {
+                    detach(e);
+                    nodes[v].absorb(edges[e]);
+                    enqueueNeighbors(v);
                 } else {
-                    graph.removeVertex(v);
-                    edges[0].absorb(v);
-                    edges[0].absorb(edges[1]);
-                    graph.addEdge(left, right, edges[0]);
+                    removeEdge(e);
                 }
+                continue;
+            }
+            if (marks[u] != stamp) {
+                marks[u] = stamp;
+                links[u] = e;
+                continue;
+            }
+            int m = links[u];
+            parallelEdges++;
+            if (edges[e].getWeight() >= 0 && edges[m].getWeight() >= 0) {
+                detach(e);
+                edges[m].absorb(edges[e]);
+            } else if (edges[m].getWeight() < edges[e].getWeight()) {
+                removeEdge(m);
+                links[u] = e;
+            } else {
+                removeEdge(e);
+            }
+            enqueue(u);
+        }
+    }
+
+    private boolean removeLeaf(int v) {
+        if (degrees[v] != 1 || nodes[v].getWeight() > 0) {
+            return false;
+        }
+        compact(v);
+        if (nodes[v].getWeight() + edges[adjacency[v][0]].getWeight() > 0) {
+            return false;
+        }
+        negativeLeaves++;
+        enqueueNeighbors(v);
+        removeNode(v);
+        return true;
+    }
+
+    private boolean mergePositive(int v) {
+        compact(v);
+        for (int i = 0; i < sizes[v]; i++) {
+            int e = adjacency[v][i];
+            int u = opposite(v, e);
+            double ew = edges[e].getWeight();
+            if (ew >= 0 && ew + nodes[v].getWeight() >= 0 && ew + nodes[u].getWeight() >= 0) {
+                int main = degrees[u] >= degrees[v] ? u : v;
+                positiveEdges++;
+                contract(e, main, main == u ? v : u);
+                enqueue(main);
+                enqueueNeighbors(main);
+                return true;
             }
         }
+        return false;
+    }
+
+    private boolean contractPath(int v) {
+        if (nodes[v].getWeight() > 0 || degrees[v] != 2) {
+            return false;
+        }
+        compact(v);
+        int first = adjacency[v][0];
+        int second = adjacency[v][1];
+        if (edges[second].getWeight() > 0 || edges[first].getWeight() > 0) {
+            return false;
+        }
+        int left = opposite(v, first);
+        int right = opposite(v, second);
+        negativePaths++;
+        enqueue(left);
+        enqueue(right);
+        if (left == right) {
+            removeNode(v);
+        } else {
+            removedNodes[v] = true;
+            removedEdges[second] = true;
+            edges[first].absorb(nodes[v]);
+            edges[first].absorb(edges[second]);
+            sources[first] = left;
+            targets[first] = right;
+            append(right, first);
+        }
+        return true;
     }
 
-    private static void merge(Graph graph, Unit... units) {
-        Set<Node> nodes = new HashSet<>();
-        Set<Edge> edges = new HashSet<>();
-        for (Unit unit : units) {
-            if (unit instanceof Node) {
-                nodes.add((Node) unit);
+    private boolean removeDominated(int v) {
+        if (nodes[v].getWeight() > 0 || degrees[v] > DOMINATION_DEGREE) {
+            return false;
+        }
+        compact(v);
+        stamp++;
+        int[] neighbors = new int[sizes[v]];
+        int size = 0;
+        int pivot = -1;
+        for (int i = 0; i < sizes[v]; i++) {
+            int e = adjacency[v][i];
+            if (edges[e].getWeight() > 0) {
+                return false;
+            }
+            int x = opposite(v, e);
+            if (marks[x] != stamp) {
+                marks[x] = stamp;
+                costs[x] = edges[e].getWeight();
+                neighbors[size++] = x;
             } else {
-                edges.add((Edge) unit);
+                costs[x] = Math.max(costs[x], edges[e].getWeight());
+            }
+            if (pivot == -1 || degrees[x] < degrees[pivot]) {
+                pivot = x;
             }
         }
-        for (Edge e : edges) {
-            if (!nodes.contains(graph.getEdgeSource(e)) || !nodes.contains(graph.getEdgeTarget(e))) {
-                throw new IllegalArgumentException();
+        if (degrees[pivot] > DOMINATION_CANDIDATES) {
+            return false;
+        }
+        compact(pivot);
+        int[] candidates = new int[sizes[pivot] + 1];
+        for (int i = 0; i < sizes[pivot]; i++) {
+            candidates[i] = opposite(pivot, adjacency[pivot][i]);
+        }
+        candidates[sizes[pivot]] = pivot;
+        for (int u : candidates) {
+            if (u != v && nodes[u].getWeight() >= nodes[v].getWeight() && dominates(u, neighbors, size)) {
+                dominatedNodes++;
+                for (int i = 0; i < size; i++) {
+                    enqueue(neighbors[i]);
+                }
+                removeNode(v);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean dominates(int u, int[] neighbors, int size) {
+        for (int j = 0; j < size; j++) {
+            int x = neighbors[j];
+            if (x == u) {
+                continue;
+            }
+            int y = degrees[u] <= degrees[x] ? u : x;
+            int z = y == u ? x : u;
+            compact(y);
+            double best = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < sizes[y]; i++) {
+                int e = adjacency[y][i];
+                if (opposite(y, e) == z) {
+                    best = Math.max(best, edges[e].getWeight());
+                }
+            }
+            if (best < costs[x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeNode(int v) {
+        compact(v);
+        for (int i = 0; i < sizes[v]; i++) {
+            int e = adjacency[v][i];
+            int u = opposite(v, e);
+            removedEdges[e] = true;
+            if (u != v) {
+                degrees[u]--;
             }
+            edges[e].clear();
         }
-        for (Edge e : edges) {
-            contract(graph, e);
+        removedNodes[v] = true;
+        degrees[v] = sizes[v] = 0;
+        nodes[v].clear();
+    }
+
+    private void removeEdge(int e) {
+        detach(e);
+        edges[e].clear();
+    }
+
+    private void detach(int e) {
+        removedEdges[e] = true;
+        degrees[sources[e]]--;
+        if (sources[e] != targets[e]) {
+            degrees[targets[e]]--;
         }
     }
 
-    private static void contract(Graph graph, Edge e) {
-        Node main = graph.getEdgeSource(e);
-        Node aux = graph.getEdgeTarget(e);
-        Set<Edge> auxEdges = new HashSet<>(graph.edgesOf(aux));
-        auxEdges.remove(e);
-        for (Edge a : auxEdges) {
-            Node opposite = graph.getOppositeVertex(aux, a);
-            Edge m = graph.getEdge(main, opposite);
-            graph.removeEdge(a);
-            if (m == null) {
-                if (opposite == main) {
-                    if (a.getWeight() >= 0) {
-                        main.absorb(a);
-                    }
-                    continue;
+    private void contract(int e, int main, int aux) {
+        compact(main);
+        compact(aux);
+        stamp++;
+        for (int i = 0; i < sizes[main]; i++) {
+            int a = adjacency[main][i];
+            int x = opposite(main, a);
+            if (x != main && marks[x] != stamp) {
+                marks[x] = stamp;
+                links[x] = a;
+            }
+        }
+        for (int i = 0; i < sizes[aux]; i++) {
+            int a = adjacency[aux][i];
+            if (a == e) {
+                continue;
+            }
+            int x = opposite(aux, a);
+            double aw = edges[a].getWeight();
+            if (x == main || x == aux) {
+                removedEdges[a] = true;
+                if (x == main) {
+                    degrees[main]--;
                 }
-                graph.addEdge(main, opposite, a);
-            } else {
-                if (a.getWeight() >= 0 && m.getWeight() >= 0) {
-                    m.absorb(a);
+                if (aw >= 0) {
+                    nodes[main].absorb(edges[a]);
                 } else {
-                    if (m.getWeight() < a.getWeight()) {
-                        graph.removeEdge(m);
-                        graph.addEdge(main, opposite, a);
-                    }
+                    edges[a].clear();
                 }
+                continue;
             }
+            if (marks[x] != stamp) {
+                move(a, aux, main);
+                marks[x] = stamp;
+                links[x] = a;
+                continue;
+            }
+            int m = links[x];
+            if (aw >= 0 && edges[m].getWeight() >= 0) {
+                removedEdges[a] = true;
+                degrees[x]--;
+                edges[m].absorb(edges[a]);
+            } else if (edges[m].getWeight() < aw) {
+                removeEdge(m);
+                move(a, aux, main);
+                links[x] = a;
+            } else {
+                removedEdges[a] = true;
+                degrees[x]--;
+                edges[a].clear();
+            }
+        }
+        removedNodes[aux] = true;
+        removedEdges[e] = true;
+        degrees[main]--;
+        nodes[main].absorb(nodes[aux]);
+        nodes[main].absorb(edges[e]);
+    }
+
+    private void move(int e, int from, int to) {
+        if (sources[e] == from) {
+            sources[e] = to;
+        } else {
+            targets[e] = to;
+        }
+        degrees[to]++;
+        append(to, e);
+    }
+
+    private void append(int v, int e) {
+        if (sizes[v] == adjacency[v].length) {
+            adjacency[v] = Arrays.copyOf(adjacency[v], 2 * sizes[v]);
         }
-        graph.removeVertex(aux);
-        main.absorb(aux);
-        main.absorb(e);
+        adjacency[v][sizes[v]++] = e;
+    }
+
+    private void compact(int v) {
+        int[] incident = adjacency[v];
+        int size = 0;
+        for (int i = 0; i < sizes[v]; i++) {
+            int e = incident[i];
+            if (!removedEdges[e] && (sources[e] == v || targets[e] == v)) {
+                incident[size++] = e;
+            }
+        }
+        sizes[v] = size;
+    }
+
+    private int opposite(int v, int e) {
+        return sources[e] == v ? targets[e] : sources[e];
     }
 }
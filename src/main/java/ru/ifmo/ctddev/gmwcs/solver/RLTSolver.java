@@ -1,39 +1,87 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
 import ilog.concert.IloException;
-import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
-import ru.ifmo.ctddev.gmwcs.Pair;
+import ru.ifmo.ctddev.gmwcs.Stats;
 import ru.ifmo.ctddev.gmwcs.TimeLimit;
 import ru.ifmo.ctddev.gmwcs.graph.*;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RLTSolver implements RootedSolver {
     public static final double EPS = 0.01;
+    public static final double OBJECTIVE_EPS = 1e-6;
+    public static final double HEURISTIC_SHARE = 0.05;
+    public static final int INJECTED_CUTS = 256;
     private IloCplex cplex;
-    private Map<Node, IloNumVar> y;
-    private Map<Edge, IloNumVar> w;
-    private Map<Edge, Pair<IloNumVar, IloNumVar>> x;
-    private Map<Node, IloNumVar> d;
-    private Map<Node, IloNumVar> x0;
+    private IloNumVar[] y;
+    private IloNumVar[] w;
+    private IloNumVar[] xIn;
+    private IloNumVar[] xOut;
+    private IloNumVar[] d;
+    private IloNumVar[] x0;
     private TimeLimit tl;
     private int threads;
     private boolean suppressOutput;
-    private Graph graph;
+    private CSRGraph graph;
     private double minimum;
     private Node root;
+    private int rootIndex;
     private boolean isSolvedToOptimality;
+    private double gap;
     private int maxToAddCuts;
     private int considerCuts;
+    private FlowAlgorithm flowAlgorithm;
+    private Stats stats;
+    private Incumbent incumbent;
+    private volatile boolean cutOff;
+    private boolean lazy;
+    private AtomicLong lazyCuts;
+    private CutPool cutPool;
+    private Separator separator;
+    private int injected;
 
     public RLTSolver() {
         tl = new TimeLimit(Double.POSITIVE_INFINITY);
         threads = 1;
         this.minimum = -Double.MAX_VALUE;
         maxToAddCuts = considerCuts = Integer.MAX_VALUE;
+        flowAlgorithm = FlowAlgorithm.EDMONDS_KARP;
+        stats = new Stats();
+    }
+
+    public RLTSolver(RLTSolver other) {
+        this();
+        threads = other.threads;
+        suppressOutput = other.suppressOutput;
+        maxToAddCuts = other.maxToAddCuts;
+        considerCuts = other.considerCuts;
+        flowAlgorithm = other.flowAlgorithm;
+        stats = other.stats;
+        lazy = other.lazy;
+        cutPool = other.cutPool;
+    }
+
+    @Override
+    public RLTSolver copy() {
+        return new RLTSolver(this);
+    }
+
+    public void setStats(Stats stats) {
+        this.stats = stats;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    public void setIncumbent(Incumbent incumbent) {
+        this.incumbent = incumbent;
     }
 
     public void setMaxToAddCuts(int num) {
@@ -44,6 +92,19 @@ public class RLTSolver implements RootedSolver {
         considerCuts = num;
     }
 
+    @Override
+    public void setCutPool(CutPool cutPool) {
+        this.cutPool = cutPool;
+    }
+
+    public void setLazyConnectivity(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public void setFlowAlgorithm(FlowAlgorithm flowAlgorithm) {
+        this.flowAlgorithm = flowAlgorithm;
+    }
+
     public void setTimeLimit(TimeLimit tl) {
         this.tl = tl;
     }
@@ -61,27 +122,87 @@ public class RLTSolver implements RootedSolver {
 
     @Override
     public List<Unit> solve(Graph graph) throws SolverException {
+        return solve(CSRGraph.of(graph));
+    }
+
+    @Override
+    public List<Unit> solve(CSRGraph graph) throws SolverException {
+        this.graph = graph;
+        rootIndex = root == null ? -1 : this.graph.indexOf(root);
+        Heuristic start = heuristic();
         try {
+            Stats.Timer model = stats.start("model");
             cplex = new IloCplex();
-            this.graph = graph;
+            separator = null;
+            injected = 0;
             initVariables();
             addConstraints();
-            addObjective();
+            addObjective(start == null ? minimum : Math.max(minimum, start.value()));
             maxSizeConstraints();
             long timeBefore = System.currentTimeMillis();
             if (root == null) {
                 breakRootSymmetry();
+                if (lazy) {
+                    separate();
+                }
             } else {
                 tighten();
             }
-            breakTreeSymmetries();
+            if (lazy) {
+                lazyCuts = new AtomicLong();
+                cplex.use(new Connectivity());
+            } else {
+                breakTreeSymmetries();
+            }
+            if (start != null) {
+                addMIPStart(start);
+            }
+            cutOff = false;
+            if (incumbent != null) {
+                cplex.use(new Publisher());
+            }
             tuning(cplex);
+            model.stop();
+            model.stage().size(this.graph.vertexCount(), this.graph.edgeCount());
+            model.stage().count("variables", cplex.getNcols());
+            model.stage().count("constraints", cplex.getNrows());
+            Stats.Timer search = stats.startEstimate("cplex", threads);
             boolean solFound = cplex.solve();
+            search.stop();
+            search.stage().size(this.graph.vertexCount(), this.graph.edgeCount());
+            search.stage().count("branchNodes", cplex.getNnodes());
+            if (incumbent != null) {
+                search.stage().count("incumbentCutoffs", cutOff ? 1 : 0);
+            }
+            if (lazy) {
+                search.stage().count("lazyCuts", lazyCuts.get());
+            }
+            if (separator != null) {
+                CutPool pool = separator.getPool();
+                search.stage().count("cutPoolHits", pool.hits());
+                search.stage().count("cutPoolMisses", pool.misses());
+                search.stage().count("injectedCuts", injected);
+                if (cutPool != null) {
+                    cutPool.merge(pool);
+                }
+            }
             tl.spend(Math.min(tl.getRemainingTime(), (System.currentTimeMillis() - timeBefore) / 1000.0));
-            if (solFound) {
-                return getResult();
+            gap = solFound ? cplex.getMIPRelativeGap() : Double.POSITIVE_INFINITY;
+            if (solFound && (start == null || cplex.getObjValue() >= start.value())) {
+                List<Unit> result = getResult();
+                if (cutOff) {
+                    isSolvedToOptimality = true;
+                    gap = 0.0;
+                }
+                return result;
             }
-            return Collections.emptyList();
+            IloCplex.Status status = cplex.getStatus();
+            isSolvedToOptimality = cutOff || status == IloCplex.Status.Optimal
+                    || status == IloCplex.Status.Infeasible || status == IloCplex.Status.InfeasibleOrUnbounded;
+            if (isSolvedToOptimality) {
+                gap = 0.0;
+            }
+            return start == null ? Collections.emptyList() : getResult(start);
         } catch (IloException e) {
             throw new SolverException(e.getMessage());
         } finally {
@@ -89,52 +210,177 @@ public class RLTSolver implements RootedSolver {
         }
     }
 
+    private Heuristic heuristic() {
+        Stats.Timer timer = stats.start("heuristic");
+        long timeBefore = System.currentTimeMillis();
+        double budget = tl.getRemainingTime() * HEURISTIC_SHARE;
+        long deadline = budget == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : timeBefore + (long) (budget * 1000);
+        Heuristic heuristic = new Heuristic(graph, rootIndex);
+        boolean found = heuristic.run(deadline);
+        tl.spend(Math.min(tl.getRemainingTime(), (System.currentTimeMillis() - timeBefore) / 1000.0));
+        timer.stop();
+        timer.stage().size(graph.vertexCount(), graph.edgeCount());
+        timer.stage().count("seeds", heuristic.seeds());
+        timer.stage().count("moves", heuristic.moves());
+        timer.stage().count("work", heuristic.work());
+        if (!found) {
+            return null;
+        }
+        if (incumbent != null) {
+            incumbent.update(heuristic.value());
+        }
+        return heuristic;
+    }
+
+    private void addMIPStart(Heuristic start) throws IloException {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        double[] values = start.start();
+        IloNumVar[] vars = new IloNumVar[values.length];
+        System.arraycopy(y, 0, vars, 0, n);
+        System.arraycopy(w, 0, vars, n, m);
+        int count = n + m;
+        if (x0 != null) {
+            System.arraycopy(x0, 0, vars, n + m, n);
+            count += n;
+        }
+        if (!lazy) {
+            System.arraycopy(xIn, 0, vars, 2 * n + m, m);
+            System.arraycopy(xOut, 0, vars, 2 * n + 2 * m, m);
+            System.arraycopy(d, 0, vars, 2 * n + 3 * m, n);
+            count = values.length;
+        }
+        cplex.addMIPStart(Arrays.copyOf(vars, count), Arrays.copyOf(values, count), IloCplex.MIPStartEffort.Auto);
+    }
+
     private void breakTreeSymmetries() throws IloException {
-        int n = graph.vertexSet().size();
-        for (Edge e : graph.edgeSet()) {
-            Node from = graph.getEdgeSource(e);
-            Node to = graph.getEdgeTarget(e);
-            cplex.addLe(cplex.sum(d.get(from), cplex.prod(n - 1, w.get(e))), cplex.sum(n, d.get(to)));
-            cplex.addLe(cplex.sum(d.get(to), cplex.prod(n - 1, w.get(e))), cplex.sum(n, d.get(from)));
+        int n = graph.vertexCount();
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int from = graph.source(e);
+            int to = graph.target(e);
+            cplex.addLe(cplex.sum(d[from], cplex.prod(n - 1, w[e])), cplex.sum(n, d[to]));
+            cplex.addLe(cplex.sum(d[to], cplex.prod(n - 1, w[e])), cplex.sum(n, d[from]));
         }
     }
 
     private void tighten() throws IloException {
         Blocks blocks = new Blocks(graph);
-        Separator separator = new Separator(y, w, cplex, graph);
+        separator = new Separator(y, w, cplex, graph, flowAlgorithm);
         separator.setMaxToAdd(maxToAddCuts);
         separator.setMinToConsider(considerCuts);
-        if (blocks.cutpoints().contains(root)) {
-            for (Set<Node> component : blocks.incidentBlocks(root)) {
-                dfs(root, component, true, blocks, separator);
+        if (cutPool != null) {
+            inject(separator.getPool());
+        }
+        int[] stack = new int[2 * blocks.blockCount()];
+        int[] mark = new int[graph.vertexCount()];
+        int top = 0;
+        for (int i = 0; i < blocks.incidentCount(rootIndex); i++) {
+            stack[top++] = rootIndex;
+            stack[top++] = blocks.incidentBlock(rootIndex, i);
+        }
+        while (top > 0) {
+            int b = stack[--top];
+            int root = stack[--top];
+            int[] component = new int[blocks.blockSize(b)];
+            for (int i = 0; i < component.length; i++) {
+                component[i] = blocks.blockNode(b, i);
+                mark[component[i]] = b + 1;
+            }
+            separator.addComponent(component, root);
+            if (root != rootIndex) {
+                for (int node : component) {
+                    if (node != root) {
+                        cplex.addLe(cplex.diff(y[node], y[root]), 0);
+                    }
+                }
+            }
+            for (int i = 0; i < graph.degreeOf(root) && !lazy; i++) {
+                if (mark[graph.neighbor(root, i)] == b + 1) {
+                    cplex.addEq(getX(graph.incidentEdge(root, i), root), 0);
+                }
+            }
+            for (int i = 0; i < blocks.cutpointCount(b); i++) {
+                int cp = blocks.cutpoint(b, i);
+                if (cp == root) {
+                    continue;
+                }
+                for (int j = 0; j < blocks.incidentCount(cp); j++) {
+                    int next = blocks.incidentBlock(cp, j);
+                    if (next != b) {
+                        stack[top++] = cp;
+                        stack[top++] = next;
+                    }
+                }
             }
-        } else {
-            dfs(root, blocks.componentOf(root), true, blocks, separator);
         }
         cplex.use(separator);
     }
 
-    private void dfs(Node root, Set<Node> component, boolean fake, Blocks blocks, Separator separator) throws IloException {
-        separator.addComponent(graph.subgraph(component), root);
-        if (!fake) {
-            for (Node node : component) {
-                cplex.addLe(cplex.diff(y.get(node), y.get(root)), 0);
-            }
+    private void separate() throws IloException {
+        separator = new Separator(y, w, x0, cplex, graph, flowAlgorithm);
+        separator.setMaxToAdd(maxToAddCuts);
+        separator.setMinToConsider(considerCuts);
+        int[] nodes = new int[graph.vertexCount()];
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v] = v;
+        }
+        separator.addComponent(nodes, -1);
+        if (cutPool != null) {
+            inject(separator.getPool());
         }
-        for (Edge e : graph.edgesOf(root)) {
-            if (!component.contains(graph.getOppositeVertex(root, e))) {
+        cplex.use(separator);
+    }
+
+    private void inject(CutPool local) throws IloException {
+        int[] seen = new int[graph.vertexCount()];
+        int[] removed = new int[graph.edgeCount()];
+        int[] queue = new int[graph.vertexCount()];
+        int stamp = 0;
+        for (CutPool.Cut cut : cutPool.strongest(INJECTED_CUTS)) {
+            int v = graph.indexOf(cut.node());
+            if (v == -1 || v == rootIndex) {
                 continue;
             }
-            cplex.addEq(getX(e, root), 0);
-        }
-        for (Node cp : blocks.cutpointsOf(component)) {
-            if (root != cp) {
-                for (Set<Node> comp : blocks.incidentBlocks(cp)) {
-                    if (comp != component) {
-                        dfs(cp, comp, false, blocks, separator);
+            stamp++;
+            List<IloNumVar> vars = new ArrayList<>();
+            for (Edge edge : cut.edges()) {
+                int e = graph.indexOf(edge);
+                if (e != -1) {
+                    removed[e] = stamp;
+                    vars.add(w[e]);
+                }
+            }
+            boolean separated = true;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = v;
+            seen[v] = stamp;
+            while (head < tail && separated) {
+                int u = queue[head++];
+                for (int i = 0; i < graph.degreeOf(u); i++) {
+                    int x = graph.neighbor(u, i);
+                    if (seen[x] == stamp || removed[graph.incidentEdge(u, i)] == stamp) {
+                        continue;
+                    }
+                    if (x == rootIndex) {
+                        separated = false;
+                        break;
                     }
+                    seen[x] = stamp;
+                    queue[tail++] = x;
+                }
+            }
+            if (!separated) {
+                continue;
+            }
+            if (rootIndex == -1) {
+                for (int i = 0; i < tail; i++) {
+                    vars.add(x0[queue[i]]);
                 }
             }
+            cplex.addLe(cplex.diff(y[v], cplex.sum(vars.toArray(new IloNumVar[vars.size()]))), 0);
+            local.put(cut);
+            injected++;
         }
     }
 
@@ -142,17 +388,24 @@ public class RLTSolver implements RootedSolver {
         return isSolvedToOptimality;
     }
 
+    @Override
+    public double getGap() {
+        return gap;
+    }
+
     private List<Unit> getResult() throws IloException {
         isSolvedToOptimality = false;
         List<Unit> result = new ArrayList<>();
-        for (Node node : graph.vertexSet()) {
-            if (cplex.getValue(y.get(node)) > EPS) {
-                result.add(node);
+        double[] yValues = cplex.getValues(y);
+        double[] wValues = cplex.getValues(w);
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            if (yValues[v] > EPS) {
+                result.add(graph.node(v));
             }
         }
-        for (Edge edge : graph.edgeSet()) {
-            if (cplex.getValue(w.get(edge)) > EPS) {
-                result.add(edge);
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (wValues[e] > EPS) {
+                result.add(graph.edge(e));
             }
         }
         if (cplex.getStatus() == IloCplex.Status.Optimal) {
@@ -161,26 +414,52 @@ public class RLTSolver implements RootedSolver {
         return result;
     }
 
+    private List<Unit> getResult(Heuristic start) {
+        List<Unit> result = new ArrayList<>();
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            if (start.nodes()[v]) {
+                result.add(graph.node(v));
+            }
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (start.edges()[e]) {
+                result.add(graph.edge(e));
+            }
+        }
+        return result;
+    }
+
     private void initVariables() throws IloException {
-        y = new LinkedHashMap<>();
-        w = new LinkedHashMap<>();
-        d = new LinkedHashMap<>();
-        x = new LinkedHashMap<>();
-        x0 = new LinkedHashMap<>();
-        for (Node node : graph.vertexSet()) {
-            String nodeName = Integer.toString(node.getNum() + 1);
-            d.put(node, cplex.numVar(0, Double.MAX_VALUE, "d" + nodeName));
-            y.put(node, cplex.boolVar("y" + nodeName));
-            x0.put(node, cplex.boolVar("x_0_" + (node.getNum() + 1)));
-        }
-        for (Edge edge : graph.edgeSet()) {
-            Node from = graph.getEdgeSource(edge);
-            Node to = graph.getEdgeTarget(edge);
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        y = new IloNumVar[n];
+        w = new IloNumVar[m];
+        x0 = lazy && rootIndex != -1 ? null : new IloNumVar[n];
+        d = xIn = xOut = null;
+        if (!lazy) {
+            d = new IloNumVar[n];
+            xIn = new IloNumVar[m];
+            xOut = new IloNumVar[m];
+        }
+        for (int v = 0; v < n; v++) {
+            String nodeName = Integer.toString(graph.node(v).getNum() + 1);
+            y[v] = cplex.boolVar("y" + nodeName);
+            if (x0 != null) {
+                x0[v] = cplex.boolVar("x_0_" + nodeName);
+            }
+            if (!lazy) {
+                d[v] = cplex.numVar(0, Double.MAX_VALUE, "d" + nodeName);
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            Node from = graph.node(graph.source(e));
+            Node to = graph.node(graph.target(e));
             String edgeName = (from.getNum() + 1) + "_" + (to.getNum() + 1);
-            w.put(edge, cplex.boolVar("w_" + edgeName));
-            IloNumVar in = cplex.boolVar("x_" + edgeName + "_in");
-            IloNumVar out = cplex.boolVar("x_" + edgeName + "_out");
-            x.put(edge, new Pair<>(in, out));
+            w[e] = cplex.boolVar("w_" + edgeName);
+            if (!lazy) {
+                xIn[e] = cplex.boolVar("x_" + edgeName + "_in");
+                xOut[e] = cplex.boolVar("x_" + edgeName + "_out");
+            }
         }
     }
 
@@ -200,16 +479,19 @@ public class RLTSolver implements RootedSolver {
     }
 
     private void breakRootSymmetry() throws IloException {
-        int n = graph.vertexSet().size();
-        PriorityQueue<Node> nodes = new PriorityQueue<>();
-        nodes.addAll(graph.vertexSet());
+        int n = graph.vertexCount();
+        PriorityQueue<Integer> nodes = new PriorityQueue<>(Math.max(n, 1),
+                (v, u) -> graph.node(v).compareTo(graph.node(u)));
+        for (int v = 0; v < n; v++) {
+            nodes.add(v);
+        }
         int k = n;
         IloNumExpr[] terms = new IloNumExpr[n];
         IloNumExpr[] rs = new IloNumExpr[n];
         while (!nodes.isEmpty()) {
-            Node node = nodes.poll();
-            terms[k - 1] = cplex.prod(k, x0.get(node));
-            rs[k - 1] = cplex.prod(k, y.get(node));
+            int node = nodes.poll();
+            terms[k - 1] = cplex.prod(k, x0[node]);
+            rs[k - 1] = cplex.prod(k, y[node]);
             k--;
         }
         IloNumVar sum = cplex.numVar(0, n, "prSum");
@@ -219,61 +501,72 @@ public class RLTSolver implements RootedSolver {
         }
     }
 
-    private void addObjective() throws IloException {
-        Map<Unit, IloNumVar> summands = new LinkedHashMap<>();
-        Set<Unit> toConsider = new LinkedHashSet<>();
-        toConsider.addAll(graph.vertexSet());
-        toConsider.addAll(graph.edgeSet());
-        for (Unit unit : toConsider) {
-            summands.put(unit, getVar(unit));
+    private void addObjective(double lb) throws IloException {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        double[] coef = new double[n + m];
+        IloNumVar[] variables = new IloNumVar[n + m];
+        for (int v = 0; v < n; v++) {
+            coef[v] = graph.node(v).getWeight();
+            variables[v] = y[v];
         }
-        IloNumExpr sum = unitScalProd(summands.keySet(), summands);
-        cplex.addGe(sum, minimum);
+        for (int e = 0; e < m; e++) {
+            coef[n + e] = graph.edge(e).getWeight();
+            variables[n + e] = w[e];
+        }
+        IloNumExpr sum = cplex.scalProd(coef, variables);
+        cplex.addGe(sum, incumbent == null ? lb : Math.max(lb, incumbent.get()));
         cplex.addMaximize(sum);
     }
 
-    private IloNumVar getVar(Unit unit) {
-        return unit instanceof Node ? y.get(unit) : w.get(unit);
-    }
-
     @Override
     public void suppressOutput() {
         suppressOutput = true;
     }
 
     private void addConstraints() throws IloException {
+        if (lazy) {
+            cutConstraints();
+            return;
+        }
         sumConstraints();
         otherConstraints();
         distanceConstraints();
     }
 
     private void distanceConstraints() throws IloException {
-        int n = graph.vertexSet().size();
-        for (Node v : graph.vertexSet()) {
-            cplex.addLe(d.get(v), cplex.diff(n, cplex.prod(n, x0.get(v))));
+        int n = graph.vertexCount();
+        for (int v = 0; v < n; v++) {
+            cplex.addLe(d[v], cplex.diff(n, cplex.prod(n, x0[v])));
         }
-        for (Edge e : graph.edgeSet()) {
-            Node from = graph.getEdgeSource(e);
-            Node to = graph.getEdgeTarget(e);
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int from = graph.source(e);
+            int to = graph.target(e);
             addEdgeConstraints(e, from, to);
             addEdgeConstraints(e, to, from);
         }
     }
 
-    private void addEdgeConstraints(Edge e, Node from, Node to) throws IloException {
-        int n = graph.vertexSet().size();
+    private void addEdgeConstraints(int e, int from, int to) throws IloException {
+        int n = graph.vertexCount();
         IloNumVar z = getX(e, to);
-        cplex.addGe(cplex.sum(n, d.get(to)), cplex.sum(d.get(from), cplex.prod(n + 1, z)));
-        cplex.addLe(cplex.sum(d.get(to), cplex.prod(n - 1, z)), cplex.sum(d.get(from), n));
+        cplex.addGe(cplex.sum(n, d[to]), cplex.sum(d[from], cplex.prod(n + 1, z)));
+        cplex.addLe(cplex.sum(d[to], cplex.prod(n - 1, z)), cplex.sum(d[from], n));
     }
 
     private void maxSizeConstraints() throws IloException {
-        for (Node v : graph.vertexSet()) {
-            for (Node u : graph.neighborListOf(v)) {
-                if (u.getWeight() >= 0) {
-                    Edge e = graph.getEdge(v, u);
-                    if (e != null && e.getWeight() >= 0) {
-                        cplex.addLe(y.get(v), w.get(e));
+        int[] seen = new int[graph.vertexCount()];
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int u = graph.neighbor(v, i);
+                if (seen[u] == v + 1) {
+                    continue;
+                }
+                seen[u] = v + 1;
+                if (graph.node(u).getWeight() >= 0) {
+                    int e = graph.incidentEdge(v, i);
+                    if (graph.edge(e).getWeight() >= 0) {
+                        cplex.addLe(y[v], w[e]);
                     }
                 }
             }
@@ -282,56 +575,130 @@ public class RLTSolver implements RootedSolver {
 
     private void otherConstraints() throws IloException {
         // (36), (39)
-        for (Edge edge : graph.edgeSet()) {
-            Pair<IloNumVar, IloNumVar> arcs = x.get(edge);
-            Node from = graph.getEdgeSource(edge);
-            Node to = graph.getEdgeTarget(edge);
-            cplex.addLe(cplex.sum(arcs.first, arcs.second), w.get(edge));
-            cplex.addLe(w.get(edge), y.get(from));
-            cplex.addLe(w.get(edge), y.get(to));
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            cplex.addLe(cplex.sum(xIn[e], xOut[e]), w[e]);
+            cplex.addLe(w[e], y[graph.source(e)]);
+            cplex.addLe(w[e], y[graph.target(e)]);
+        }
+    }
+
+    private void cutConstraints() throws IloException {
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            cplex.addLe(w[e], y[graph.source(e)]);
+            cplex.addLe(w[e], y[graph.target(e)]);
+        }
+        if (rootIndex != -1) {
+            cplex.addEq(y[rootIndex], 1);
+            return;
+        }
+        cplex.addLe(cplex.sum(x0), 1);
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            cplex.addLe(x0[v], y[v]);
+        }
+    }
+
+    private List<int[]> detached(double[] yValues, double[] wValues, double[] rootValues) {
+        int n = graph.vertexCount();
+        int[] queue = new int[n];
+        boolean[] reached = new boolean[n];
+        List<int[]> result = new ArrayList<>();
+        for (int s = 0; s < n; s++) {
+            if (reached[s] || yValues[s] < 0.5) {
+                continue;
+            }
+            boolean rooted = false;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            reached[s] = true;
+            while (head < tail) {
+                int v = queue[head++];
+                rooted |= v == rootIndex || rootValues != null && rootValues[v] > 0.5;
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    int u = graph.neighbor(v, i);
+                    if (!reached[u] && wValues[graph.incidentEdge(v, i)] > 0.5) {
+                        reached[u] = true;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+            if (!rooted) {
+                result.add(Arrays.copyOf(queue, tail));
+            }
+        }
+        return result;
+    }
+
+    private IloRange cut(int[] component) throws IloException {
+        boolean[] inside = new boolean[graph.vertexCount()];
+        for (int v : component) {
+            inside[v] = true;
+        }
+        List<IloNumVar> vars = new ArrayList<>();
+        for (int v : component) {
+            if (x0 != null) {
+                vars.add(x0[v]);
+            }
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                if (!inside[graph.neighbor(v, i)]) {
+                    vars.add(w[graph.incidentEdge(v, i)]);
+                }
+            }
         }
+        IloNumVar[] sum = vars.toArray(new IloNumVar[vars.size()]);
+        return cplex.le(cplex.diff(y[component[0]], cplex.sum(sum)), 0);
     }
 
     private void sumConstraints() throws IloException {
         // (31)
-        cplex.addLe(cplex.sum(graph.vertexSet().stream().map(x -> x0.get(x)).toArray(IloNumVar[]::new)), 1);
-        if (root != null) {
-            cplex.addEq(x0.get(root), 1);
+        cplex.addLe(cplex.sum(x0), 1);
+        if (rootIndex != -1) {
+            cplex.addEq(x0[rootIndex], 1);
         }
         // (32)
-        for (Node node : graph.vertexSet()) {
-            Set<Edge> edges = graph.edgesOf(node);
-            IloNumVar xSum[] = new IloNumVar[edges.size() + 1];
-            int i = 0;
-            for (Edge edge : edges) {
-                xSum[i++] = getX(edge, node);
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            IloNumVar xSum[] = new IloNumVar[graph.degreeOf(v) + 1];
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                xSum[i] = getX(graph.incidentEdge(v, i), v);
             }
-            xSum[xSum.length - 1] = x0.get(node);
-            cplex.addEq(cplex.sum(xSum), y.get(node));
+            xSum[xSum.length - 1] = x0[v];
+            cplex.addEq(cplex.sum(xSum), y[v]);
         }
     }
 
-    private IloNumVar getX(Edge e, Node to) {
-        if (graph.getEdgeSource(e) == to) {
-            return x.get(e).first;
+    private IloNumVar getX(int e, int to) {
+        if (graph.source(e) == to) {
+            return xIn[e];
         } else {
-            return x.get(e).second;
+            return xOut[e];
         }
     }
 
-    private IloLinearNumExpr unitScalProd(Set<? extends Unit> units, Map<? extends Unit, IloNumVar> vars) throws IloException {
-        int n = units.size();
-        double[] coef = new double[n];
-        IloNumVar[] variables = new IloNumVar[n];
-        int i = 0;
-        for (Unit unit : units) {
-            coef[i] = unit.getWeight();
-            variables[i++] = vars.get(unit);
+    public void setLB(double lb) {
+        this.minimum = lb;
+    }
+
+    private class Publisher extends IloCplex.MIPInfoCallback {
+        @Override
+        protected void main() throws IloException {
+            if (hasIncumbent()) {
+                incumbent.update(getIncumbentObjValue());
+            }
+            if (getBestObjValue() <= incumbent.get() + OBJECTIVE_EPS) {
+                cutOff = true;
+                abort();
+            }
         }
-        return cplex.scalProd(coef, variables);
     }
 
-    public void setLB(double lb) {
-        this.minimum = lb;
+    private class Connectivity extends IloCplex.LazyConstraintCallback {
+        @Override
+        protected void main() throws IloException {
+            double[] rootValues = x0 == null ? null : getValues(x0);
+            for (int[] component : detached(getValues(y), getValues(w), rootValues)) {
+                add(cut(component));
+                lazyCuts.incrementAndGet();
+            }
+        }
     }
 }
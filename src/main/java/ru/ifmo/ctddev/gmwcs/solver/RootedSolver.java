@@ -1,7 +1,26 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
 import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+
+import java.util.List;
 
 public interface RootedSolver extends Solver {
+    List<Unit> solve(CSRGraph graph) throws SolverException;
+
     void setRoot(Node root);
+
+    void setThreadsNum(int threads);
+
+    void setIncumbent(Incumbent incumbent);
+
+    void setCutPool(CutPool cutPool);
+
+    void setStats(Stats stats);
+
+    Stats getStats();
+
+    RootedSolver copy();
 }
@@ -3,42 +3,86 @@ package ru.ifmo.ctddev.gmwcs.solver;
 import ilog.concert.IloException;
 import ilog.concert.IloNumVar;
 import ilog.cplex.IloCplex;
+import ru.ifmo.ctddev.gmwcs.graph.Adjacency;
 import ru.ifmo.ctddev.gmwcs.graph.Edge;
-import ru.ifmo.ctddev.gmwcs.graph.Graph;
 import ru.ifmo.ctddev.gmwcs.graph.Node;
-import ru.ifmo.ctddev.gmwcs.graph.Unit;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Separator extends IloCplex.UserCutCallback {
     public static final double ADDITION_CAPACITY = 1e-6;
     public static final double STEP = 0.1;
     public static final double EPS = 1e-5;
+    public static final int NESTED_CUTS = 2;
     private final IloCplex cplex;
-    private Map<Node, CutGenerator> generators;
+    private int[] owner;
     private int maxToAdd;
     private int minToConsider;
-    private List<Node> nodes;
+    private List<Integer> nodes;
     private List<CutGenerator> generatorList;
-    private Map<Node, IloNumVar> y;
-    private Map<Edge, IloNumVar> w;
-    private int waited;
-    private double period;
-    private Graph graph;
-    private boolean inited;
-    private Map<Unit, Integer> indices;
+    private IloNumVar[] y;
+    private IloNumVar[] w;
+    private IloNumVar[] x0;
+    private final AtomicLong budget;
+    private final CutPool pool;
+    private final Random random;
+    private int[] used;
+    private int stamp;
+    private Adjacency graph;
     private IloNumVar[] vars;
+    private FlowAlgorithm flowAlgorithm;
 
-    public Separator(Map<Node, IloNumVar> y, Map<Edge, IloNumVar> w, IloCplex cplex, Graph graph) {
+    public Separator(IloNumVar[] y, IloNumVar[] w, IloCplex cplex, Adjacency graph, FlowAlgorithm flowAlgorithm) {
+        this(y, w, null, cplex, graph, flowAlgorithm);
+    }
+
+    public Separator(IloNumVar[] y, IloNumVar[] w, IloNumVar[] x0, IloCplex cplex, Adjacency graph,
+                     FlowAlgorithm flowAlgorithm) {
         this.y = y;
         this.w = w;
-        generators = new HashMap<>();
+        this.x0 = x0;
+        owner = new int[graph.vertexCount()];
         generatorList = new ArrayList<>();
         nodes = new ArrayList<>();
         maxToAdd = Integer.MAX_VALUE;
         minToConsider = Integer.MAX_VALUE;
         this.cplex = cplex;
         this.graph = graph;
+        this.flowAlgorithm = flowAlgorithm;
+        budget = new AtomicLong();
+        pool = new CutPool();
+        random = new Random();
+        used = new int[w.length + y.length];
+        vars = new IloNumVar[w.length + (x0 == null ? 1 : 2) * y.length];
+        System.arraycopy(w, 0, vars, 0, w.length);
+        System.arraycopy(y, 0, vars, w.length, y.length);
+        if (x0 != null) {
+            System.arraycopy(x0, 0, vars, w.length + y.length, y.length);
+        }
+    }
+
+    private Separator(Separator other) {
+        y = other.y;
+        w = other.w;
+        x0 = other.x0;
+        owner = other.owner;
+        generatorList = new ArrayList<>(other.generatorList.size());
+        for (CutGenerator generator : other.generatorList) {
+            generatorList.add(new CutGenerator(generator));
+        }
+        nodes = new ArrayList<>(other.nodes);
+        maxToAdd = other.maxToAdd;
+        minToConsider = other.minToConsider;
+        cplex = other.cplex;
+        graph = other.graph;
+        flowAlgorithm = other.flowAlgorithm;
+        budget = other.budget;
+        pool = other.pool;
+        random = new Random();
+        used = new int[w.length + y.length];
+        vars = other.vars;
     }
 
     public void setMaxToAdd(int n) {
@@ -49,22 +93,25 @@ public class Separator extends IloCplex.UserCutCallback {
         minToConsider = n;
     }
 
-    private synchronized boolean isCutsAllowed() {
-        waited++;
-        if (waited > period) {
-            waited = 0;
-            period += STEP;
-            return true;
+    public CutPool getPool() {
+        return pool;
+    }
+
+    private boolean isCutsAllowed() {
+        while (true) {
+            long state = budget.get();
+            long rounds = state >>> 32;
+            long waited = (state & 0xFFFFFFFFL) + 1;
+            boolean allowed = waited > rounds * STEP;
+            long next = allowed ? (rounds + 1) << 32 : (rounds << 32) | waited;
+            if (budget.compareAndSet(state, next)) {
+                return allowed;
+            }
         }
-        return false;
     }
 
     public Separator clone() {
-        Separator result = new Separator(y, w, cplex, graph);
-        for (CutGenerator generator : generatorList) {
-            result.addComponent(graph.subgraph(generator.getNodes()), generator.getRoot());
-        }
-        return result;
+        return new Separator(this);
     }
 
     @Override
@@ -73,20 +120,38 @@ public class Separator extends IloCplex.UserCutCallback {
             return;
         }
         initWeights();
-        Collections.shuffle(nodes);
-        List<Node> now = nodes.subList(0, Math.min(nodes.size(), minToConsider));
+        Collections.shuffle(nodes, random);
+        List<Integer> now = nodes.subList(0, Math.min(nodes.size(), minToConsider));
         int added = 0;
-        for (Node node : now) {
-            CutGenerator generator = generators.get(node);
-            List<Edge> cut = generator.findCut(node);
-            if (cut != null) {
-                Set<Edge> minCut = new HashSet<>();
-                minCut.addAll(cut);
-                synchronized (cplex) {
-                    IloNumVar[] evars = minCut.stream().map(x -> w.get(x)).toArray(IloNumVar[]::new);
-                    add(cplex.le(cplex.diff(y.get(node), cplex.sum(evars)), 0), IloCplex.CutManagement.UseCutPurge);
+        for (int node : now) {
+            CutGenerator generator = generatorList.get(owner[node]);
+            for (List<Integer> cut : generator.findCuts(node, NESTED_CUTS)) {
+                int[] terms = distinct(cut);
+                Arrays.sort(terms);
+                int edgeCount = 0;
+                while (edgeCount < terms.length && terms[edgeCount] < w.length) {
+                    edgeCount++;
+                }
+                IloNumVar[] evars = new IloNumVar[terms.length];
+                Edge[] edges = new Edge[edgeCount];
+                Node[] roots = new Node[terms.length - edgeCount];
+                for (int i = 0; i < terms.length; i++) {
+                    if (i < edgeCount) {
+                        evars[i] = w[terms[i]];
+                        edges[i] = graph.edge(terms[i]);
+                    } else {
+                        evars[i] = x0[terms[i] - w.length];
+                        roots[i - edgeCount] = graph.node(terms[i] - w.length);
+                    }
+                }
+                // Forced cuts are never purged, so a cut the pool has seen is still in the LP
+                if (pool.offer(new CutPool.Cut(graph.node(node), edges, roots))) {
+                    add(cplex.le(cplex.diff(y[node], cplex.sum(evars)), 0), IloCplex.CutManagement.UseCutForce);
+                    added++;
+                }
+                if (added == maxToAdd) {
+                    break;
                 }
-                added++;
             }
             if (added == maxToAdd) {
                 break;
@@ -94,54 +159,40 @@ public class Separator extends IloCplex.UserCutCallback {
         }
     }
 
-    private void initWeights() throws IloException {
-        if (!inited) {
-            init();
+    private int[] distinct(List<Integer> cut) {
+        stamp++;
+        int[] result = new int[cut.size()];
+        int count = 0;
+        for (int e : cut) {
+            if (used[e] != stamp) {
+                used[e] = stamp;
+                result[count++] = e;
+            }
         }
+        return Arrays.copyOf(result, count);
+    }
+
+    private void initWeights() throws IloException {
         double[] values = getValues(vars);
         for (CutGenerator generator : generatorList) {
-            Set<Edge> visited = new HashSet<>();
-            for (Edge edge : generator.getEdges()) {
-                if (visited.contains(edge)) {
-                    continue;
+            generator.setCapacities(values, ADDITION_CAPACITY);
+            for (int node : generator.getNodes()) {
+                generator.setVertexCapacity(node, values[w.length + node] - EPS);
+                if (generator.getRoot() == -1) {
+                    generator.setRootCapacity(node, values[w.length + y.length + node] + ADDITION_CAPACITY);
                 }
-                double weight = 0;
-                for (Edge e : graph.getAllEdges(graph.getEdgeSource(edge), graph.getEdgeTarget(edge))) {
-                    weight += values[indices.get(e)];
-                    visited.add(e);
-                }
-                generator.setCapacity(edge, weight + ADDITION_CAPACITY);
-            }
-            for (Node node : generator.getNodes()) {
-                generator.setVertexCapacity(node, values[indices.get(node)] - EPS);
             }
         }
     }
 
-    private void init() {
-        inited = true;
-        indices = new HashMap<>();
-        int i = 0;
-        vars = new IloNumVar[w.size() + y.size()];
-        for (Edge e : graph.edgeSet()) {
-            vars[i] = w.get(e);
-            indices.put(e, i++);
-        }
-        for (Node v : graph.vertexSet()) {
-            vars[i] = y.get(v);
-            indices.put(v, i++);
-        }
-    }
-
-    public void addComponent(Graph graph, Node root) {
-        CutGenerator generator = new CutGenerator(graph, root);
+    public void addComponent(int[] component, int root) {
+        CutGenerator generator = new CutGenerator(graph, component, root, flowAlgorithm);
         generatorList.add(generator);
-        for (Node node : generator.getNodes()) {
+        for (int node : generator.getNodes()) {
             if (node != generator.getRoot()) {
-                generators.put(node, generator);
+                owner[node] = generatorList.size() - 1;
                 nodes.add(node);
             }
         }
-        inited = false;
     }
 }
@@ -1,6 +1,7 @@
 package ru.ifmo.ctddev.gmwcs.solver;
 
 import ru.ifmo.ctddev.gmwcs.TimeLimit;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
 import ru.ifmo.ctddev.gmwcs.graph.Graph;
 import ru.ifmo.ctddev.gmwcs.graph.Unit;
 
@@ -9,10 +10,16 @@ import java.util.List;
 public interface Solver {
     List<Unit> solve(Graph graph) throws SolverException;
 
+    default List<Unit> solve(CSRGraph graph) throws SolverException {
+        return solve(graph.toGraph());
+    }
+
     void setTimeLimit(TimeLimit tl);
 
     boolean isSolvedToOptimality();
 
+    double getGap();
+
     void suppressOutput();
 
     void setLB(double lb);
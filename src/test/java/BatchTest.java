@@ -0,0 +1,196 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.Batch;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.SimpleIO;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BatchTest {
+    public static final int SEED = 20161120;
+    public static final int INSTANCES = 40;
+    private Random random;
+
+    public BatchTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_manifest() throws IOException, ParseException, InterruptedException {
+        File dir = Files.createTempDirectory("gmwcs").toFile();
+        try {
+            StringBuilder manifest = new StringBuilder("# nodes edges [root]\n");
+            List<String> roots = new ArrayList<>();
+            for (int i = 0; i < INSTANCES; i++) {
+                int n = generate(dir, "i" + i + ".nodes", "i" + i + ".edges");
+                String root = random.nextInt(3) == 0 ? "v" + random.nextInt(n + 1) : null;
+                roots.add(root);
+                manifest.append("i").append(i).append(".nodes\t")
+                        .append(new File(dir, "i" + i + ".edges").getAbsolutePath())
+                        .append(root == null ? "" : " " + root).append('\n');
+            }
+            manifest.append("missing.nodes missing.edges\n");
+            File file = new File(dir, "manifest");
+            Files.write(file.toPath(), manifest.toString().getBytes());
+            List<Batch.Instance> instances = Batch.instances(file);
+            Assert.assertEquals(INSTANCES + 1, instances.size());
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            Batch batch = new Batch((threads, root, cutPool) -> {
+                Assert.assertEquals(2, threads);
+                return new ExactSolver(root, running, peak);
+            });
+            batch.setThreadsNum(7);
+            batch.setJobs(3);
+            batch.setMappedIO(true);
+            List<Batch.Result> results = batch.solve(instances);
+            Assert.assertTrue(peak.get() <= 3);
+            for (int i = 0; i < INSTANCES; i++) {
+                Batch.Result result = results.get(i);
+                Assert.assertSame(instances.get(i), result.instance);
+                if (roots.get(i) != null && !nodeExists(dir, i, roots.get(i))) {
+                    Assert.assertNotNull(result.error);
+                    continue;
+                }
+                Assert.assertNull(result.error);
+                Assert.assertEquals(expected(dir, i, roots.get(i)), result.objective, 1e-9);
+                double written = score(new File(dir, "i" + i + ".nodes.out"))
+                        + score(new File(dir, "i" + i + ".edges.out"));
+                Assert.assertEquals(result.objective, written, 1e-6);
+            }
+            Assert.assertNotNull(results.get(INSTANCES).error);
+            StringWriter summary = new StringWriter();
+            Batch.writeSummary(results, summary);
+            Assert.assertEquals(INSTANCES + 2, summary.toString().split("\n").length);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void test02_directory() throws IOException, ParseException, InterruptedException {
+        File dir = Files.createTempDirectory("gmwcs").toFile();
+        try {
+            generate(dir, "a.nodes", "a.edges");
+            generate(dir, "nodes", "edges");
+            generate(dir, "b_nodes", "b_edges");
+            Files.write(new File(dir, "c.nodes").toPath(), "x 1\n".getBytes());
+            List<Batch.Instance> instances = Batch.instances(dir);
+            Assert.assertEquals(3, instances.size());
+            Batch batch = new Batch((threads, root, cutPool) -> new ExactSolver(root));
+            batch.setThreadsNum(4);
+            for (Batch.Result result : batch.solve(instances)) {
+                Assert.assertNull(result.error);
+                Assert.assertTrue(new File(result.instance.nodes + ".out").isFile());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void test03_errors() throws IOException, ParseException, InterruptedException {
+        File dir = Files.createTempDirectory("gmwcs").toFile();
+        try {
+            StringBuilder manifest = new StringBuilder();
+            for (int i = 0; i < INSTANCES; i++) {
+                generate(dir, "i" + i + ".nodes", "i" + i + ".edges");
+                manifest.append("i").append(i).append(".nodes i").append(i).append(".edges")
+                        .append(i % 3 == 0 ? " v0" : "").append('\n');
+            }
+            File file = new File(dir, "manifest");
+            Files.write(file.toPath(), manifest.toString().getBytes());
+            List<Batch.Instance> instances = Batch.instances(file);
+            Batch batch = new Batch((threads, root, cutPool) -> {
+                if (root != null) {
+                    throw new IllegalStateException("broken solver");
+                }
+                return new ExactSolver(null);
+            });
+            batch.setThreadsNum(4);
+            batch.setMappedIO(false);
+            List<Batch.Result> results = batch.solve(instances);
+            Assert.assertEquals(INSTANCES, results.size());
+            for (int i = 0; i < INSTANCES; i++) {
+                Batch.Result result = results.get(i);
+                if (i % 3 == 0) {
+                    Assert.assertTrue(result.error, result.error.contains("broken solver"));
+                } else {
+                    Assert.assertNull(result.error);
+                    Assert.assertEquals(expected(dir, i, null), result.objective, 1e-9);
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private int generate(File dir, String nodeFile, String edgeFile) throws IOException {
+        int n = 1 + random.nextInt(8);
+        StringBuilder nodes = new StringBuilder();
+        for (int v = 0; v < n; v++) {
+            nodes.append('v').append(v).append('\t').append(random.nextInt(16) - 8).append('\n');
+        }
+        StringBuilder edges = new StringBuilder();
+        int m = random.nextInt(12);
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u != v) {
+                edges.append('v').append(v).append('\t').append('v').append(u).append('\t')
+                        .append(random.nextInt(16) - 8).append('\n');
+            }
+        }
+        Files.write(new File(dir, nodeFile).toPath(), nodes.toString().getBytes());
+        Files.write(new File(dir, edgeFile).toPath(), edges.toString().getBytes());
+        return n;
+    }
+
+    private SimpleIO io(File dir, int i) {
+        return new SimpleIO(new File(dir, "i" + i + ".nodes"), new File(dir, "check.nodes"),
+                new File(dir, "i" + i + ".edges"), new File(dir, "check.edges"));
+    }
+
+    private boolean nodeExists(File dir, int i, String root) throws IOException, ParseException {
+        SimpleIO io = io(dir, i);
+        io.read();
+        return io.nodeByName(root) != null;
+    }
+
+    private double expected(File dir, int i, String rootName) throws IOException, ParseException {
+        SimpleIO io = io(dir, i);
+        Graph graph = io.read();
+        List<Node> roots = rootName == null ? Collections.emptyList()
+                : Collections.singletonList(io.nodeByName(rootName));
+        List<Unit> result = new ReferenceSolver().solve(graph, roots);
+        return rootName == null ? Math.max(sum(result), 0.0) : sum(result);
+    }
+
+    private double score(File file) throws IOException {
+        double score = 0.0;
+        for (String line : Files.readAllLines(file.toPath())) {
+            if (line.startsWith("#")) {
+                score += Double.parseDouble(line.substring(line.indexOf('\t') + 1));
+            }
+        }
+        return score;
+    }
+
+    private void delete(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+}
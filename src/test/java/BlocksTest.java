@@ -0,0 +1,262 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.graph.*;
+
+import java.util.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BlocksTest {
+    public static final int SEED = 20161228;
+    public static final int DEEP = 1000000;
+    public static final int DEEP_BOXED = 200000;
+    public static final long STACK = 1 << 18;
+    public static final int TESTS = 3000;
+    public static final int MAX_NODES = 10;
+    public static final int MAX_EDGES = 16;
+    private Random random;
+
+    public BlocksTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_deep() throws Throwable {
+        onSmallStack(() -> {
+            CSRGraph path = chain(DEEP, false);
+            Blocks blocks = new Blocks(path);
+            Assert.assertEquals(DEEP - 1, blocks.blockCount());
+            for (int v = 0; v < DEEP; v++) {
+                Assert.assertEquals(v > 0 && v < DEEP - 1, blocks.isCutpoint(v));
+            }
+            CSRGraph triangles = chain(DEEP + 1, true);
+            blocks = new Blocks(triangles);
+            Assert.assertEquals(DEEP / 2, blocks.blockCount());
+            for (int b = 0; b < blocks.blockCount(); b++) {
+                Assert.assertEquals(3, blocks.blockSize(b));
+            }
+            for (int v = 0; v <= DEEP; v++) {
+                Assert.assertEquals(v % 2 == 0 && v > 0 && v < DEEP, blocks.isCutpoint(v));
+            }
+            Decomposition decomposition = new Decomposition(triangles);
+            Assert.assertEquals(3, decomposition.getBiggestComponent().size());
+            int rooted = decomposition.getRootedComponents().size();
+            Assert.assertTrue(rooted == 1 || rooted == 2);
+            int covered = 0;
+            for (CSRGraph component : decomposition.getUnrootedGraphs()) {
+                covered += component.vertexCount();
+            }
+            Assert.assertEquals(DEEP + 1 - 3 + rooted, covered);
+            Node root = new Node(-1, 0.0);
+            Assert.assertEquals(DEEP + 1 - 3 + 1, decomposition.getRootedTree(root).vertexCount());
+        });
+        onSmallStack(() -> {
+            Graph graph = chain(DEEP_BOXED, false).toGraph();
+            Assert.assertEquals(1, graph.connectedSets().size());
+        });
+    }
+
+    @Test
+    public void test02_bruteForce() {
+        for (int i = 0; i < TESTS; i++) {
+            CSRGraph graph = generate();
+            Blocks blocks = new Blocks(graph);
+            int n = graph.vertexCount();
+            List<Set<Integer>> expected = blocks(graph);
+            List<Set<Integer>> actual = new ArrayList<>();
+            for (int b = 0; b < blocks.blockCount(); b++) {
+                Set<Integer> block = new TreeSet<>();
+                for (int j = 0; j < blocks.blockSize(b); j++) {
+                    Assert.assertTrue("Test " + i, block.add(blocks.blockNode(b, j)));
+                }
+                actual.add(block);
+            }
+            Assert.assertEquals("Test " + i, sorted(expected), sorted(actual));
+            int components = components(graph, -1);
+            for (int v = 0; v < n; v++) {
+                boolean cutpoint = components(graph, v) > components - (isolated(graph, v) ? 1 : 0);
+                Assert.assertEquals("Test " + i + ", node " + v, cutpoint, blocks.isCutpoint(v));
+                Set<Set<Integer>> incident = new HashSet<>();
+                for (int j = 0; j < blocks.incidentCount(v); j++) {
+                    incident.add(actual.get(blocks.incidentBlock(v, j)));
+                }
+                Set<Set<Integer>> containing = new HashSet<>();
+                for (Set<Integer> block : expected) {
+                    if (block.contains(v)) {
+                        containing.add(block);
+                    }
+                }
+                Assert.assertEquals("Test " + i + ", node " + v, containing, incident);
+                Assert.assertEquals("Test " + i + ", node " + v, containing.size(), blocks.incidentCount(v));
+                Assert.assertTrue("Test " + i + ", node " + v, actual.get(blocks.componentOf(v)).contains(v));
+            }
+            for (int b = 0; b < blocks.blockCount(); b++) {
+                Set<Integer> cutpoints = new TreeSet<>();
+                for (int j = 0; j < blocks.cutpointCount(b); j++) {
+                    Assert.assertTrue("Test " + i, cutpoints.add(blocks.cutpoint(b, j)));
+                }
+                Set<Integer> inside = new TreeSet<>();
+                for (int v : actual.get(b)) {
+                    if (blocks.isCutpoint(v)) {
+                        inside.add(v);
+                    }
+                }
+                Assert.assertEquals("Test " + i + ", block " + b, inside, cutpoints);
+            }
+        }
+    }
+
+    private static void onSmallStack(Runnable task) throws Throwable {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "deep", STACK);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private static CSRGraph chain(int n, boolean triangles) {
+        CSRGraph.Builder builder = new CSRGraph.Builder(n, triangles ? 3 * n / 2 : n);
+        for (int v = 0; v < n; v++) {
+            builder.addVertex(new Node(v + 1, 0.0));
+        }
+        int edges = 0;
+        for (int v = 0; v + 1 < n; v++) {
+            builder.addEdge(v, v + 1, new Edge(++edges, 0.0));
+            if (triangles && v % 2 == 0 && v + 2 < n) {
+                builder.addEdge(v, v + 2, new Edge(++edges, 0.0));
+            }
+        }
+        return builder.build();
+    }
+
+    private List<Set<Integer>> blocks(CSRGraph graph) {
+        int m = graph.edgeCount();
+        int[] label = new int[m];
+        Arrays.fill(label, -1);
+        List<Set<Integer>> result = new ArrayList<>();
+        for (int e = 0; e < m; e++) {
+            if (label[e] != -1) {
+                continue;
+            }
+            label[e] = result.size();
+            Set<Integer> block = new TreeSet<>();
+            for (int f = e; f < m; f++) {
+                if (label[f] == -1 && together(graph, e, f) || f == e) {
+                    label[f] = label[e];
+                    block.add(graph.source(f));
+                    block.add(graph.target(f));
+                }
+            }
+            result.add(block);
+        }
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            if (isolated(graph, v)) {
+                result.add(new TreeSet<>(Collections.singleton(v)));
+            }
+        }
+        return result;
+    }
+
+    private boolean together(CSRGraph graph, int e, int f) {
+        for (int x = 0; x < graph.vertexCount(); x++) {
+            int a = graph.source(e) == x ? graph.target(e) : graph.source(e);
+            int b = graph.source(f) == x ? graph.target(f) : graph.source(f);
+            if (!reachable(graph, x, a, b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean reachable(CSRGraph graph, int removed, int from, int to) {
+        boolean[] seen = new boolean[graph.vertexCount()];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(from);
+        seen[from] = true;
+        while (!stack.isEmpty()) {
+            int v = stack.pop();
+            if (v == to) {
+                return true;
+            }
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int u = graph.neighbor(v, i);
+                if (u != removed && !seen[u]) {
+                    seen[u] = true;
+                    stack.push(u);
+                }
+            }
+        }
+        return false;
+    }
+
+    private int components(CSRGraph graph, int removed) {
+        boolean[] seen = new boolean[graph.vertexCount()];
+        int count = 0;
+        for (int s = 0; s < graph.vertexCount(); s++) {
+            if (s == removed || seen[s]) {
+                continue;
+            }
+            count++;
+            seen[s] = true;
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(s);
+            while (!stack.isEmpty()) {
+                int v = stack.pop();
+                for (int i = 0; i < graph.degreeOf(v); i++) {
+                    int u = graph.neighbor(v, i);
+                    if (u != removed && !seen[u]) {
+                        seen[u] = true;
+                        stack.push(u);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isolated(CSRGraph graph, int v) {
+        for (int i = 0; i < graph.degreeOf(v); i++) {
+            if (graph.neighbor(v, i) != v) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> sorted(List<Set<Integer>> blocks) {
+        List<String> result = new ArrayList<>();
+        for (Set<Integer> block : blocks) {
+            result.add(block.toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private CSRGraph generate() {
+        int n = 1 + random.nextInt(MAX_NODES);
+        int m = n == 1 ? 0 : random.nextInt(MAX_EDGES + 1);
+        CSRGraph.Builder builder = new CSRGraph.Builder();
+        for (int v = 0; v < n; v++) {
+            builder.addVertex(new Node(v + 1, 0.0));
+        }
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u == v) {
+                e--;
+                continue;
+            }
+            builder.addEdge(v, u, new Edge(e + 1, 0.0));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
+import ru.ifmo.ctddev.gmwcs.solver.CutGenerator;
+
+import java.util.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CutGeneratorTest {
+    public static final int SEED = 20161227;
+    public static final int TESTS = 2000;
+    public static final int MAX_NODES = 12;
+    public static final int MAX_EDGES = 20;
+    public static final int NESTED = 2;
+    public static final double EPS = 1e-9;
+    private Random random;
+
+    public CutGeneratorTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_unrooted() {
+        int found = 0;
+        for (int i = 0; i < TESTS; i++) {
+            CSRGraph graph = generate();
+            int n = graph.vertexCount();
+            int m = graph.edgeCount();
+            double[] y = new double[n];
+            double[] x0 = new double[n];
+            double[] w = new double[m];
+            for (int v = 0; v < n; v++) {
+                y[v] = random.nextDouble();
+                x0[v] = random.nextInt(3) == 0 ? 0.0 : random.nextDouble() * y[v] / n;
+            }
+            for (int e = 0; e < m; e++) {
+                w[e] = random.nextDouble() * Math.min(y[graph.source(e)], y[graph.target(e)]);
+            }
+            int[] nodes = new int[n];
+            for (int v = 0; v < n; v++) {
+                nodes[v] = v;
+            }
+            for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+                CutGenerator generator = new CutGenerator(graph, nodes, -1, algorithm);
+                generator.setCapacities(w, 0.0);
+                for (int v = 0; v < n; v++) {
+                    generator.setVertexCapacity(v, y[v]);
+                    generator.setRootCapacity(v, x0[v]);
+                }
+                for (int v = 0; v < n; v++) {
+                    for (List<Integer> cut : generator.findCuts(v, NESTED)) {
+                        check(graph, cut, v, y, w, x0, "Test " + i + ", " + algorithm);
+                        found++;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(found > 0);
+    }
+
+    @Test
+    public void test02_detached() {
+        for (int i = 0; i < TESTS; i++) {
+            CSRGraph graph = generate();
+            int n = graph.vertexCount();
+            int[] nodes = new int[n];
+            for (int v = 0; v < n; v++) {
+                nodes[v] = v;
+            }
+            CutGenerator generator = new CutGenerator(graph, nodes, -1, FlowAlgorithm.EDMONDS_KARP);
+            generator.setCapacities(new double[graph.edgeCount()], 0.0);
+            int v = random.nextInt(n);
+            generator.setVertexCapacity(v, 1.0);
+            List<Integer> cut = generator.findCut(v);
+            Assert.assertNotNull("Test " + i, cut);
+            Assert.assertTrue("Test " + i, cut.contains(graph.edgeCount() + v));
+            generator.setRootCapacity(v, 1.0);
+            Assert.assertNull("Test " + i, generator.findCut(v));
+        }
+    }
+
+    private void check(CSRGraph graph, List<Integer> cut, int v, double[] y, double[] w, double[] x0,
+                       String test) {
+        int m = graph.edgeCount();
+        Set<Integer> terms = new HashSet<>(cut);
+        double sum = 0;
+        for (int term : terms) {
+            sum += term < m ? w[term] : x0[term - m];
+        }
+        Assert.assertTrue(test, sum < y[v] + EPS);
+        boolean[] seen = new boolean[graph.vertexCount()];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(v);
+        seen[v] = true;
+        while (!stack.isEmpty()) {
+            int u = stack.pop();
+            Assert.assertTrue(test, terms.contains(m + u));
+            for (int i = 0; i < graph.degreeOf(u); i++) {
+                int next = graph.neighbor(u, i);
+                if (!seen[next] && !terms.contains(graph.incidentEdge(u, i))) {
+                    seen[next] = true;
+                    stack.push(next);
+                }
+            }
+        }
+    }
+
+    private CSRGraph generate() {
+        Graph graph = new Graph();
+        int n = 1 + random.nextInt(MAX_NODES);
+        int m = n == 1 ? 0 : random.nextInt(MAX_EDGES + 1);
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, 0.0);
+            graph.addVertex(nodes[v]);
+        }
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u == v) {
+                e--;
+                continue;
+            }
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, 0.0));
+        }
+        return CSRGraph.of(graph);
+    }
+}
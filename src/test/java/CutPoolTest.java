@@ -0,0 +1,115 @@
+import org.junit.Assert;
+import org.junit.Test;
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CutPoolTest {
+    public static final int SEED = 20161218;
+    public static final int THREADS = 8;
+    public static final int OFFERS = 20000;
+    public static final int NODES = 20;
+    public static final int EDGES = 6;
+
+    @Test
+    public void test01_concurrent() throws Exception {
+        CutPool pool = new CutPool();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                Random random = new Random(SEED + i);
+                tasks.add(executor.submit(() -> {
+                    int added = 0;
+                    for (int j = 0; j < OFFERS; j++) {
+                        if (pool.offer(cut(random, random.nextInt(NODES), random.nextInt(1 << EDGES)))) {
+                            added++;
+                        }
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for (Future<Integer> task : tasks) {
+                added += task.get();
+            }
+            Assert.assertEquals(pool.size(), added);
+            Assert.assertEquals(added, pool.misses());
+            Assert.assertEquals(THREADS * OFFERS, pool.hits() + pool.misses());
+            Assert.assertTrue(pool.size() <= NODES << EDGES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test02_strongest() {
+        Random random = new Random(SEED);
+        CutPool pool = new CutPool();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                pool.offer(cut(random, i, 1 << i));
+            }
+        }
+        List<CutPool.Cut> strongest = pool.strongest(3);
+        Assert.assertEquals(3, strongest.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(4 - i, strongest.get(i).node().getNum());
+            Assert.assertEquals(5 - i, strongest.get(i).hits());
+        }
+        CutPool other = new CutPool();
+        other.offer(cut(random, 0, 1));
+        other.merge(pool);
+        Assert.assertEquals(5, other.size());
+        Assert.assertEquals(2, other.strongest(5).get(4).hits());
+    }
+
+    @Test
+    public void test03_put() {
+        Random random = new Random(SEED);
+        CutPool global = new CutPool();
+        CutPool.Cut cut = cut(random, 1, 3);
+        global.offer(cut);
+        global.offer(cut(random, 1, 3));
+        CutPool local = new CutPool();
+        local.put(global.strongest(1).get(0));
+        Assert.assertEquals(1, local.size());
+        Assert.assertEquals(0, local.hits() + local.misses());
+        Assert.assertFalse(local.offer(cut(random, 1, 3)));
+        Assert.assertEquals(1, local.hits());
+        Assert.assertEquals(0, local.misses());
+        Assert.assertEquals(2, local.strongest(1).get(0).hits());
+        Assert.assertEquals(2, cut.hits());
+    }
+
+    @Test
+    public void test04_roots() {
+        Edge[] edges = {new Edge(1, 0.0), new Edge(2, 0.0)};
+        Node node = new Node(0, 0.0);
+        CutPool pool = new CutPool();
+        Assert.assertTrue(pool.offer(new CutPool.Cut(node, edges)));
+        Assert.assertTrue(pool.offer(new CutPool.Cut(node, edges, new Node[]{new Node(3, 0.0), new Node(4, 0.0)})));
+        Assert.assertFalse(pool.offer(new CutPool.Cut(node, edges, new Node[]{new Node(4, 0.0), new Node(3, 0.0)})));
+        Assert.assertTrue(pool.offer(new CutPool.Cut(node, edges, new Node[]{new Node(3, 0.0)})));
+        Assert.assertEquals(3, pool.size());
+    }
+
+    private CutPool.Cut cut(Random random, int node, int mask) {
+        List<Edge> edges = new ArrayList<>();
+        for (int e = 0; e < EDGES; e++) {
+            if ((mask & (1 << e)) != 0) {
+                edges.add(new Edge(e, random.nextDouble()));
+            }
+        }
+        Collections.shuffle(edges, random);
+        return new CutPool.Cut(new Node(node, random.nextDouble()), edges.toArray(new Edge[edges.size()]));
+    }
+}
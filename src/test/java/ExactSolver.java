@@ -0,0 +1,61 @@
+import ru.ifmo.ctddev.gmwcs.TimeLimit;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+import ru.ifmo.ctddev.gmwcs.solver.Solver;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+public class ExactSolver implements Solver {
+    private final Node root;
+    private final AtomicInteger running;
+    private final AtomicInteger peak;
+
+    public ExactSolver(Node root) {
+        this(root, new AtomicInteger(), new AtomicInteger());
+    }
+
+    public ExactSolver(Node root, AtomicInteger running, AtomicInteger peak) {
+        this.root = root;
+        this.running = running;
+        this.peak = peak;
+    }
+
+    @Override
+    public List<Unit> solve(Graph graph) {
+        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            List<Node> roots = root == null ? Collections.emptyList() : Collections.singletonList(root);
+            List<Unit> result = new ReferenceSolver().solve(graph, roots);
+            return root == null && sum(result) < 0 ? null : result;
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void setTimeLimit(TimeLimit tl) {
+    }
+
+    @Override
+    public boolean isSolvedToOptimality() {
+        return true;
+    }
+
+    @Override
+    public double getGap() {
+        return 0.0;
+    }
+
+    @Override
+    public void suppressOutput() {
+    }
+
+    @Override
+    public void setLB(double lb) {
+    }
+}
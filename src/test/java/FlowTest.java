@@ -5,7 +5,8 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import ru.ifmo.ctddev.gmwcs.Pair;
-import ru.ifmo.ctddev.gmwcs.graph.flow.EdmondsKarp;
+import ru.ifmo.ctddev.gmwcs.graph.flow.FlowAlgorithm;
+import ru.ifmo.ctddev.gmwcs.graph.flow.MaxFlow;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -56,7 +57,11 @@ public class FlowTest {
                         continue;
                     }
                 }
-                EdmondsKarp maxFlow = build(graph);
+                FlowAlgorithm[] algorithms = FlowAlgorithm.values();
+                MaxFlow[] maxFlows = new MaxFlow[algorithms.length];
+                for (int k = 0; k < algorithms.length; k++) {
+                    maxFlows[k] = build(graph, algorithms[k]);
+                }
                 for (int i = 0; i < n; i++) {
                     if (DEBUG_TEST != null && i != DEBUG_SINK) {
                         continue;
@@ -64,18 +69,31 @@ public class FlowTest {
                     if (i == s) {
                         continue;
                     }
-                    double actualCapacity;
                     try {
-                        List<Pair<Integer, Integer>> cut = maxFlow.computeMinCut(s, i, Double.POSITIVE_INFINITY);
-                        actualCapacity = getCutCapacity(cut, graph);
                         MinSourceSinkCut<Integer, Integer> checker = new MinSourceSinkCut<>(graph);
                         checker.computeMinCut(s, i);
                         double expectedCapacity = checker.getCutWeight();
-                        if (Math.abs(actualCapacity - expectedCapacity) > 1e-4) {
-                            toXDot(graph, s, i, cut);
-                            System.err.println("Test no. " + testNo);
-                            System.err.println("Sink: " + i);
-                            Assert.assertEquals(expectedCapacity, actualCapacity, 1e-4);
+                        Set<Pair<Integer, Integer>> expectedCut = null;
+                        for (int k = 0; k < algorithms.length; k++) {
+                            List<Pair<Integer, Integer>> cut = maxFlows[k].computeMinCut(s, i, Double.POSITIVE_INFINITY);
+                            double actualCapacity = getCutCapacity(cut, graph);
+                            if (Math.abs(actualCapacity - expectedCapacity) > 1e-4) {
+                                toXDot(graph, s, i, cut);
+                                System.err.println("Test no. " + testNo);
+                                System.err.println("Sink: " + i);
+                                System.err.println("Algorithm: " + algorithms[k]);
+                                Assert.assertEquals(expectedCapacity, actualCapacity, 1e-4);
+                            }
+                            Assert.assertTrue("Algorithm: " + algorithms[k], separates(graph, cut, s, i));
+                            // Incremental flow keeps excess at previous sinks, so its cut is not source-minimal
+                            if (algorithms[k] == FlowAlgorithm.INCREMENTAL) {
+                                continue;
+                            }
+                            if (expectedCut == null) {
+                                expectedCut = new HashSet<>(cut);
+                            } else {
+                                Assert.assertEquals("Algorithm: " + algorithms[k], expectedCut, new HashSet<>(cut));
+                            }
                         }
                         if (DEBUG_TEST != null) {
                             return;
@@ -92,6 +110,155 @@ public class FlowTest {
         }
     }
 
+    @Test
+    public void test02_threshold() {
+        for (int n = 3; n < MAX_SIZE; n++) {
+            for (int j = 0; j < TESTS_PER_SIZE / 10; j++) {
+                MyGraph graph = randomGraph(n, random.nextInt((n * (n - 1)) / 2));
+                int s = random.nextInt(n);
+                int t = (s + 1 + random.nextInt(n - 1)) % n;
+                for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+                    MaxFlow maxFlow = build(graph, algorithm);
+                    double capacity = getCutCapacity(maxFlow.computeMinCut(s, t, Double.POSITIVE_INFINITY), graph);
+                    Assert.assertTrue(maxFlow.computeMinCut(s, t, capacity + 1e-4) != null);
+                    Assert.assertTrue(maxFlow.computeMinCut(s, t, capacity - 1e-4) == null);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test03_reuse() {
+        for (int n = 3; n < MAX_SIZE; n++) {
+            for (int j = 0; j < TESTS_PER_SIZE / 10; j++) {
+                MyGraph graph = randomGraph(n, random.nextInt((n * (n - 1)) / 2));
+                int s = random.nextInt(n);
+                MaxFlow reference = build(graph, FlowAlgorithm.EDMONDS_KARP);
+                MaxFlow maxFlow = build(graph, FlowAlgorithm.INCREMENTAL);
+                for (int k = 0; k < 2 * n; k++) {
+                    int t = (s + 1 + random.nextInt(n - 1)) % n;
+                    if (random.nextInt(n) == 0) {
+                        Integer e = randomEdge(graph);
+                        if (e != null) {
+                            double c = random.nextDouble();
+                            graph.setEdgeWeight(e, c);
+                            reference.setCapacity(graph.getEdgeSource(e), graph.getEdgeTarget(e), c);
+                            maxFlow.setCapacity(graph.getEdgeSource(e), graph.getEdgeTarget(e), c);
+                        }
+                    }
+                    double capacity = getCutCapacity(reference.computeMinCut(s, t, Double.POSITIVE_INFINITY), graph);
+                    double threshold = capacity * (0.5 + random.nextDouble());
+                    if (Math.abs(threshold - capacity) < 1e-4) {
+                        continue;
+                    }
+                    List<Pair<Integer, Integer>> cut = maxFlow.computeMinCut(s, t, threshold);
+                    Assert.assertEquals(capacity < threshold, cut != null);
+                    if (cut != null) {
+                        Assert.assertTrue(getCutCapacity(cut, graph) < threshold);
+                        Assert.assertTrue(separates(graph, cut, s, t));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test04_copy() {
+        for (int n = 3; n < MAX_SIZE; n++) {
+            for (int j = 0; j < TESTS_PER_SIZE / 10; j++) {
+                MyGraph graph = randomGraph(n, random.nextInt((n * (n - 1)) / 2));
+                int s = random.nextInt(n);
+                int t = (s + 1 + random.nextInt(n - 1)) % n;
+                for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+                    MaxFlow original = build(graph, algorithm);
+                    double capacity = getCutCapacity(original.computeMinCut(s, t, Double.POSITIVE_INFINITY), graph);
+                    MaxFlow copy = original.copy();
+                    for (Integer e : graph.edgeSet()) {
+                        copy.setCapacity(graph.getEdgeSource(e), graph.getEdgeTarget(e), 0.0);
+                    }
+                    Assert.assertTrue(copy.computeMinCut(s, t, 1e-4) != null);
+                    if (graph.containsEdge(s, t)) {
+                        continue;
+                    }
+                    original.addEdge(s, t);
+                    original.setCapacity(s, t, 1.0);
+                    Assert.assertTrue(copy.computeMinCut(s, t, 1e-4) != null);
+                    Assert.assertTrue(original.computeMinCut(s, t, capacity + 1.0 - 1e-4) == null);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test05_nested() {
+        for (int n = 3; n < MAX_SIZE; n++) {
+            for (int j = 0; j < TESTS_PER_SIZE / 10; j++) {
+                MyGraph graph = randomGraph(n, random.nextInt((n * (n - 1)) / 2));
+                int s = random.nextInt(n);
+                int t = (s + 1 + random.nextInt(n - 1)) % n;
+                for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+                    MaxFlow maxFlow = build(graph, algorithm);
+                    double capacity = getCutCapacity(maxFlow.computeMinCut(s, t, Double.POSITIVE_INFINITY), graph);
+                    double threshold = capacity + random.nextDouble();
+                    List<List<Pair<Integer, Integer>>> cuts = maxFlow.computeMinCuts(s, t, threshold, 3);
+                    Assert.assertFalse(cuts.isEmpty());
+                    Assert.assertTrue(cuts.size() <= 5);
+                    Assert.assertEquals(capacity, getCutCapacity(cuts.get(0), graph), 1e-4);
+                    Set<Set<Pair<Integer, Integer>>> distinct = new HashSet<>();
+                    for (List<Pair<Integer, Integer>> cut : cuts) {
+                        Assert.assertTrue("Algorithm: " + algorithm, getCutCapacity(cut, graph) < threshold);
+                        Assert.assertTrue("Algorithm: " + algorithm, separates(graph, cut, s, t));
+                        Assert.assertTrue("Algorithm: " + algorithm, distinct.add(new HashSet<>(cut)));
+                    }
+                    double again = getCutCapacity(maxFlow.computeMinCut(s, t, Double.POSITIVE_INFINITY), graph);
+                    Assert.assertEquals(capacity, again, 1e-4);
+                    Assert.assertTrue(maxFlow.computeMinCuts(s, t, capacity - 1e-4, 3).isEmpty());
+                }
+            }
+        }
+    }
+
+    private Integer randomEdge(MyGraph graph) {
+        List<Integer> edges = new ArrayList<>(graph.edgeSet());
+        return edges.isEmpty() ? null : edges.get(random.nextInt(edges.size()));
+    }
+
+    private boolean separates(MyGraph graph, List<Pair<Integer, Integer>> cut, int s, int t) {
+        Set<Pair<Integer, Integer>> removed = new HashSet<>(cut);
+        Set<Integer> visited = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(s);
+        visited.add(s);
+        while (!stack.isEmpty()) {
+            int v = stack.pop();
+            for (Integer e : graph.outgoingEdgesOf(v)) {
+                int u = graph.getEdgeTarget(e);
+                if (graph.getEdgeWeight(e) > 0 && !removed.contains(new Pair<>(v, u)) && visited.add(u)) {
+                    stack.push(u);
+                }
+            }
+        }
+        return !visited.contains(t);
+    }
+
+    private MyGraph randomGraph(int n, int m) {
+        MyGraph graph = new MyGraph();
+        for (int i = 0; i < n; i++) {
+            graph.addVertex(i);
+        }
+        for (int k = 0; k < m; k++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (graph.containsEdge(v, u) || v == u) {
+                k--;
+                continue;
+            }
+            graph.addEdge(v, u, k);
+            graph.setEdgeWeight(graph.getEdge(v, u), random.nextDouble());
+        }
+        return graph;
+    }
+
     private double getCutCapacity(List<Pair<Integer, Integer>> cut, MyGraph graph) {
         double sum = 0;
         for (Pair<Integer, Integer> e : cut) {
@@ -100,9 +267,9 @@ public class FlowTest {
         return sum;
     }
 
-    private EdmondsKarp build(MyGraph graph) {
+    private MaxFlow build(MyGraph graph, FlowAlgorithm algorithm) {
         int n = graph.vertexSet().size();
-        EdmondsKarp g = new EdmondsKarp(n);
+        MaxFlow g = algorithm.create(n);
         Set<Integer> visited = new HashSet<>();
         for (Integer e : graph.edgeSet()) {
             if (visited.contains(e)) {
@@ -2,20 +2,19 @@ import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.Stats;
 import ru.ifmo.ctddev.gmwcs.graph.Edge;
 import ru.ifmo.ctddev.gmwcs.graph.Graph;
 import ru.ifmo.ctddev.gmwcs.graph.Node;
 import ru.ifmo.ctddev.gmwcs.graph.Unit;
 import ru.ifmo.ctddev.gmwcs.solver.BicomponentSolver;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
 import ru.ifmo.ctddev.gmwcs.solver.RLTSolver;
 import ru.ifmo.ctddev.gmwcs.solver.SolverException;
 import ru.ifmo.ctddev.gmwcs.solver.Utils;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 
 import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
 
@@ -97,6 +96,106 @@ public class GMWCSTest {
         System.out.println();
     }
 
+    @Test
+    public void test04_parallel() {
+        if (DEBUG_TEST != null) {
+            return;
+        }
+        solver = new BicomponentSolver(new RLTSolver());
+        solver.setThreadsNum(4);
+        for (int i = MAX_SIZE * TESTS_PER_SIZE; i < tests.size(); i++) {
+            TestCase test = tests.get(i);
+            System.out.print("\rTest(parallel) no. " + (i) + "/" + tests.size());
+            System.out.print(": n = " + test.n() + ", m = " + test.m() + "       ");
+            System.out.flush();
+            check(test, i);
+        }
+        System.out.println();
+    }
+
+    @Test
+    public void test05_lazy() {
+        if (DEBUG_TEST != null) {
+            return;
+        }
+        RLTSolver rltSolver = new RLTSolver();
+        rltSolver.setLazyConnectivity(true);
+        solver = new BicomponentSolver(rltSolver);
+        solver.setThreadsNum(2);
+        for (int i = 0; i < tests.size(); i++) {
+            TestCase test = tests.get(i);
+            System.out.print("\rTest(lazy) no. " + (i + 1) + "/" + tests.size());
+            System.out.print(": n = " + test.n() + ", m = " + test.m() + "       ");
+            System.out.flush();
+            check(test, i);
+        }
+        System.out.println();
+    }
+
+    @Test
+    public void test06_fallback() throws SolverException {
+        if (DEBUG_TEST != null) {
+            return;
+        }
+        for (int i = 0; i < tests.size(); i += 10) {
+            Graph graph = tests.get(i).graph();
+            double expected = sum(referenceSolver.solve(graph, Collections.emptyList()));
+            RLTSolver rltSolver = new RLTSolver();
+            rltSolver.suppressOutput();
+            rltSolver.setLB(expected + 1);
+            List<Unit> actual = rltSolver.solve(graph);
+            Assert.assertTrue("Test " + i, rltSolver.isSolvedToOptimality());
+            Assert.assertEquals("Test " + i, 0.0, rltSolver.getGap(), 0.0);
+            Assert.assertTrue("Test " + i, sum(actual) <= expected + 1e-9);
+            Set<Node> nodes = new HashSet<>();
+            Set<Edge> edges = new HashSet<>();
+            for (Unit unit : actual) {
+                if (unit instanceof Node) {
+                    nodes.add((Node) unit);
+                } else {
+                    edges.add((Edge) unit);
+                }
+            }
+            if (expected > 0) {
+                Assert.assertFalse("Test " + i, nodes.isEmpty());
+            }
+            if (!nodes.isEmpty()) {
+                Assert.assertEquals("Test " + i, 1, graph.subgraph(nodes, edges).connectedSets().size());
+            }
+        }
+    }
+
+    @Test
+    public void test07_injection() throws SolverException {
+        if (DEBUG_TEST != null) {
+            return;
+        }
+        for (int i = 0; i < MAX_SIZE * TESTS_PER_SIZE; i += 10) {
+            Graph graph = tests.get(i).graph();
+            List<Node> nodes = new ArrayList<>(graph.vertexSet());
+            if (nodes.size() < 2) {
+                continue;
+            }
+            Node root = nodes.get(0);
+            Node node = nodes.get(1);
+            double expected = sum(referenceSolver.solve(graph, Collections.singletonList(root)));
+            CutPool cutPool = new CutPool();
+            Set<Edge> star = graph.edgesOf(node);
+            cutPool.offer(new CutPool.Cut(node, star.toArray(new Edge[star.size()])));
+            for (int k = 0; k < 2; k++) {
+                Stats stats = new Stats();
+                RLTSolver rltSolver = new RLTSolver();
+                rltSolver.suppressOutput();
+                rltSolver.setStats(stats);
+                rltSolver.setRoot(root);
+                rltSolver.setCutPool(cutPool);
+                int pooled = Math.min(cutPool.size(), RLTSolver.INJECTED_CUTS);
+                Assert.assertEquals("Test " + i, expected, sum(rltSolver.solve(graph)), 0.1);
+                Assert.assertEquals("Test " + i, pooled, stats.stage("cplex").getCounter("injectedCuts"));
+            }
+        }
+    }
+
     private void check(TestCase test, int num) {
         List<Unit> expected = referenceSolver.solve(test.graph(), Collections.emptyList());
         List<Unit> actual = null;
@@ -0,0 +1,233 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.TimeLimit;
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+import ru.ifmo.ctddev.gmwcs.solver.BicomponentSolver;
+import ru.ifmo.ctddev.gmwcs.solver.HeuristicSolver;
+import ru.ifmo.ctddev.gmwcs.solver.SolverException;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class HeuristicSolverTest {
+    public static final int SEED = 20161211;
+    public static final int TESTS = 1000;
+    public static final int MAX_NODES = 10;
+    public static final int MAX_EDGES = 14;
+    private Random random;
+
+    public HeuristicSolverTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_unrooted() throws SolverException {
+        int optimal = 0;
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            Map<Unit, Double> weights = weights(graph);
+            double expected = Math.max(sum(new ReferenceSolver().solve(graph, Collections.emptyList())), 0.0);
+            BicomponentSolver solver = new BicomponentSolver(new HeuristicSolver());
+            solver.suppressOutput();
+            solver.setThreadsNum(2);
+            double actual = check(graph, weights, solver.solve(graph), null, "Test " + i);
+            Assert.assertTrue("Test " + i, actual <= expected + 1e-9);
+            if (actual >= expected - 1e-9) {
+                optimal++;
+            }
+        }
+        Assert.assertTrue(optimal + "/" + TESTS, optimal >= 0.95 * TESTS);
+    }
+
+    @Test
+    public void test02_rooted() {
+        int optimal = 0;
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            Map<Unit, Double> weights = weights(graph);
+            List<Node> nodes = new ArrayList<>(graph.vertexSet());
+            Node root = nodes.get(random.nextInt(nodes.size()));
+            double expected = sum(new ReferenceSolver().solve(graph, Collections.singletonList(root)));
+            HeuristicSolver solver = new HeuristicSolver();
+            solver.setRoot(root);
+            double actual = check(graph, weights, solver.solve(graph), root, "Test " + i);
+            Assert.assertTrue("Test " + i, actual <= expected + 1e-9);
+            if (actual >= expected - 1e-9) {
+                optimal++;
+            }
+        }
+        Assert.assertTrue(optimal + "/" + TESTS, optimal >= 0.95 * TESTS);
+    }
+
+    @Test
+    public void test03_timeLimit() {
+        Graph graph = generate(new Random(random.nextLong()), 50000, 150000);
+        Map<Unit, Double> weights = weights(graph);
+        Stats stats = new Stats();
+        HeuristicSolver solver = new HeuristicSolver();
+        solver.setThreadsNum(4);
+        solver.setStats(stats);
+        TimeLimit tl = new TimeLimit(2.0);
+        solver.setTimeLimit(tl);
+        long before = System.currentTimeMillis();
+        List<Unit> solution = solver.solve(graph);
+        double elapsed = (System.currentTimeMillis() - before) / 1000.0;
+        Assert.assertTrue(Double.toString(elapsed), elapsed < 4.0);
+        Assert.assertTrue(check(graph, weights, solution, null, "Big") > 0);
+        Assert.assertFalse(solver.isSolvedToOptimality());
+        Assert.assertTrue(stats.stage("metaheuristic").getCounter("iterations") > 0);
+        Assert.assertTrue(tl.getRemainingTime() < 2.0);
+    }
+
+    @Test
+    public void test04_restarts() {
+        Graph graph = generate(new Random(random.nextLong()), 300, 600);
+        Map<Unit, Double> weights = weights(graph);
+        Stats stats = new Stats();
+        HeuristicSolver solver = new HeuristicSolver();
+        solver.setThreadsNum(2);
+        solver.setStats(stats);
+        solver.setTimeLimit(new TimeLimit(0.5));
+        long before = System.currentTimeMillis();
+        List<Unit> solution = solver.solve(graph);
+        double elapsed = (System.currentTimeMillis() - before) / 1000.0;
+        Assert.assertTrue(Double.toString(elapsed), elapsed >= 0.45 && elapsed < 2.0);
+        Assert.assertTrue(stats.stage("metaheuristic").getCounter("restarts") > 0);
+        Assert.assertTrue(check(graph, weights, solution, null, "Restarts") > 0);
+    }
+
+    @Test
+    public void test05_cpu() throws Exception {
+        Graph graph = generate(new Random(random.nextLong()), 300, 600);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Stats.Stage>> tasks = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                tasks.add(pool.submit(() -> {
+                    Stats stats = new Stats();
+                    HeuristicSolver solver = new HeuristicSolver();
+                    solver.setStats(stats);
+                    solver.setTimeLimit(new TimeLimit(0.5));
+                    solver.solve(graph);
+                    return stats.stage("metaheuristic");
+                }));
+            }
+            for (Future<Stats.Stage> task : tasks) {
+                Stats.Stage stage = task.get();
+                Assert.assertFalse(stage.isCpuEstimated());
+                Assert.assertTrue(stage.getCpuTime() + " " + stage.getWallTime(),
+                        stage.getCpuTime() > 0 && stage.getCpuTime() <= 1.2 * stage.getWallTime() + 0.05);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test06_positiveEdges() throws SolverException {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[4];
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v] = new Node(v + 1, -4.0);
+            graph.addVertex(nodes[v]);
+        }
+        int e = 0;
+        for (int v = 0; v < nodes.length; v++) {
+            for (int u = v + 1; u < nodes.length; u++) {
+                graph.addEdge(nodes[v], nodes[u], new Edge(++e, 3.0));
+            }
+        }
+        Map<Unit, Double> weights = weights(graph);
+        HeuristicSolver solver = new HeuristicSolver();
+        Assert.assertEquals(2.0, check(graph, weights, solver.solve(graph), null, "K4"), 1e-9);
+        Assert.assertFalse(solver.isSolvedToOptimality());
+        BicomponentSolver bicomponentSolver = new BicomponentSolver(new HeuristicSolver());
+        bicomponentSolver.suppressOutput();
+        Assert.assertEquals(2.0, check(graph, weights, bicomponentSolver.solve(graph), null, "K4"), 1e-9);
+        Assert.assertFalse(bicomponentSolver.isSolvedToOptimality());
+    }
+
+    private double check(Graph graph, Map<Unit, Double> weights, List<Unit> solution, Node root, String test) {
+        if (solution == null || solution.isEmpty()) {
+            Assert.assertNull(test, root);
+            return 0.0;
+        }
+        Set<Node> nodes = new LinkedHashSet<>();
+        Set<Edge> edges = new LinkedHashSet<>();
+        double score = 0.0;
+        for (Unit unit : solution) {
+            score += weights.get(unit);
+            if (unit instanceof Node) {
+                nodes.add((Node) unit);
+            } else {
+                edges.add((Edge) unit);
+            }
+        }
+        for (Edge e : edges) {
+            Assert.assertTrue(test, nodes.contains(graph.getEdgeSource(e)));
+            Assert.assertTrue(test, nodes.contains(graph.getEdgeTarget(e)));
+        }
+        Assert.assertEquals(test, 1, graph.subgraph(nodes, edges).connectedSets().size());
+        if (root != null) {
+            Assert.assertTrue(test, nodes.contains(root));
+        }
+        for (Map.Entry<Unit, Double> entry : weights.entrySet()) {
+            Assert.assertEquals(test, entry.getValue(), entry.getKey().getWeight(), 0.0);
+        }
+        return score;
+    }
+
+    private Map<Unit, Double> weights(Graph graph) {
+        Map<Unit, Double> weights = new HashMap<>();
+        graph.vertexSet().forEach(v -> weights.put(v, v.getWeight()));
+        graph.edgeSet().forEach(e -> weights.put(e, e.getWeight()));
+        return weights;
+    }
+
+    private Graph generate(Random random, int n, int m) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, random.nextInt(16) - 10);
+            graph.addVertex(nodes[v]);
+        }
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = (v + 1 + random.nextInt(100)) % n;
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, random.nextInt(16) - 10));
+        }
+        return graph;
+    }
+
+    private Graph generate() {
+        Graph graph = new Graph();
+        int n = 1 + random.nextInt(MAX_NODES);
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, random.nextInt(16) - 9);
+            graph.addVertex(nodes[v]);
+        }
+        int m = n == 1 ? 0 : random.nextInt(MAX_EDGES + 1);
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u == v) {
+                e--;
+                continue;
+            }
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, random.nextInt(16) - 9));
+        }
+        return graph;
+    }
+}
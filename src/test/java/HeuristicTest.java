@@ -0,0 +1,202 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.graph.Blocks;
+import ru.ifmo.ctddev.gmwcs.graph.CSRGraph;
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.solver.Heuristic;
+
+import java.util.*;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class HeuristicTest {
+    public static final int SEED = 20161225;
+    public static final int TESTS = 1000;
+    public static final int MAX_NODES = 10;
+    public static final int MAX_EDGES = 14;
+    public static final double EPS = 1e-9;
+    private Random random;
+
+    public HeuristicTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_unrooted() {
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            CSRGraph csr = CSRGraph.of(graph);
+            Heuristic heuristic = new Heuristic(csr, -1);
+            boolean found = heuristic.run(Long.MAX_VALUE);
+            boolean positive = graph.vertexSet().stream().anyMatch(v -> v.getWeight() > 0);
+            Assert.assertEquals("Test " + i, positive, found);
+            if (found) {
+                double expected = sum(new ReferenceSolver().solve(graph, Collections.emptyList()));
+                Assert.assertTrue("Test " + i, heuristic.value() <= expected + EPS);
+                check(csr, heuristic, -1, "Test " + i);
+            }
+        }
+    }
+
+    @Test
+    public void test02_rooted() {
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            CSRGraph csr = CSRGraph.of(graph);
+            List<Node> nodes = new ArrayList<>(graph.vertexSet());
+            Node root = nodes.get(random.nextInt(nodes.size()));
+            Heuristic heuristic = new Heuristic(csr, csr.indexOf(root));
+            Assert.assertTrue("Test " + i, heuristic.run(Long.MAX_VALUE));
+            double expected = sum(new ReferenceSolver().solve(graph, Collections.singletonList(root)));
+            Assert.assertTrue("Test " + i, heuristic.value() <= expected + EPS);
+            check(csr, heuristic, csr.indexOf(root), "Test " + i);
+        }
+    }
+
+    @Test
+    public void test03_unlimited() {
+        Graph graph = generate(20000, 60000);
+        CSRGraph csr = CSRGraph.of(graph);
+        Heuristic heuristic = new Heuristic(csr, -1);
+        long before = System.currentTimeMillis();
+        Assert.assertTrue(heuristic.run(Long.MAX_VALUE));
+        double elapsed = (System.currentTimeMillis() - before) / 1000.0;
+        Assert.assertTrue(Double.toString(elapsed), elapsed < 10.0);
+        check(csr, heuristic, -1, "Big");
+    }
+
+    private void check(CSRGraph graph, Heuristic heuristic, int root, String test) {
+        int n = graph.vertexCount();
+        int m = graph.edgeCount();
+        double[] values = heuristic.start();
+        Assert.assertEquals(test, 3 * n + 3 * m, values.length);
+        double[] y = Arrays.copyOfRange(values, 0, n);
+        double[] w = Arrays.copyOfRange(values, n, n + m);
+        double[] x0 = Arrays.copyOfRange(values, n + m, 2 * n + m);
+        double[] xIn = Arrays.copyOfRange(values, 2 * n + m, 2 * n + 2 * m);
+        double[] xOut = Arrays.copyOfRange(values, 2 * n + 2 * m, 2 * n + 3 * m);
+        double[] d = Arrays.copyOfRange(values, 2 * n + 3 * m, 3 * n + 3 * m);
+        double objective = 0;
+        for (int v = 0; v < n; v++) {
+            Assert.assertEquals(test, heuristic.nodes()[v] ? 1 : 0, y[v], 0);
+            objective += y[v] * graph.nodeWeight(v);
+        }
+        for (int e = 0; e < m; e++) {
+            Assert.assertEquals(test, heuristic.edges()[e] ? 1 : 0, w[e], 0);
+            objective += w[e] * graph.edgeWeight(e);
+        }
+        Assert.assertEquals(test, heuristic.value(), objective, EPS);
+        Assert.assertEquals(test, 1, Arrays.stream(x0).sum(), 0);
+        if (root != -1) {
+            Assert.assertEquals(test, 1, x0[root], 0);
+        } else {
+            int first = -1;
+            for (int v = 0; v < n; v++) {
+                if (y[v] > 0 && (first == -1 || graph.node(v).compareTo(graph.node(first)) < 0)) {
+                    first = v;
+                }
+            }
+            Assert.assertEquals(test, 1, x0[first], 0);
+        }
+        double[] in = x0.clone();
+        for (int e = 0; e < m; e++) {
+            int from = graph.source(e);
+            int to = graph.target(e);
+            Assert.assertTrue(test, w[e] <= y[from] && w[e] <= y[to]);
+            Assert.assertTrue(test, xIn[e] + xOut[e] <= w[e]);
+            in[from] += xIn[e];
+            in[to] += xOut[e];
+            checkArc(n, d, xOut[e], from, to, test);
+            checkArc(n, d, xIn[e], to, from, test);
+            Assert.assertTrue(test, d[from] + (n - 1) * w[e] <= n + d[to]);
+            Assert.assertTrue(test, d[to] + (n - 1) * w[e] <= n + d[from]);
+        }
+        for (int v = 0; v < n; v++) {
+            Assert.assertEquals(test, y[v], in[v], 0);
+            Assert.assertTrue(test, d[v] >= 0 && d[v] <= n - n * x0[v]);
+        }
+        int[] seen = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                int u = graph.neighbor(v, i);
+                if (seen[u] == v + 1) {
+                    continue;
+                }
+                seen[u] = v + 1;
+                int e = graph.incidentEdge(v, i);
+                if (graph.nodeWeight(u) >= 0 && graph.edgeWeight(e) >= 0) {
+                    Assert.assertTrue(test, y[v] <= w[e]);
+                }
+            }
+        }
+        if (root != -1) {
+            checkBlocks(graph, root, y, xIn, xOut, test);
+        }
+    }
+
+    private void checkArc(int n, double[] d, double x, int from, int to, String test) {
+        Assert.assertTrue(test, n + d[to] >= d[from] + (n + 1) * x);
+        Assert.assertTrue(test, d[to] + (n - 1) * x <= d[from] + n);
+    }
+
+    private void checkBlocks(CSRGraph graph, int root, double[] y, double[] xIn, double[] xOut, String test) {
+        Blocks blocks = new Blocks(graph);
+        Deque<int[]> stack = new ArrayDeque<>();
+        for (int i = 0; i < blocks.incidentCount(root); i++) {
+            stack.push(new int[]{root, blocks.incidentBlock(root, i)});
+        }
+        while (!stack.isEmpty()) {
+            int[] top = stack.pop();
+            int cutpoint = top[0];
+            int b = top[1];
+            Set<Integer> component = new HashSet<>();
+            for (int i = 0; i < blocks.blockSize(b); i++) {
+                component.add(blocks.blockNode(b, i));
+                Assert.assertTrue(test, y[blocks.blockNode(b, i)] <= y[cutpoint]);
+            }
+            for (int i = 0; i < graph.degreeOf(cutpoint); i++) {
+                int e = graph.incidentEdge(cutpoint, i);
+                if (component.contains(graph.neighbor(cutpoint, i))) {
+                    Assert.assertEquals(test, 0, graph.source(e) == cutpoint ? xIn[e] : xOut[e], 0);
+                }
+            }
+            for (int i = 0; i < blocks.cutpointCount(b); i++) {
+                int next = blocks.cutpoint(b, i);
+                for (int j = 0; j < blocks.incidentCount(next) && next != cutpoint; j++) {
+                    if (blocks.incidentBlock(next, j) != b) {
+                        stack.push(new int[]{next, blocks.incidentBlock(next, j)});
+                    }
+                }
+            }
+        }
+    }
+
+    private Graph generate() {
+        int n = 1 + random.nextInt(MAX_NODES);
+        return generate(n, n == 1 ? 0 : random.nextInt(MAX_EDGES + 1));
+    }
+
+    private Graph generate(int n, int m) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, random.nextInt(16) - 9);
+            graph.addVertex(nodes[v]);
+        }
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u == v) {
+                e--;
+                continue;
+            }
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, random.nextInt(16) - 9));
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,446 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.graph.*;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IOTest {
+    public static final int SEED = 20161103;
+    public static final int TESTS = 3000;
+    private static final String[] NUMBERS = {
+            "1", "-0.5", "+3", "0", "-0", "1e3", "1.5E-7", ".5", "5.", "007", "NaN", "-Infinity", "0x1p3",
+            "1d", "2.5f", "0.1234567890123456789", "123456789012345678901234", "1e-400", "1e400", "3.14159",
+            "-2.718281828459045", "1e22", "1e23", "9007199254740993", "4.9e-324"
+    };
+    private static final String[] BROKEN = {"x", "1..2", "e5", "1e", "--1", "", "1,5"};
+    private static final String[] NAMES = {"a", "b", "node", "X_1", "\u0443\u0437\u0435\u043b", "n#1", "7", "a\u0085b"};
+    private static final String[] BREAKS = {"\n", "\r\n", "\r", "\u2028"};
+    private static final String[] SPACES = {" ", "\t", "  ", " \t ", "\f"};
+    private Random random;
+
+    public IOTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_mapped() throws IOException {
+        for (int i = 0; i < TESTS; i++) {
+            String[] input = generate(random.nextInt(4) == 0);
+            check(input[0], input[1], i);
+        }
+    }
+
+    @Test
+    public void test02_binary() throws IOException, ParseException {
+        for (int i = 0; i < TESTS / 10; i++) {
+            String[] input = generate(false);
+            File dir = Files.createTempDirectory("gmwcs").toFile();
+            try {
+                checkBinary(dir, input[0], input[1], i);
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    @Test
+    public void test03_scores() throws IOException {
+        for (int i = 0; i < TESTS / 10; i++) {
+            File dir = Files.createTempDirectory("gmwcs").toFile();
+            try {
+                checkScores(dir, i);
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    @Test
+    public void test04_write() throws IOException, ParseException {
+        for (int i = 0; i < TESTS / 10; i++) {
+            File dir = Files.createTempDirectory("gmwcs").toFile();
+            try {
+                checkWrite(dir, i);
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    private void checkWrite(File dir, int test) throws IOException, ParseException {
+        int n = 1 + random.nextInt(10);
+        int m = random.nextInt(20);
+        String[] names = new String[n];
+        for (int v = 0; v < n; v++) {
+            names[v] = NAMES[random.nextInt(NAMES.length - 1)] + v;
+        }
+        int[][] ends = new int[m][];
+        for (int e = 0; e < m; e++) {
+            ends[e] = new int[]{random.nextInt(n), random.nextInt(n)};
+        }
+        File nodeIn = write(new File(dir, "nodes"), nodeList(names, new double[n]));
+        File edgeIn = write(new File(dir, "edges"), edgeList(names, ends, new double[m]));
+        File[] out = {new File(dir, "out.nodes"), new File(dir, "out.edges")};
+        SimpleIO io = new SimpleIO(nodeIn, out[0], edgeIn, out[1]);
+        CSRGraph graph = io.readCSR();
+        List<Unit> units = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            graph.node(v).setWeight(weight());
+            if (random.nextBoolean()) {
+                units.add(graph.node(v));
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            graph.edge(e).setWeight(weight());
+            if (random.nextBoolean()) {
+                units.add(graph.edge(e));
+            }
+        }
+        if (!units.isEmpty()) {
+            units.add(units.get(random.nextInt(units.size())));
+        }
+        units.add(new Node(-1, 0.0));
+        if (random.nextInt(10) == 0) {
+            units = null;
+        }
+        for (boolean subnetOnly : new boolean[]{false, true}) {
+            io.setSubnetOnly(subnetOnly);
+            io.write(units);
+            String[] expected = expectedOutput(names, graph, units, subnetOnly);
+            for (int k = 0; k < 2; k++) {
+                Assert.assertArrayEquals("Test no. " + test, expected[k].getBytes(Charset.defaultCharset()),
+                        Files.readAllBytes(out[k].toPath()));
+            }
+        }
+    }
+
+    private double weight() {
+        switch (random.nextInt(5)) {
+            case 0:
+                return Math.round((random.nextDouble() - 0.5) * 2e6) / Math.pow(10, random.nextInt(10));
+            case 1:
+                return (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 15);
+            case 2:
+                return Double.longBitsToDouble(random.nextLong());
+            case 3:
+                return random.nextInt(2001) - 1000;
+            default:
+                return Double.parseDouble(number(false));
+        }
+    }
+
+    private String[] expectedOutput(String[] names, CSRGraph graph, List<Unit> units, boolean subnetOnly) {
+        Set<Unit> unitSet = units == null ? new HashSet<>() : new HashSet<>(units);
+        StringBuilder nodes = new StringBuilder();
+        double sum = 0.0;
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            Node node = graph.node(v);
+            if (unitSet.contains(node)) {
+                sum += node.getWeight();
+            } else if (subnetOnly) {
+                continue;
+            }
+            nodes.append(names[v]).append("\t")
+                    .append(unitSet.contains(node) ? String.valueOf(node.getWeight()) : "n/a").append("\n");
+        }
+        nodes.append("#subnet node score\t").append(sum);
+        StringBuilder edges = new StringBuilder();
+        sum = 0.0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            Edge edge = graph.edge(e);
+            if (unitSet.contains(edge)) {
+                sum += edge.getWeight();
+            } else if (subnetOnly) {
+                continue;
+            }
+            edges.append(names[graph.source(e)]).append("\t")
+                    .append(names[graph.target(e)]).append("\t")
+                    .append(unitSet.contains(edge) ? String.valueOf(edge.getWeight()) : "n/a").append("\n");
+        }
+        edges.append("#subnet edge score\t").append(sum);
+        return new String[]{nodes.toString(), edges.toString()};
+    }
+
+    private void checkScores(File dir, int test) throws IOException {
+        int n = 1 + random.nextInt(10);
+        int m = random.nextInt(20);
+        String[] names = new String[n];
+        for (int v = 0; v < n; v++) {
+            names[v] = NAMES[random.nextInt(NAMES.length - 1)] + v;
+        }
+        int[][] ends = new int[m][];
+        for (int e = 0; e < m; e++) {
+            ends[e] = new int[]{random.nextInt(n), random.nextInt(n)};
+        }
+        File[] topology = {new File(dir, "nodes"), new File(dir, "edges")};
+        write(topology[0], nodeList(names, new double[n]));
+        write(topology[1], edgeList(names, ends, new double[m]));
+        File[] simple = {new File(dir, "simple.nodes"), new File(dir, "simple.edges")};
+        File[] scored = {new File(dir, "scored.nodes"), new File(dir, "scored.edges")};
+        ScoreIO io = new ScoreIO(random.nextBoolean() ? new SimpleIO(topology[0], scored[0], topology[1], scored[1])
+                : new MappedIO(topology[0], scored[0], topology[1], scored[1]));
+        for (int job = 0; job < 5; job++) {
+            double[] nodeWeights = new double[n];
+            double[] edgeWeights = new double[m];
+            for (int v = 0; v < n; v++) {
+                nodeWeights[v] = random.nextInt(4) == 0 ? 0.0 : Double.parseDouble(number(false));
+            }
+            for (int e = 0; e < m; e++) {
+                edgeWeights[e] = random.nextInt(4) == 0 ? 0.0 : Double.parseDouble(number(false));
+            }
+            File nodeScores = random.nextInt(4) == 0 ? null : write(new File(dir, "node.scores" + job),
+                    nodeScores(names, nodeWeights));
+            File edgeScores = random.nextInt(4) == 0 ? null : write(new File(dir, "edge.scores" + job),
+                    edgeScores(names, ends, edgeWeights));
+            File nodeIn = write(new File(dir, "nodes" + job),
+                    nodeList(names, nodeScores == null ? new double[n] : nodeWeights));
+            File edgeIn = write(new File(dir, "edges" + job),
+                    edgeList(names, ends, edgeScores == null ? new double[m] : edgeWeights));
+            String expected = run(new SimpleIO(nodeIn, simple[0], edgeIn, simple[1]), simple);
+            io.setScores(nodeScores, edgeScores);
+            Assert.assertEquals("Test no. " + test + ", job " + job, expected, run(io, scored));
+            try {
+                CSRGraph graph = io.readCSR();
+                if (n > 1) {
+                    graph.node(0).absorb(graph.node(1));
+                }
+            } catch (ParseException ignored) {
+            }
+        }
+    }
+
+    private String nodeList(String[] names, double[] weights) {
+        StringBuilder nodes = new StringBuilder();
+        for (int v = 0; v < names.length; v++) {
+            nodes.append(names[v]).append('\t').append(weights[v]).append('\n');
+        }
+        return nodes.toString();
+    }
+
+    private String edgeList(String[] names, int[][] ends, double[] weights) {
+        StringBuilder edges = new StringBuilder();
+        for (int e = 0; e < ends.length; e++) {
+            edges.append(names[ends[e][0]]).append('\t').append(names[ends[e][1]]).append('\t').append(weights[e])
+                    .append('\n');
+        }
+        return edges.toString();
+    }
+
+    private String nodeScores(String[] names, double[] weights) {
+        StringBuilder scores = new StringBuilder("#scores\n");
+        if (random.nextBoolean()) {
+            for (double weight : weights) {
+                scores.append(weight).append(lineBreak());
+            }
+            return scores.toString();
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int v = 0; v < names.length; v++) {
+            order.add(v);
+        }
+        Collections.shuffle(order, random);
+        for (int v : order) {
+            scores.append(names[v]).append(space()).append(weights[v]).append(lineBreak());
+        }
+        return scores.toString();
+    }
+
+    private String edgeScores(String[] names, int[][] ends, double[] weights) {
+        StringBuilder scores = new StringBuilder();
+        if (random.nextBoolean()) {
+            for (double weight : weights) {
+                scores.append(space()).append(weight).append(lineBreak()).append(lineBreak());
+            }
+            return scores.toString();
+        }
+        int n = names.length;
+        double[] key = new double[n * n];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = random.nextDouble();
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int e = 0; e < ends.length; e++) {
+            order.add(e);
+        }
+        order.sort(Comparator.comparingDouble(e -> key[Math.min(ends[e][0], ends[e][1]) * n
+                + Math.max(ends[e][0], ends[e][1])]));
+        for (int e : order) {
+            int first = ends[e][random.nextInt(2)];
+            int second = ends[e][0] + ends[e][1] - first;
+            scores.append(names[first]).append(space()).append(names[second]).append(space()).append(weights[e])
+                    .append('\n');
+        }
+        return scores.toString();
+    }
+
+    private void checkBinary(File dir, String nodes, String edges, int test) throws IOException, ParseException {
+        File nodeIn = write(new File(dir, "nodes"), nodes);
+        File edgeIn = write(new File(dir, "edges"), edges);
+        File binary = new File(dir, "graph.bin");
+        File[] simple = {new File(dir, "simple.nodes"), new File(dir, "simple.edges")};
+        File[] stored = {new File(dir, "binary.nodes"), new File(dir, "binary.edges")};
+        try {
+            BinaryIO.convert(new SimpleIO(nodeIn, simple[0], edgeIn, simple[1]), binary);
+        } catch (ParseException e) {
+            return;
+        }
+        String expected = run(new SimpleIO(nodeIn, simple[0], edgeIn, simple[1]), simple);
+        Assert.assertEquals("Test no. " + test, expected, run(new BinaryIO(binary, stored[0], stored[1]), stored));
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+        Files.write(binary.toPath(), Arrays.copyOf(bytes, random.nextInt(bytes.length)));
+        try {
+            new BinaryIO(binary, stored[0], stored[1]).readCSR();
+            Assert.fail("Test no. " + test + ": truncated file was read");
+        } catch (ParseException ignored) {
+        }
+        bytes[0]++;
+        Files.write(binary.toPath(), bytes);
+        try {
+            new BinaryIO(binary, stored[0], stored[1]).readCSR();
+            Assert.fail("Test no. " + test + ": file with wrong magic was read");
+        } catch (ParseException ignored) {
+        }
+    }
+
+    private String[] generate(boolean broken) {
+        int n = 1 + random.nextInt(10);
+        List<String> names = new ArrayList<>();
+        StringBuilder nodes = new StringBuilder();
+        for (int j = 0; j < n; j++) {
+            String name = NAMES[random.nextInt(NAMES.length)] + (random.nextBoolean() ? j : "");
+            names.add(name);
+            nodes.append(noise()).append(name).append(space()).append(number(broken)).append(tail());
+        }
+        StringBuilder edges = new StringBuilder();
+        int m = random.nextInt(15);
+        for (int j = 0; j < m; j++) {
+            String first = names.get(random.nextInt(n));
+            String second = broken && random.nextInt(20) == 0 ? "missing" : names.get(random.nextInt(n));
+            edges.append(noise()).append(first).append(space());
+            if (broken && random.nextInt(30) == 0) {
+                edges.append(tail());
+                continue;
+            }
+            edges.append(second).append(space()).append(number(broken)).append(tail());
+        }
+        if (random.nextBoolean()) {
+            nodes.setLength(nodes.length() - 1);
+        }
+        return new String[]{nodes.toString(), edges.toString()};
+    }
+
+    private String noise() {
+        switch (random.nextInt(8)) {
+            case 0:
+                return "#comment" + BREAKS[random.nextInt(BREAKS.length)];
+            case 1:
+                return BREAKS[random.nextInt(BREAKS.length)];
+            case 2:
+                return space() + BREAKS[random.nextInt(BREAKS.length)];
+            case 3:
+                return space();
+            default:
+                return "";
+        }
+    }
+
+    private String lineBreak() {
+        String lineBreak = BREAKS[random.nextInt(BREAKS.length)];
+        return Charset.defaultCharset().newEncoder().canEncode(lineBreak) ? lineBreak : "\n";
+    }
+
+    private String space() {
+        return SPACES[random.nextInt(SPACES.length)];
+    }
+
+    private String tail() {
+        return (random.nextInt(5) == 0 ? space() + "extra" : "") + BREAKS[random.nextInt(BREAKS.length)];
+    }
+
+    private String number(boolean broken) {
+        if (broken && random.nextInt(15) == 0) {
+            return BROKEN[random.nextInt(BROKEN.length)];
+        }
+        if (random.nextBoolean()) {
+            return NUMBERS[random.nextInt(NUMBERS.length)];
+        }
+        return Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6));
+    }
+
+    private void check(String nodes, String edges, int test) throws IOException {
+        File dir = Files.createTempDirectory("gmwcs").toFile();
+        File nodeIn = write(new File(dir, "nodes"), nodes);
+        File edgeIn = write(new File(dir, "edges"), edges);
+        File[] simple = {new File(dir, "simple.nodes"), new File(dir, "simple.edges")};
+        File[] mapped = {new File(dir, "mapped.nodes"), new File(dir, "mapped.edges")};
+        String expected = run(new SimpleIO(nodeIn, simple[0], edgeIn, simple[1]), simple);
+        MappedIO io = new MappedIO(nodeIn, mapped[0], edgeIn, mapped[1]);
+        Assert.assertEquals("Test no. " + test, expected, run(io, mapped));
+        io.setThreadsNum(4);
+        io.setChunkSize(1 + random.nextInt(32));
+        Assert.assertEquals("Test no. " + test + " (parallel)", expected, run(io, mapped));
+        delete(dir);
+    }
+
+    private void delete(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private String run(GraphIO io, File[] out) throws IOException {
+        CSRGraph graph;
+        try {
+            graph = io.readCSR();
+        } catch (ParseException e) {
+            return e.getMessage() + " " + e.getErrorOffset();
+        }
+        StringBuilder dump = new StringBuilder();
+        List<Unit> units = new ArrayList<>();
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            Node node = graph.node(v);
+            dump.append(node.getNum()).append(' ').append(Double.doubleToRawLongBits(node.getWeight())).append('\n');
+            if (v % 3 != 0) {
+                units.add(node);
+            }
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            Edge edge = graph.edge(e);
+            dump.append(graph.source(e)).append(' ').append(graph.target(e)).append(' ').append(edge.getNum())
+                    .append(' ').append(Double.doubleToRawLongBits(edge.getWeight())).append('\n');
+            if (e % 2 == 0) {
+                units.add(edge);
+            }
+        }
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            for (int i = 0; i < graph.degreeOf(v); i++) {
+                dump.append(graph.neighbor(v, i)).append(':').append(graph.incidentEdge(v, i)).append(' ');
+            }
+            dump.append('\n');
+        }
+        for (String name : new String[]{"a", "node", "a1", "\u0443\u0437\u0435\u043b", "missing"}) {
+            Node node = io.nodeByName(name);
+            dump.append(name).append(' ').append(node == null ? -1 : node.getNum()).append('\n');
+        }
+        io.write(units);
+        for (File file : out) {
+            dump.append(new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset()));
+        }
+        return dump.toString();
+    }
+
+    private File write(File file, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.defaultCharset())) {
+            writer.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,48 @@
+import org.junit.Assert;
+import org.junit.Test;
+import ru.ifmo.ctddev.gmwcs.solver.Incumbent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IncumbentTest {
+    public static final int SEED = 20161204;
+    public static final int THREADS = 8;
+    public static final int UPDATES = 100000;
+
+    @Test
+    public void test01_concurrent() throws Exception {
+        Incumbent incumbent = new Incumbent();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Double>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                Random random = new Random(SEED + i);
+                tasks.add(pool.submit(() -> {
+                    double best = -Double.MAX_VALUE;
+                    for (int j = 0; j < UPDATES; j++) {
+                        double value = random.nextDouble() * 1000 - 500;
+                        best = Math.max(best, value);
+                        if (incumbent.update(value)) {
+                            Assert.assertTrue(incumbent.get() >= value);
+                        }
+                    }
+                    return best;
+                }));
+            }
+            double expected = -Double.MAX_VALUE;
+            for (Future<Double> task : tasks) {
+                expected = Math.max(expected, task.get());
+            }
+            Assert.assertEquals(expected, incumbent.get(), 0.0);
+            Assert.assertFalse(incumbent.update(expected));
+            Assert.assertTrue(incumbent.update(expected + 1));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.Json;
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.graph.Edge;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+import ru.ifmo.ctddev.gmwcs.solver.Preprocessor;
+
+import java.text.ParseException;
+import java.util.*;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PreprocessorTest {
+    public static final int SEED = 20161122;
+    public static final int TESTS = 1500;
+    public static final int MAX_NODES = 10;
+    public static final int MAX_EDGES = 14;
+    private Random random;
+
+    public PreprocessorTest() {
+        random = new Random(SEED);
+    }
+
+    @Test
+    public void test01_equivalent() {
+        int removed = 0;
+        int total = 0;
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            Map<Unit, Double> weights = new HashMap<>();
+            graph.vertexSet().forEach(v -> weights.put(v, v.getWeight()));
+            graph.edgeSet().forEach(e -> weights.put(e, e.getWeight()));
+            double expected = Math.max(sum(new ReferenceSolver().solve(graph, Collections.emptyList())), 0.0);
+            Graph reduced = graph.subgraph(graph.vertexSet());
+            Preprocessor.preprocess(reduced);
+            total += graph.vertexSet().size() + graph.edgeSet().size();
+            removed += graph.vertexSet().size() + graph.edgeSet().size()
+                    - reduced.vertexSet().size() - reduced.edgeSet().size();
+            List<Unit> solution = new ReferenceSolver().solve(reduced, Collections.emptyList());
+            double actual = Math.max(sum(solution), 0.0);
+            Assert.assertEquals("Test " + i, expected, actual, 1e-9);
+            if (sum(solution) > 0) {
+                Set<Node> nodes = new LinkedHashSet<>();
+                Set<Edge> edges = new LinkedHashSet<>();
+                double score = 0.0;
+                for (Unit unit : solution) {
+                    List<Unit> units = unit.getAbsorbed();
+                    units.add(unit);
+                    for (Unit u : units) {
+                        score += weights.get(u);
+                        if (u instanceof Node) {
+                            nodes.add((Node) u);
+                        } else {
+                            edges.add((Edge) u);
+                        }
+                    }
+                }
+                Assert.assertEquals("Test " + i, expected, score, 1e-9);
+                for (Edge e : edges) {
+                    Assert.assertTrue(nodes.contains(graph.getEdgeSource(e)));
+                    Assert.assertTrue(nodes.contains(graph.getEdgeTarget(e)));
+                }
+                Assert.assertEquals("Test " + i, 1, graph.subgraph(nodes, edges).connectedSets().size());
+            }
+            reduced.vertexSet().forEach(Node::clear);
+            reduced.edgeSet().forEach(Edge::clear);
+            for (Map.Entry<Unit, Double> entry : weights.entrySet()) {
+                Assert.assertEquals("Test " + i, entry.getValue(), entry.getKey().getWeight(), 0.0);
+            }
+        }
+        Assert.assertTrue(2 * removed > total);
+    }
+
+    @Test
+    public void test02_stats() throws ParseException {
+        Stats stats = new Stats();
+        int nodes = 0;
+        int edges = 0;
+        int peak = 0;
+        for (int i = 0; i < TESTS; i++) {
+            Graph graph = generate();
+            nodes += graph.vertexSet().size();
+            edges += graph.edgeSet().size();
+            peak = Math.max(peak, graph.vertexSet().size());
+            Preprocessor.preprocess(graph, stats);
+        }
+        Stats.Stage stage = stats.stage("preprocess");
+        Assert.assertEquals(TESTS, stage.getCalls());
+        Assert.assertEquals(peak, stage.getPeakNodes());
+        Assert.assertTrue(stage.getWallTime() > 0);
+        long removed = 0;
+        for (String rule : new String[]{"isolatedNodes", "negativeLeaves", "positiveEdges", "negativePaths",
+                "dominatedNodes"}) {
+            Assert.assertTrue(rule, stage.getCounter(rule) > 0);
+            removed += stage.getCounter(rule);
+        }
+        removed += stage.getCounter("pathNodes");
+        Assert.assertEquals(nodes, removed + stage.getCounter("nodesLeft"));
+        Assert.assertTrue(stage.getCounter("pathEdges") > 0);
+        Assert.assertEquals(stage.getCounter("pathEdges"), stats.stage("pathElimination").getCounter("edges"));
+        Assert.assertEquals(stage.getCounter("pathNodes"), stats.stage("pathElimination").getCounter("nodes"));
+        Assert.assertTrue(stage.getCounter("edgesLeft") < edges);
+        Map<?, ?> json = (Map<?, ?>) ((Map<?, ?>) Json.parse(stats.toString())).get("stages");
+        Map<?, ?> counters = (Map<?, ?>) ((Map<?, ?>) json.get("preprocess")).get("counters");
+        Assert.assertEquals((double) stage.getCounter("dominatedNodes"), counters.get("dominatedNodes"));
+    }
+
+    @Test
+    public void test03_parallel() {
+        long seed = random.nextLong();
+        Graph sequential = generate(new Random(seed), 20000, 60000);
+        Graph parallel = generate(new Random(seed), 20000, 60000);
+        Graph local = generate(new Random(seed), 20000, 60000);
+        Preprocessor.preprocess(sequential, new Stats(), 1, Preprocessor.DEFAULT_PATH_BUDGET);
+        Preprocessor.preprocess(parallel, new Stats(), 4, Preprocessor.DEFAULT_PATH_BUDGET);
+        Preprocessor.preprocess(local, new Stats(), 4, 0);
+        Assert.assertEquals(sequential.vertexSet(), parallel.vertexSet());
+        Assert.assertEquals(sequential.edgeSet(), parallel.edgeSet());
+        Assert.assertTrue(sequential.edgeSet().size() < local.edgeSet().size());
+    }
+
+    @Test
+    public void test04_pathNodes() {
+        Graph graph = new Graph();
+        Node hub = new Node(1, -4.0);
+        graph.addVertex(hub);
+        Node[] nodes = new Node[3];
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v] = new Node(v + 2, 5.0);
+            graph.addVertex(nodes[v]);
+            graph.addEdge(hub, nodes[v], new Edge(v + 1, -2.0));
+        }
+        for (int v = 0; v < nodes.length; v++) {
+            graph.addEdge(nodes[v], nodes[(v + 1) % nodes.length], new Edge(v + 4, -3.0));
+        }
+        Graph reduced = graph.subgraph(graph.vertexSet());
+        Stats stats = new Stats();
+        Preprocessor.preprocess(reduced, stats);
+        Assert.assertFalse(reduced.containsVertex(hub));
+        Assert.assertEquals(1, stats.stage("preprocess").getCounter("pathNodes"));
+        Assert.assertEquals(0, stats.stage("preprocess").getCounter("dominatedNodes"));
+        double expected = sum(new ReferenceSolver().solve(graph, Collections.emptyList()));
+        Assert.assertEquals(expected, sum(new ReferenceSolver().solve(reduced, Collections.emptyList())), 1e-9);
+    }
+
+    private Graph generate(Random random, int n, int m) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, random.nextInt(16) - 10);
+            graph.addVertex(nodes[v]);
+        }
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = (v + 1 + random.nextInt(100)) % n;
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, random.nextInt(16) - 10));
+        }
+        return graph;
+    }
+
+    private Graph generate() {
+        Graph graph = new Graph();
+        int n = 1 + random.nextInt(MAX_NODES);
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(v + 1, random.nextInt(16) - 10);
+            graph.addVertex(nodes[v]);
+        }
+        int m = n == 1 ? 0 : random.nextInt(MAX_EDGES + 1);
+        for (int e = 0; e < m; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (u == v) {
+                e--;
+                continue;
+            }
+            graph.addEdge(nodes[v], nodes[u], new Edge(e + 1, random.nextInt(16) - 10));
+        }
+        return graph;
+    }
+}
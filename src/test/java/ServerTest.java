@@ -0,0 +1,359 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import ru.ifmo.ctddev.gmwcs.Json;
+import ru.ifmo.ctddev.gmwcs.Server;
+import ru.ifmo.ctddev.gmwcs.Stats;
+import ru.ifmo.ctddev.gmwcs.graph.Graph;
+import ru.ifmo.ctddev.gmwcs.graph.Node;
+import ru.ifmo.ctddev.gmwcs.graph.SimpleIO;
+import ru.ifmo.ctddev.gmwcs.graph.Unit;
+import ru.ifmo.ctddev.gmwcs.solver.BicomponentSolver;
+import ru.ifmo.ctddev.gmwcs.solver.CutPool;
+import ru.ifmo.ctddev.gmwcs.solver.HeuristicSolver;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ru.ifmo.ctddev.gmwcs.solver.Utils.sum;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ServerTest {
+    public static final int SEED = 20161121;
+    public static final int REQUESTS = 60;
+    public static final int CLIENTS = 6;
+    private Random random;
+    private File dir;
+    private Server server;
+    private int port;
+    private Set<CutPool> cutPools;
+
+    public ServerTest() {
+        random = new Random(SEED);
+    }
+
+    @Before
+    public void start() throws IOException {
+        dir = Files.createTempDirectory("gmwcs").toFile();
+        cutPools = Collections.newSetFromMap(new IdentityHashMap<>());
+        server = new Server((threads, root, timeLimit, cutPool) -> {
+            synchronized (cutPools) {
+                cutPools.add(cutPool);
+            }
+            return new ExactSolver(root);
+        });
+        server.setThreadsNum(2);
+        port = server.start(0);
+    }
+
+    @After
+    public void stop() throws IOException {
+        server.close();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void test01_solve() throws IOException, ParseException {
+        int n = 2 + random.nextInt(7);
+        List<int[]> edges = new ArrayList<>();
+        for (int e = 0; e < 10; e++) {
+            int v = random.nextInt(n);
+            int u = random.nextInt(n);
+            if (v != u) {
+                edges.add(new int[]{v, u});
+            }
+        }
+        double[] nodeBase = weights(n);
+        double[] edgeBase = weights(edges.size());
+        write(n, edges, nodeBase, edgeBase, "g");
+        try (Client client = new Client()) {
+            Map<?, ?> loaded = client.request("{\"op\":\"load\",\"graph\":\"g\",\"nodes\":" + quote("g.nodes")
+                    + ",\"edges\":" + quote("g.edges") + "}");
+            Assert.assertEquals(true, loaded.get("ok"));
+            Assert.assertEquals(n, ((Number) loaded.get("nodes")).intValue());
+            Assert.assertEquals(edges.size(), ((Number) loaded.get("edges")).intValue());
+            for (int i = 0; i < REQUESTS; i++) {
+                double[] nodeWeights = nodeBase.clone();
+                double[] edgeWeights = edgeBase.clone();
+                Map<String, Object> request = new LinkedHashMap<>();
+                request.put("op", "solve");
+                request.put("graph", "g");
+                request.put("id", (double) i);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        Map<String, Object> named = new LinkedHashMap<>();
+                        for (int v = 0; v < n; v++) {
+                            if (random.nextBoolean()) {
+                                nodeWeights[v] = random.nextInt(16) - 8;
+                                named.put("v" + v, nodeWeights[v]);
+                            }
+                        }
+                        request.put("scores", named);
+                        break;
+                    case 1:
+                        nodeWeights = weights(n);
+                        request.put("scores", list(nodeWeights));
+                        break;
+                }
+                if (random.nextBoolean()) {
+                    edgeWeights = weights(edges.size());
+                    request.put("edgeScores", list(edgeWeights));
+                }
+                String root = random.nextInt(3) == 0 ? "v" + random.nextInt(n) : null;
+                if (root != null) {
+                    request.put("root", root);
+                }
+                Map<?, ?> response = client.request(Json.write(request));
+                Assert.assertEquals(true, response.get("ok"));
+                Assert.assertEquals((double) i, response.get("id"));
+                double objective = (Double) response.get("objective");
+                write(n, edges, nodeWeights, edgeWeights, "check");
+                Assert.assertEquals(expected(root), objective, 1e-9);
+                double score = 0.0;
+                for (Object name : (List<?>) response.get("nodes")) {
+                    score += nodeWeights[Integer.parseInt(((String) name).substring(1))];
+                }
+                for (Object edge : (List<?>) response.get("edges")) {
+                    List<?> e = (List<?>) edge;
+                    int index = ((Double) e.get(0)).intValue();
+                    Assert.assertEquals("v" + edges.get(index)[0], e.get(1));
+                    Assert.assertEquals("v" + edges.get(index)[1], e.get(2));
+                    score += edgeWeights[index];
+                }
+                Assert.assertEquals(objective, score, 1e-9);
+            }
+        }
+        Assert.assertEquals(1, cutPools.size());
+    }
+
+    @Test
+    public void test02_protocol() throws IOException, ParseException {
+        write(3, Arrays.asList(new int[]{0, 1}, new int[]{1, 2}), new double[]{1, -5, 2}, new double[]{1, 1}, "g");
+        try (Client first = new Client(); Client second = new Client()) {
+            Assert.assertEquals(true, first.request("{\"op\":\"load\",\"graph\":\"a\",\"nodes\":"
+                    + quote("g.nodes") + ",\"edges\":" + quote("g.edges") + "}").get("ok"));
+            String solve = "{\"op\":\"solve\",\"graph\":\"a\",\"scores\":{\"v1\":4}}";
+            Map<?, ?> response = second.request(solve);
+            Assert.assertEquals(9.0, response.get("objective"));
+            Assert.assertEquals(false, response.get("cached"));
+            Assert.assertEquals(true, first.request(solve).get("cached"));
+            Assert.assertEquals(2.0, second.request("{\"op\":\"solve\",\"graph\":\"a\"}").get("objective"));
+            Assert.assertEquals(-5.0, second.request("{\"op\":\"solve\",\"graph\":\"a\",\"root\":\"v1\","
+                    + "\"scores\":[-1,-5,-1],\"edgeScores\":[0,0]}").get("objective"));
+            String[] errors = {
+                    "{\"op\":\"solve\"",
+                    "[1,2]",
+                    "{\"op\":\"fly\"}",
+                    "{\"op\":\"solve\",\"graph\":\"b\"}",
+                    "{\"op\":\"solve\",\"graph\":\"a\",\"scores\":[1,2]}",
+                    "{\"op\":\"solve\",\"graph\":\"a\",\"scores\":{\"x\":1}}",
+                    "{\"op\":\"solve\",\"graph\":\"a\",\"edgeScores\":{\"v0\":1}}",
+                    "{\"op\":\"solve\",\"graph\":\"a\",\"root\":\"x\"}",
+                    "{\"op\":\"load\",\"graph\":\"c\",\"nodes\":\"missing\",\"edges\":\"missing\"}",
+            };
+            for (String error : errors) {
+                response = first.request(error);
+                Assert.assertEquals(error, false, response.get("ok"));
+                Assert.assertNotNull(error, response.get("error"));
+            }
+            Assert.assertEquals(1, ((List<?>) first.request("{\"op\":\"graphs\"}").get("graphs")).size());
+            Assert.assertEquals(true, first.request("{\"op\":\"unload\",\"graph\":\"a\"}").get("ok"));
+            Assert.assertEquals(false, first.request(solve).get("ok"));
+            Assert.assertEquals(false, first.request("{\"op\":\"shutdown\"}").get("ok"));
+            Assert.assertEquals(true, first.request("{\"op\":\"graphs\"}").get("ok"));
+            server.setShutdownAllowed(true);
+            Assert.assertEquals(true, first.request("{\"op\":\"shutdown\"}").get("ok"));
+        }
+    }
+
+    @Test
+    public void test03_budget() throws Exception {
+        write(3, Arrays.asList(new int[]{0, 1}, new int[]{1, 2}), new double[]{1, -5, 2}, new double[]{1, 1}, "g");
+        AtomicInteger used = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Server budgeted = new Server((threads, root, timeLimit, cutPool) -> {
+            if (root != null) {
+                throw new IllegalStateException("broken solver");
+            }
+            return new ExactSolver(null) {
+                @Override
+                public List<Unit> solve(Graph graph) {
+                    peak.accumulateAndGet(used.addAndGet(threads), Math::max);
+                    try {
+                        Thread.sleep(5);
+                        return super.solve(graph);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        used.addAndGet(-threads);
+                    }
+                }
+            };
+        });
+        budgeted.setThreadsNum(3);
+        budgeted.setCacheSize(0);
+        port = budgeted.start(0);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                String graph = "g" + c;
+                tasks.add(clients.submit(() -> {
+                    try (Client client = new Client()) {
+                        Assert.assertEquals(true, client.request("{\"op\":\"load\",\"graph\":\"" + graph
+                                + "\",\"nodes\":" + quote("g.nodes") + ",\"edges\":" + quote("g.edges") + "}")
+                                .get("ok"));
+                        for (int i = 0; i < REQUESTS / 4; i++) {
+                            Map<?, ?> response = client.request("{\"op\":\"solve\",\"graph\":\"" + graph + "\"}");
+                            Assert.assertEquals(2.0, response.get("objective"));
+                            double threads = (Double) response.get("threads");
+                            Assert.assertTrue(threads >= 1 && threads <= 3);
+                        }
+                        Map<?, ?> response = client.request("{\"op\":\"solve\",\"graph\":\"" + graph
+                                + "\",\"root\":\"v0\"}");
+                        Assert.assertEquals(false, response.get("ok"));
+                        Assert.assertTrue((String) response.get("error"), ((String) response.get("error"))
+                                .contains("broken solver"));
+                        Assert.assertEquals(true, client.request("{\"op\":\"graphs\"}").get("ok"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            Assert.assertTrue(peak.get() <= 3);
+        } finally {
+            clients.shutdownNow();
+            budgeted.close();
+        }
+    }
+
+    @Test
+    public void test04_reduced() throws Exception {
+        write(3, Arrays.asList(new int[]{0, 1}, new int[]{1, 2}), new double[]{1, -5, 2}, new double[]{1, 1}, "g");
+        Stats stats = new Stats();
+        Server reducing = new Server((threads, root, timeLimit, cutPool) -> {
+            HeuristicSolver solver = new HeuristicSolver();
+            solver.setStats(stats);
+            return new BicomponentSolver(solver);
+        });
+        reducing.setThreadsNum(2);
+        port = reducing.start(0);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            try (Client client = new Client()) {
+                Assert.assertEquals(true, client.request("{\"op\":\"load\",\"graph\":\"g\",\"nodes\":"
+                        + quote("g.nodes") + ",\"edges\":" + quote("g.edges") + "}").get("ok"));
+            }
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int first = c * REQUESTS;
+                tasks.add(clients.submit(() -> {
+                    try (Client client = new Client()) {
+                        for (int i = first; i < first + REQUESTS / CLIENTS; i++) {
+                            String scores = i % 2 == 0 ? "" : ",\"scores\":{\"v1\":4}";
+                            Map<?, ?> response = client.request("{\"op\":\"solve\",\"graph\":\"g\""
+                                    + scores + ",\"timeLimit\":" + (i + 1.0) + "}");
+                            Assert.assertEquals(i % 2 == 0 ? 2.0 : 9.0, response.get("objective"));
+                            Assert.assertEquals(false, response.get("cached"));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            Assert.assertEquals(2, stats.stage("preprocess").getCalls());
+        } finally {
+            clients.shutdownNow();
+            reducing.close();
+        }
+    }
+
+    private double[] weights(int size) {
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = random.nextInt(16) - 8;
+        }
+        return weights;
+    }
+
+    private static List<Object> list(double[] weights) {
+        List<Object> list = new ArrayList<>();
+        for (double w : weights) {
+            list.add(w);
+        }
+        return list;
+    }
+
+    private String quote(String file) {
+        return Json.write(new File(dir, file).getAbsolutePath());
+    }
+
+    private void write(int n, List<int[]> edges, double[] nodeWeights, double[] edgeWeights, String name)
+            throws IOException {
+        StringBuilder nodes = new StringBuilder();
+        for (int v = 0; v < n; v++) {
+            nodes.append('v').append(v).append('\t').append(nodeWeights[v]).append('\n');
+        }
+        StringBuilder edgeList = new StringBuilder();
+        for (int e = 0; e < edges.size(); e++) {
+            edgeList.append('v').append(edges.get(e)[0]).append('\t').append('v').append(edges.get(e)[1])
+                    .append('\t').append(edgeWeights[e]).append('\n');
+        }
+        Files.write(new File(dir, name + ".nodes").toPath(), nodes.toString().getBytes());
+        Files.write(new File(dir, name + ".edges").toPath(), edgeList.toString().getBytes());
+    }
+
+    private double expected(String rootName) throws IOException, ParseException {
+        SimpleIO io = new SimpleIO(new File(dir, "check.nodes"), new File(dir, "check.nodes.out"),
+                new File(dir, "check.edges"), new File(dir, "check.edges.out"));
+        Graph graph = io.read();
+        List<Node> roots = rootName == null ? Collections.emptyList()
+                : Collections.singletonList(io.nodeByName(rootName));
+        List<Unit> result = new ReferenceSolver().solve(graph, roots);
+        return rootName == null ? Math.max(sum(result), 0.0) : sum(result);
+    }
+
+    private class Client implements Closeable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Client() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        Map<?, ?> request(String line) throws IOException, ParseException {
+            out.write(line + "\n");
+            out.flush();
+            String response = in.readLine();
+            Assert.assertNotNull(response);
+            return (Map<?, ?>) Json.parse(response);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import org.junit.Assert;
+import org.junit.Test;
+import ru.ifmo.ctddev.gmwcs.TimeLimit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TimeLimitTest {
+    public static final int THREADS = 8;
+    public static final int SPENDS = 100000;
+
+    @Test
+    public void test01_concurrent() throws Exception {
+        TimeLimit total = new TimeLimit(2.0 * THREADS * SPENDS);
+        TimeLimit shared = total.subLimit(0.5);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                TimeLimit own = i % 2 == 0 ? shared : total;
+                tasks.add(pool.submit(() -> {
+                    for (int j = 0; j < SPENDS; j++) {
+                        own.spend(1.0);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            Assert.assertEquals(THREADS * SPENDS, total.getRemainingTime(), 0.0);
+            Assert.assertEquals(THREADS * SPENDS / 2, shared.getRemainingTime(), 0.0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}